@@ -0,0 +1,71 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.util.UriUtils;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Measures the cost of encoding a URL, on its own and as part of creating a
+ * {@link SocialCounts} instance.
+ * 
+ * @author sangupta
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+	
+	@Param({
+		"http://example.com/",
+		"https://www.example.com/blog/2014/05/some-long-article-title-with-many-words.html?utm_source=twitter&utm_medium=social&ref=home#comments"
+	})
+	public String url;
+	
+	@Benchmark
+	public String encodeURIComponent() {
+		return UriUtils.encodeURIComponent(this.url);
+	}
+	
+	@Benchmark
+	public SocialCounts newSocialCounts() {
+		return new SocialCounts(this.url);
+	}
+
+}
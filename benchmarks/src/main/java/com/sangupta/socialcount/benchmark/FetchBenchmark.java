@@ -0,0 +1,98 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.http.PooledHttpTransport;
+import com.sangupta.socialcount.simulator.LatencyDistribution;
+import com.sangupta.socialcount.simulator.ProviderSimulator;
+
+/**
+ * Measures end-to-end throughput of fetching all counts for a URL, one
+ * provider after another versus all providers in parallel. The providers are
+ * served by a {@link ProviderSimulator} on the loopback interface, answering
+ * after the given latency.
+ * 
+ * @author sangupta
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class FetchBenchmark {
+	
+	/**
+	 * Time in millis the simulator waits before answering
+	 */
+	@Param({ "0", "20" })
+	public long latency;
+	
+	private ProviderSimulator simulator;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.simulator = new ProviderSimulator();
+		this.simulator.setLatency(LatencyDistribution.fixed(this.latency));
+		
+		SocialCountClient client = SocialCountClient.getDefault();
+		client.setTransport(new PooledHttpTransport(200, 200));
+		this.simulator.attach(client);
+	}
+	
+	@TearDown(Level.Trial)
+	public void teardown() {
+		SocialCountClient.getDefault().close();
+		this.simulator.close();
+	}
+	
+	@Benchmark
+	public SocialCounts sequential() {
+		return SocialCountClient.getSocialCounts("http://example.com/");
+	}
+	
+	@Benchmark
+	public SocialCounts parallel() {
+		return SocialCountClient.getSocialCountsParallel("http://example.com/");
+	}
+
+}
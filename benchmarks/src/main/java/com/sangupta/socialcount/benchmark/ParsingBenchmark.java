@@ -0,0 +1,130 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.GooglePlusOneProvider;
+import com.sangupta.socialcount.provider.GoogleSharesProvider;
+import com.sangupta.socialcount.provider.LinkedinProvider;
+import com.sangupta.socialcount.provider.PinterestProvider;
+import com.sangupta.socialcount.provider.ProviderResponse;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * Measures how long each provider takes to turn a response body into counts -
+ * decoding the body stream, skipping any JSONP wrapper and reading the count
+ * fields off the JSON.
+ * 
+ * @author sangupta
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+	
+	private final SocialCountProvider twitter = new TwitterProvider();
+	
+	private final SocialCountProvider facebook = new FacebookProvider();
+	
+	private final SocialCountProvider googlePlusOne = new GooglePlusOneProvider();
+	
+	private final SocialCountProvider googleShares = new GoogleSharesProvider();
+	
+	private final SocialCountProvider linkedin = new LinkedinProvider();
+	
+	private final SocialCountProvider pinterest = new PinterestProvider();
+	
+	private final byte[] twitterBody = ProviderBodies.TWITTER.getBytes(StandardCharsets.UTF_8);
+	
+	private final byte[] facebookBody = ProviderBodies.FACEBOOK.getBytes(StandardCharsets.UTF_8);
+	
+	private final byte[] googlePlusOneBody = ProviderBodies.GOOGLE_PLUS_ONE.getBytes(StandardCharsets.UTF_8);
+	
+	private final byte[] googleSharesBody = ProviderBodies.GOOGLE_SHARES.getBytes(StandardCharsets.UTF_8);
+	
+	private final byte[] linkedinBody = ProviderBodies.LINKEDIN.getBytes(StandardCharsets.UTF_8);
+	
+	private final byte[] pinterestBody = ProviderBodies.PINTEREST.getBytes(StandardCharsets.UTF_8);
+	
+	private final SocialCounts counts = new SocialCounts("http://example.com/");
+	
+	@Benchmark
+	public SocialCounts twitter() throws IOException {
+		return this.parse(this.twitter, this.twitterBody);
+	}
+	
+	@Benchmark
+	public SocialCounts facebook() throws IOException {
+		return this.parse(this.facebook, this.facebookBody);
+	}
+	
+	@Benchmark
+	public SocialCounts googlePlusOne() throws IOException {
+		return this.parse(this.googlePlusOne, this.googlePlusOneBody);
+	}
+	
+	@Benchmark
+	public SocialCounts googleShares() throws IOException {
+		return this.parse(this.googleShares, this.googleSharesBody);
+	}
+	
+	@Benchmark
+	public SocialCounts linkedin() throws IOException {
+		return this.parse(this.linkedin, this.linkedinBody);
+	}
+	
+	@Benchmark
+	public SocialCounts pinterest() throws IOException {
+		return this.parse(this.pinterest, this.pinterestBody);
+	}
+	
+	private SocialCounts parse(SocialCountProvider provider, byte[] body) throws IOException {
+		ProviderResponse response = new ProviderResponse(200, new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+		if(!provider.parseResponse(this.counts, response)) {
+			throw new IllegalStateException("Provider " + provider.getName() + " could not parse the body");
+		}
+		
+		return this.counts;
+	}
+
+}
@@ -0,0 +1,49 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.benchmark;
+
+/**
+ * Canned provider responses, shaped like the ones returned by the real
+ * provider APIs.
+ * 
+ * @author sangupta
+ *
+ */
+final class ProviderBodies {
+	
+	static final String TWITTER = "{\"count\":1234,\"url\":\"http://example.com/\"}";
+	
+	static final String FACEBOOK = "{\"data\":[{\"url\":\"http://example.com/\",\"normalized_url\":\"http://www.example.com/\",\"share_count\":4011,\"like_count\":8220,\"comment_count\":1203,\"total_count\":13434,\"click_count\":265}]}";
+	
+	static final String GOOGLE_PLUS_ONE = "{\"id\":\"p\",\"result\":{\"kind\":\"pos#plusones\",\"id\":\"http://example.com/\",\"isSetByViewer\":false,\"metadata\":{\"type\":\"URL\",\"globalCounts\":{\"count\":3542.0}},\"abtk\":\"AEIZW7SBGpdyL6hqf7zj\"}}";
+	
+	static final String GOOGLE_SHARES = "<!DOCTYPE html><html><head><title>Ripples</title></head><body><div class=\"header\">Public shares</div><div>Shared</div><div>2142 public shares</div></body></html>";
+	
+	static final String LINKEDIN = "showCount({\"count\":1502,\"fCnt\":\"1,502\",\"fCntPlusOne\":\"1,503\",\"url\":\"http:\\/\\/example.com\\/\"});";
+	
+	static final String PINTEREST = "showCount({\"count\":677,\"url\":\"http://example.com/\"})";
+	
+	private ProviderBodies() {
+		throw new RuntimeException("Instance of ProviderBodies is not allowed");
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * Iterates over the {@link SocialCounts} of a batch of URLs in the order in
+ * which they complete. URLs are pulled from the source lazily and at most
+ * <code>window</code> URLs are being fetched or waiting to be consumed at any
+ * time. A slow consumer thus throttles the fetchers, and the memory used stays
+ * flat irrespective of the number of URLs in the batch.
+ * 
+ * This iterator is not thread-safe and must be consumed from a single thread.
+ * 
+ * @author sangupta
+ *
+ */
+class BatchIterator implements Iterator<SocialCounts> {
+	
+	private final SocialCountClient client;
+	
+	private final Iterator<String> urls;
+	
+	private final SocialCountConfig config;
+	
+	private final int window;
+	
+	/**
+	 * Results that are complete but not yet consumed
+	 */
+	private final BlockingQueue<SocialCounts> completed = new LinkedBlockingQueue<>();
+	
+	/**
+	 * Number of URLs scheduled but not yet consumed
+	 */
+	private int outstanding;
+	
+	BatchIterator(SocialCountClient client, Iterator<String> urls, SocialCountConfig config, int window) {
+		if(window < 1) {
+			throw new IllegalArgumentException("Window must be at least one");
+		}
+		
+		this.client = client;
+		this.urls = urls;
+		this.config = config;
+		this.window = window;
+	}
+
+	@Override
+	public boolean hasNext() {
+		this.fill();
+		return this.outstanding > 0;
+	}
+
+	@Override
+	public SocialCounts next() {
+		if(!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		try {
+			SocialCounts counts = this.completed.take();
+			this.outstanding--;
+			return counts;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the next result", e);
+		}
+	}
+	
+	/**
+	 * Schedule more URLs from the source till the window is full.
+	 * 
+	 */
+	private void fill() {
+		while(this.outstanding < this.window && this.urls.hasNext()) {
+			String url = this.urls.next();
+			if(AssertUtils.isEmpty(url)) {
+				continue;
+			}
+			
+			this.client.fetchAsync(url, this.config).thenAccept(this.completed::add);
+			this.outstanding++;
+		}
+	}
+
+}
@@ -0,0 +1,407 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to a provider that keeps failing. The breaker tracks the
+ * outcome of the most recent calls, counting calls that failed or were slower
+ * than a threshold as bad. Once the share of bad calls crosses the failure
+ * rate threshold the breaker opens, and calls are skipped right away without
+ * holding a thread. After the open duration a few trial calls are let
+ * through: if they all succeed the breaker closes again, otherwise it stays
+ * open for another period.
+ * 
+ * @author sangupta
+ *
+ */
+public class CircuitBreaker {
+	
+	/**
+	 * The states of a circuit breaker
+	 * 
+	 */
+	public static enum State {
+		
+		/**
+		 * Calls go through normally
+		 */
+		CLOSED,
+		
+		/**
+		 * Calls are skipped
+		 */
+		OPEN,
+		
+		/**
+		 * Trial calls are being let through
+		 */
+		HALF_OPEN;
+		
+	}
+	
+	/**
+	 * Default number of most recent calls tracked
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	
+	/**
+	 * Default number of calls needed in the window before the breaker may open
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 10;
+	
+	/**
+	 * Default share of bad calls at which the breaker opens
+	 */
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+	
+	/**
+	 * Default time in millis after which a successful call counts as bad
+	 */
+	public static final long DEFAULT_SLOW_CALL_THRESHOLD = 5000;
+	
+	/**
+	 * Default time in millis for which the breaker stays open
+	 */
+	public static final long DEFAULT_OPEN_DURATION = 30000;
+	
+	/**
+	 * Default number of trial calls needed to close the breaker
+	 */
+	public static final int DEFAULT_TRIAL_CALLS = 3;
+	
+	/**
+	 * Outcomes of the most recent calls, <code>true</code> for bad ones
+	 */
+	private final boolean[] outcomes;
+	
+	/**
+	 * Index in the window where the next outcome is recorded
+	 */
+	private int next;
+	
+	/**
+	 * Number of outcomes in the window
+	 */
+	private int recorded;
+	
+	/**
+	 * Number of bad outcomes in the window
+	 */
+	private int failures;
+	
+	private State state = State.CLOSED;
+	
+	/**
+	 * The time at which the current state was entered
+	 */
+	private long stateSince = System.nanoTime();
+	
+	/**
+	 * Number of trial calls let through in the half-open state
+	 */
+	private int trialsStarted;
+	
+	/**
+	 * Number of trial calls that succeeded in the half-open state
+	 */
+	private int trialsSucceeded;
+	
+	/**
+	 * Number of times the breaker has opened
+	 */
+	private long openCount;
+	
+	private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+	
+	private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	
+	private volatile long slowCallThreshold = DEFAULT_SLOW_CALL_THRESHOLD;
+	
+	private volatile long openDuration = DEFAULT_OPEN_DURATION;
+	
+	private volatile int trialCalls = DEFAULT_TRIAL_CALLS;
+	
+	/**
+	 * Create a breaker that tracks the default number of most recent calls.
+	 */
+	public CircuitBreaker() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+	
+	/**
+	 * Create a breaker that tracks the given number of most recent calls.
+	 * 
+	 * @param windowSize
+	 *            the number of calls to track
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the window size is less than one
+	 */
+	public CircuitBreaker(int windowSize) {
+		if(windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least one");
+		}
+		
+		this.outcomes = new boolean[windowSize];
+		this.minimumCalls = Math.min(DEFAULT_MINIMUM_CALLS, windowSize);
+	}
+	
+	/**
+	 * Check if a call may be made right now. In the half-open state this
+	 * takes up one of the trial calls, whose outcome must be recorded.
+	 * 
+	 * @return <code>true</code> if the call may be made, <code>false</code>
+	 *         if it must be skipped
+	 */
+	public synchronized boolean allowRequest() {
+		final long now = System.nanoTime();
+		final long openNanos = TimeUnit.MILLISECONDS.toNanos(this.openDuration);
+		
+		switch(this.state) {
+			case CLOSED:
+				return true;
+			
+			case OPEN:
+				if(now - this.stateSince < openNanos) {
+					return false;
+				}
+				
+				this.moveTo(State.HALF_OPEN, now);
+				break;
+			
+			case HALF_OPEN:
+				if(this.trialsStarted >= this.trialCalls) {
+					if(now - this.stateSince < openNanos) {
+						return false;
+					}
+					
+					// the trial calls never reported back - try again
+					this.moveTo(State.HALF_OPEN, now);
+				}
+				
+				break;
+		}
+		
+		this.trialsStarted++;
+		return true;
+	}
+	
+	/**
+	 * Check if {@link #allowRequest()} would let a call through right now,
+	 * without taking up a trial call.
+	 * 
+	 * @return <code>true</code> if a call may be made, <code>false</code> if
+	 *         it would be skipped
+	 */
+	public synchronized boolean isCallPermitted() {
+		final long elapsed = System.nanoTime() - this.stateSince;
+		final long openNanos = TimeUnit.MILLISECONDS.toNanos(this.openDuration);
+		
+		switch(this.state) {
+			case OPEN:
+				return elapsed >= openNanos;
+			
+			case HALF_OPEN:
+				return this.trialsStarted < this.trialCalls || elapsed >= openNanos;
+			
+			default:
+				return true;
+		}
+	}
+	
+	/**
+	 * Record a call that completed.
+	 * 
+	 * @param latency
+	 *            the time in millis the call took
+	 */
+	public synchronized void onSuccess(long latency) {
+		long slowCallThreshold = this.slowCallThreshold;
+		this.record(slowCallThreshold > 0 && latency > slowCallThreshold);
+	}
+	
+	/**
+	 * Record a call that failed because the provider could not be reached,
+	 * timed out or returned a server error.
+	 */
+	public synchronized void onFailure() {
+		this.record(true);
+	}
+	
+	/**
+	 * Record that a call let through was abandoned before it had an outcome,
+	 * as when another attempt answered first. In the half-open state its
+	 * trial call is given back for another call to take.
+	 */
+	public synchronized void onAbandoned() {
+		if(this.state == State.HALF_OPEN && this.trialsStarted > this.trialsSucceeded) {
+			this.trialsStarted--;
+		}
+	}
+	
+	private void record(boolean bad) {
+		switch(this.state) {
+			case OPEN:
+				// a call that started before the breaker opened
+				return;
+			
+			case HALF_OPEN:
+				if(bad) {
+					this.open();
+					return;
+				}
+				
+				this.trialsSucceeded++;
+				if(this.trialsSucceeded >= this.trialCalls) {
+					this.moveTo(State.CLOSED, System.nanoTime());
+				}
+				
+				return;
+			
+			case CLOSED:
+				if(this.recorded == this.outcomes.length) {
+					if(this.outcomes[this.next]) {
+						this.failures--;
+					}
+				} else {
+					this.recorded++;
+				}
+				
+				this.outcomes[this.next] = bad;
+				if(bad) {
+					this.failures++;
+				}
+				
+				this.next = (this.next + 1) % this.outcomes.length;
+				
+				if(this.recorded >= this.minimumCalls && this.failures >= this.failureRateThreshold * this.recorded) {
+					this.open();
+				}
+				
+				return;
+		}
+	}
+	
+	private void open() {
+		this.openCount++;
+		this.moveTo(State.OPEN, System.nanoTime());
+	}
+	
+	private void moveTo(State state, long now) {
+		this.state = state;
+		this.stateSince = now;
+		this.trialsStarted = 0;
+		this.trialsSucceeded = 0;
+		
+		if(state == State.CLOSED) {
+			this.next = 0;
+			this.recorded = 0;
+			this.failures = 0;
+		}
+	}
+	
+	/**
+	 * Force the breaker back to the closed state, forgetting all recorded
+	 * calls.
+	 */
+	public synchronized void reset() {
+		this.moveTo(State.CLOSED, System.nanoTime());
+	}
+	
+	// Usual accessors follow
+	
+	public synchronized State getState() {
+		return this.state;
+	}
+	
+	public synchronized long getOpenCount() {
+		return this.openCount;
+	}
+	
+	public int getWindowSize() {
+		return this.outcomes.length;
+	}
+	
+	public int getMinimumCalls() {
+		return this.minimumCalls;
+	}
+	
+	public void setMinimumCalls(int minimumCalls) {
+		if(minimumCalls < 1) {
+			throw new IllegalArgumentException("Minimum calls must be at least one");
+		}
+		
+		this.minimumCalls = minimumCalls;
+	}
+	
+	public double getFailureRateThreshold() {
+		return this.failureRateThreshold;
+	}
+	
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		if(!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+			throw new IllegalArgumentException("Failure rate threshold must be more than zero and at most one");
+		}
+		
+		this.failureRateThreshold = failureRateThreshold;
+	}
+	
+	public long getSlowCallThreshold() {
+		return this.slowCallThreshold;
+	}
+	
+	/**
+	 * @param slowCallThreshold
+	 *            the time in millis after which a successful call counts as
+	 *            bad, zero to never count successful calls as bad
+	 */
+	public void setSlowCallThreshold(long slowCallThreshold) {
+		this.slowCallThreshold = slowCallThreshold;
+	}
+	
+	public long getOpenDuration() {
+		return this.openDuration;
+	}
+	
+	public void setOpenDuration(long openDuration) {
+		if(openDuration < 0) {
+			throw new IllegalArgumentException("Open duration cannot be negative");
+		}
+		
+		this.openDuration = openDuration;
+	}
+	
+	public int getTrialCalls() {
+		return this.trialCalls;
+	}
+	
+	public void setTrialCalls(int trialCalls) {
+		if(trialCalls < 1) {
+			throw new IllegalArgumentException("Trial calls must be at least one");
+		}
+		
+		this.trialCalls = trialCalls;
+	}
+
+}
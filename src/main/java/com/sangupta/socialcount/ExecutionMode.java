@@ -0,0 +1,55 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+/**
+ * How a {@link SocialCountClient} runs its provider calls, which block on
+ * the network for most of their time.
+ * 
+ * @author sangupta
+ *
+ */
+public enum ExecutionMode {
+	
+	/**
+	 * Calls run on a bounded pool of platform threads, which caps the number
+	 * of calls in flight across all providers
+	 */
+	PLATFORM,
+	
+	/**
+	 * Every call runs on a virtual thread of its own, on Java 21 or later, so
+	 * that only the per provider concurrency caps limit the number of calls
+	 * in flight
+	 */
+	VIRTUAL;
+	
+	/**
+	 * Check if this mode can be used on the running JVM.
+	 * 
+	 * @return <code>true</code> if supported
+	 */
+	public boolean isSupported() {
+		return this == PLATFORM || VirtualThreads.isSupported();
+	}
+
+}
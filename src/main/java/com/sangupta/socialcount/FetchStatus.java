@@ -0,0 +1,110 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+/**
+ * The outcome of fetching the values of a single provider for a URL, as kept
+ * in {@link SocialCounts}.
+ * 
+ * @author sangupta
+ *
+ */
+public enum FetchStatus {
+	
+	/**
+	 * The provider was not asked for, or the fetch has not finished
+	 */
+	NONE,
+	
+	/**
+	 * The values were fetched from the provider
+	 */
+	OK,
+	
+	/**
+	 * The values were read from the cache
+	 */
+	CACHED,
+	
+	/**
+	 * Expired values were read from the cache while being refreshed
+	 */
+	STALE,
+	
+	/**
+	 * The provider was not hit because its circuit breaker was open
+	 */
+	SKIPPED,
+	
+	/**
+	 * The provider was not hit because of its rate limit
+	 */
+	RATE_LIMITED,
+	
+	/**
+	 * The provider did not answer in time, or the time budget ran out
+	 */
+	TIMEOUT,
+	
+	/**
+	 * The provider could not be reached
+	 */
+	IO_ERROR,
+	
+	/**
+	 * The provider returned a status code other than <code>2xx</code>
+	 */
+	HTTP_ERROR,
+	
+	/**
+	 * The response of the provider could not be parsed
+	 */
+	PARSE_ERROR;
+	
+	/**
+	 * Cached copy of the values, to avoid a copy on every lookup
+	 */
+	private static final FetchStatus[] VALUES = values();
+	
+	/**
+	 * Return the status with the given ordinal.
+	 * 
+	 * @param ordinal
+	 *            the ordinal of the status
+	 * 
+	 * @return the {@link FetchStatus}
+	 */
+	static FetchStatus of(int ordinal) {
+		return VALUES[ordinal];
+	}
+	
+	/**
+	 * Check if the values of the provider are available.
+	 * 
+	 * @return <code>true</code> for {@link #OK}, {@link #CACHED} and
+	 *         {@link #STALE}
+	 */
+	public boolean hasValues() {
+		return this == OK || this == CACHED || this == STALE;
+	}
+
+}
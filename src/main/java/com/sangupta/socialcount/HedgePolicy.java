@@ -0,0 +1,123 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a provider call that has not answered yet is hedged with a
+ * duplicate request. The delay is a percentile of the latencies of the most
+ * recent calls to the provider, so that only the slowest calls get hedged.
+ * 
+ * @author sangupta
+ *
+ */
+class HedgePolicy {
+	
+	/**
+	 * Number of most recent latencies tracked
+	 */
+	static final int WINDOW_SIZE = 256;
+	
+	/**
+	 * Number of latencies needed before calls are hedged
+	 */
+	static final int MIN_SAMPLES = 20;
+	
+	/**
+	 * The delay is recomputed after these many new latencies
+	 */
+	private static final int RECOMPUTE_INTERVAL = 16;
+	
+	/**
+	 * The percentile of recent latencies after which a call is hedged
+	 */
+	final double percentile;
+	
+	private final long[] latencies = new long[WINDOW_SIZE];
+	
+	/**
+	 * Index in the window where the next latency is recorded
+	 */
+	private int next;
+	
+	/**
+	 * Number of latencies in the window
+	 */
+	private int recorded;
+	
+	/**
+	 * Number of latencies recorded since the delay was computed
+	 */
+	private int sinceComputed;
+	
+	/**
+	 * The current delay in millis, <code>-1</code> until there are enough
+	 * samples
+	 */
+	private long delay = -1;
+	
+	HedgePolicy(double percentile) {
+		if(!(percentile > 0 && percentile < 100)) {
+			throw new IllegalArgumentException("Percentile must be more than zero and less than 100");
+		}
+		
+		this.percentile = percentile;
+	}
+	
+	/**
+	 * Record the latency of a call that got a response.
+	 * 
+	 * @param latency
+	 *            the time in millis the call took
+	 */
+	synchronized void record(long latency) {
+		this.latencies[this.next] = latency;
+		this.next = (this.next + 1) % WINDOW_SIZE;
+		if(this.recorded < WINDOW_SIZE) {
+			this.recorded++;
+		}
+		
+		this.sinceComputed++;
+		if(this.recorded < MIN_SAMPLES || (this.delay >= 0 && this.sinceComputed < RECOMPUTE_INTERVAL)) {
+			return;
+		}
+		
+		long[] sorted = Arrays.copyOf(this.latencies, this.recorded);
+		Arrays.sort(sorted);
+		
+		int index = (int) Math.ceil(this.percentile / 100 * sorted.length) - 1;
+		this.delay = Math.max(1, sorted[Math.max(0, index)]);
+		this.sinceComputed = 0;
+	}
+	
+	/**
+	 * Return the time after which a call that has not answered is hedged.
+	 * 
+	 * @return the delay in millis, or <code>-1</code> if calls must not be
+	 *         hedged yet
+	 */
+	synchronized long getDelay() {
+		return this.delay;
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects the calls to a single provider that can be answered by one
+ * batched request. Calls are handed over to the dispatcher as a batch as soon
+ * as the batch is full, or once the first call of the batch has waited for
+ * the linger time, whichever happens first. Once closed, the batch being
+ * filled is dispatched and no more calls are accepted.
+ * 
+ * @author sangupta
+ *
+ * @param <T>
+ *            the type of the calls collected
+ */
+class ProviderBatcher<T> {
+	
+	/**
+	 * Maximum number of calls in a batch
+	 */
+	final int batchSize;
+	
+	/**
+	 * Maximum time in millis a call waits for the batch to fill up
+	 */
+	final long linger;
+	
+	/**
+	 * Timer on which partial batches are flushed
+	 */
+	private final ScheduledExecutorService scheduler;
+	
+	/**
+	 * Receives every batch, on the thread that completed or flushed it
+	 */
+	private final Consumer<List<T>> dispatcher;
+	
+	/**
+	 * The batch being filled, <code>null</code> if none
+	 */
+	private List<T> pending;
+	
+	/**
+	 * Flushes the batch being filled once it has lingered long enough
+	 */
+	private ScheduledFuture<?> timer;
+	
+	/**
+	 * Whether calls are no longer accepted
+	 */
+	private boolean closed;
+	
+	ProviderBatcher(int batchSize, long linger, ScheduledExecutorService scheduler, Consumer<List<T>> dispatcher) {
+		if(batchSize < 2) {
+			throw new IllegalArgumentException("Batch size must be at least two");
+		}
+		
+		if(linger < 1) {
+			throw new IllegalArgumentException("Linger time must be positive");
+		}
+		
+		this.batchSize = batchSize;
+		this.linger = linger;
+		this.scheduler = scheduler;
+		this.dispatcher = dispatcher;
+	}
+	
+	/**
+	 * Add a call to the batch being filled, dispatching the batch if this
+	 * fills it up.
+	 * 
+	 * @param call
+	 *            the call to add
+	 * 
+	 * @return <code>true</code> if added, <code>false</code> if this batcher
+	 *         has been closed
+	 */
+	boolean add(T call) {
+		List<T> full = null;
+		synchronized(this) {
+			if(this.closed) {
+				return false;
+			}
+			
+			if(this.pending == null) {
+				this.pending = new ArrayList<>(this.batchSize);
+				this.timer = this.scheduler.schedule(this::flush, this.linger, TimeUnit.MILLISECONDS);
+			}
+			
+			this.pending.add(call);
+			if(this.pending.size() >= this.batchSize) {
+				full = this.take();
+			}
+		}
+		
+		if(full != null) {
+			this.dispatcher.accept(full);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Dispatch the batch being filled, if any, without waiting for it to
+	 * fill up.
+	 * 
+	 */
+	void flush() {
+		List<T> batch;
+		synchronized(this) {
+			batch = this.take();
+		}
+		
+		if(batch != null) {
+			this.dispatcher.accept(batch);
+		}
+	}
+	
+	/**
+	 * Stop accepting calls, and dispatch the batch being filled, if any.
+	 * 
+	 */
+	void close() {
+		synchronized(this) {
+			this.closed = true;
+		}
+		
+		this.flush();
+	}
+	
+	/**
+	 * Detach the batch being filled and stop its timer. Must be called while
+	 * holding the lock.
+	 * 
+	 * @return the batch, or <code>null</code> if none
+	 */
+	private List<T> take() {
+		List<T> batch = this.pending;
+		this.pending = null;
+		
+		if(this.timer != null) {
+			this.timer.cancel(false);
+			this.timer = null;
+		}
+		
+		return batch;
+	}
+
+}
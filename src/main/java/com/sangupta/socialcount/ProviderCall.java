@@ -0,0 +1,185 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sangupta.socialcount.provider.SocialCountProvider;
+
+/**
+ * A single call to a provider for a URL that may be shared by all concurrent
+ * fetches of the same URL. The call writes into its own {@link SocialCounts}
+ * instance, from which every waiting fetch copies the values once the call
+ * completes.
+ * 
+ * The call is abandoned when the last waiting fetch gives up on it - it is
+ * then skipped if still waiting for a slot, or aborted if in progress.
+ * 
+ * A call may be made up of more than one attempt when it is hedged. Every
+ * attempt writes into an instance of its own, and the first one to succeed
+ * completes the call, which aborts the attempts still in progress.
+ * 
+ * @author sangupta
+ *
+ */
+class ProviderCall {
+	
+	/**
+	 * The provider being hit
+	 */
+	final SocialCountProvider provider;
+	
+	/**
+	 * The instance into which the provider writes the values
+	 */
+	final SocialCounts counts;
+	
+	/**
+	 * Completes once the call has been made
+	 */
+	final CompletableFuture<Void> result = new CompletableFuture<>();
+	
+	/**
+	 * Number of fetches waiting on this call
+	 */
+	private final AtomicInteger waiters = new AtomicInteger(1);
+	
+	/**
+	 * Number of attempts that have not finished yet
+	 */
+	private final AtomicInteger attempts = new AtomicInteger();
+	
+	/**
+	 * Whether the provider values were read successfully
+	 */
+	volatile boolean success;
+	
+	ProviderCall(SocialCountProvider provider, SocialCounts counts) {
+		this.provider = provider;
+		this.counts = new SocialCounts(counts.url, counts.encodedUri, counts.lastUpdated);
+	}
+	
+	/**
+	 * Attach one more fetch to this call.
+	 * 
+	 * @return <code>true</code> if attached, <code>false</code> if the call
+	 *         has already been abandoned and a new one needs to be made
+	 */
+	boolean join() {
+		while(true) {
+			int current = this.waiters.get();
+			if(current == 0 || this.result.isDone()) {
+				return false;
+			}
+			
+			if(this.waiters.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Detach a fetch that no longer needs the result of this call. The call is
+	 * abandoned once no fetch is waiting on it.
+	 * 
+	 */
+	void leave() {
+		if(this.waiters.decrementAndGet() == 0) {
+			this.result.cancel(false);
+		}
+	}
+	
+	/**
+	 * Start a new attempt for this call.
+	 * 
+	 * @return the {@link SocialCounts} instance the attempt writes into
+	 */
+	SocialCounts newAttempt() {
+		this.attempts.incrementAndGet();
+		return new SocialCounts(this.counts.url, this.counts.encodedUri, this.counts.lastUpdated);
+	}
+	
+	/**
+	 * Complete the call with the values read by an attempt, unless another
+	 * attempt did so already.
+	 * 
+	 * @param values
+	 *            the {@link SocialCounts} instance of the attempt
+	 */
+	synchronized void succeed(SocialCounts values) {
+		if(this.result.isDone()) {
+			return;
+		}
+		
+		this.provider.copyCounts(values, this.counts);
+		this.counts.copyStatus(values, this.provider.getName());
+		this.success = true;
+		this.result.complete(null);
+	}
+	
+	/**
+	 * Note that an attempt has finished. The call fails once all its attempts
+	 * have finished without any succeeding.
+	 * 
+	 * @param values
+	 *            the {@link SocialCounts} instance of the attempt
+	 * 
+	 * @param error
+	 *            the error the attempt failed with, if any
+	 */
+	synchronized void attemptDone(SocialCounts values, Throwable error) {
+		if(this.attempts.decrementAndGet() > 0 || this.result.isDone()) {
+			return;
+		}
+		
+		this.counts.copyStatus(values, this.provider.getName());
+		
+		if(error != null) {
+			this.result.completeExceptionally(error);
+			return;
+		}
+		
+		this.result.complete(null);
+	}
+	
+	/**
+	 * Copy the values fetched by this call, and the status of the call, into
+	 * the given instance.
+	 * 
+	 * @param target
+	 *            the {@link SocialCounts} instance to update
+	 * 
+	 * @return <code>true</code> if values were copied, <code>false</code> if
+	 *         the call did not succeed
+	 */
+	boolean copyTo(SocialCounts target) {
+		target.copyStatus(this.counts, this.provider.getName());
+		if(!this.success) {
+			return false;
+		}
+		
+		this.provider.copyCounts(this.counts, target);
+		return true;
+	}
+
+}
@@ -0,0 +1,236 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of calls that may be in flight to a single provider across
+ * all URLs being fetched by a client. Calls beyond the cap wait in an
+ * unbounded queue without holding any thread, and are handed over to the
+ * executor as soon as a running call completes.
+ * 
+ * @author sangupta
+ *
+ */
+class ProviderQueue {
+	
+	/**
+	 * The name of the provider this queue is for
+	 */
+	private final String name;
+	
+	/**
+	 * The executor on which the calls are run
+	 */
+	private final Executor executor;
+	
+	/**
+	 * Calls waiting for a slot
+	 */
+	private final Queue<PendingCall> pending = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Number of calls currently running
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+	
+	/**
+	 * Maximum number of calls that may run at the same time
+	 */
+	private volatile int maxConcurrency;
+	
+	/**
+	 * Whether the queue has been closed and accepts no more calls
+	 */
+	private volatile boolean closed;
+	
+	ProviderQueue(String name, Executor executor, int maxConcurrency) {
+		this.name = name;
+		this.executor = executor;
+		this.setMaxConcurrency(maxConcurrency);
+	}
+	
+	/**
+	 * Queue the given call to be run as soon as a slot is available.
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete once the call has
+	 *            run, or exceptionally if it failed or could not be scheduled.
+	 *            If the future is completed by someone else before the call
+	 *            gets a slot, the call is skipped.
+	 * 
+	 * @param call
+	 *            the provider call to run
+	 * 
+	 * @return the given future, failed right away if the queue has been
+	 *         closed
+	 */
+	public CompletableFuture<Void> submit(CompletableFuture<Void> future, Runnable call) {
+		this.pending.add(new PendingCall(future, call));
+		
+		// closed before or while adding - do not leave the call behind
+		if(this.closed) {
+			this.failPending(new RejectedExecutionException("Provider " + this.name + " queue has been closed"));
+			return future;
+		}
+		
+		this.drain();
+		return future;
+	}
+	
+	/**
+	 * Close this queue. Calls still waiting for a slot are failed with a
+	 * {@link RejectedExecutionException}, as are all calls submitted
+	 * thereafter. Calls already handed over to the executor are left to
+	 * complete.
+	 * 
+	 */
+	public void close() {
+		this.closed = true;
+		this.failPending(new RejectedExecutionException("Provider " + this.name + " queue has been closed"));
+	}
+	
+	/**
+	 * Fail every call waiting for a slot with the given error.
+	 * 
+	 * @param error
+	 *            the error to fail the calls with
+	 */
+	private void failPending(Throwable error) {
+		PendingCall call;
+		while((call = this.pending.poll()) != null) {
+			call.future.completeExceptionally(error);
+		}
+	}
+	
+	/**
+	 * Start as many pending calls as there are free slots.
+	 * 
+	 */
+	private void drain() {
+		while(!this.pending.isEmpty()) {
+			int current = this.inFlight.get();
+			if(current >= this.maxConcurrency) {
+				return;
+			}
+			
+			if(!this.inFlight.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			
+			final PendingCall call = this.pending.poll();
+			if(call == null) {
+				this.inFlight.decrementAndGet();
+				continue;
+			}
+			
+			try {
+				this.executor.execute(() -> {
+					try {
+						call.run();
+					} finally {
+						this.inFlight.decrementAndGet();
+						this.drain();
+					}
+				});
+			} catch(RejectedExecutionException e) {
+				// the executor is gone - nothing queued can ever run
+				this.inFlight.decrementAndGet();
+				call.future.completeExceptionally(e);
+				this.failPending(e);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Change the maximum number of concurrent calls to this provider.
+	 * 
+	 * @param maxConcurrency
+	 *            the new maximum, at least one
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is less than one
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		if(maxConcurrency < 1) {
+			throw new IllegalArgumentException("Max concurrency must be at least one");
+		}
+		
+		this.maxConcurrency = maxConcurrency;
+		this.drain();
+	}
+	
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+	
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+	
+	public int getPending() {
+		return this.pending.size();
+	}
+	
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * A call waiting in the queue along with the future to complete.
+	 * 
+	 */
+	private static class PendingCall {
+		
+		private final Runnable call;
+		
+		private final CompletableFuture<Void> future;
+		
+		PendingCall(CompletableFuture<Void> future, Runnable call) {
+			this.future = future;
+			this.call = call;
+		}
+		
+		void run() {
+			if(this.future.isDone()) {
+				// cancelled or timed out while waiting
+				return;
+			}
+			
+			try {
+				this.call.run();
+				this.future.complete(null);
+			} catch(Throwable t) {
+				this.future.completeExceptionally(t);
+			}
+		}
+		
+	}
+
+}
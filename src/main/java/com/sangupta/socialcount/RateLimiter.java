@@ -0,0 +1,255 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits the rate at which calls are made to a single
+ * provider, across all threads and entry points of a client. Calls over the
+ * limit either wait for their turn, or fail right away if the limiter is set
+ * to fail fast.
+ * 
+ * The rate adapts to the provider: every throttled call (HTTP 429) halves the
+ * current rate, and every successful call raises it by a small step until the
+ * configured rate is reached again.
+ * 
+ * @author sangupta
+ *
+ */
+public class RateLimiter {
+	
+	/**
+	 * The HTTP status code providers use to throttle clients
+	 */
+	public static final int TOO_MANY_REQUESTS = 429;
+	
+	/**
+	 * Fraction of the configured rate added after each successful call
+	 */
+	private static final double INCREASE_STEP = 0.02;
+	
+	/**
+	 * Fraction of the configured rate below which the rate never drops
+	 */
+	private static final double MIN_RATE_FRACTION = 0.01;
+	
+	/**
+	 * Minimum time between two decreases, so that a burst of throttled calls
+	 * that were in flight together halves the rate only once
+	 */
+	private static final long DECREASE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	
+	/**
+	 * The configured, and maximum, rate in calls per second
+	 */
+	private final double maxRate;
+	
+	/**
+	 * The maximum number of calls that may be made at once
+	 */
+	private final int burst;
+	
+	/**
+	 * Whether calls over the limit fail instead of waiting
+	 */
+	private volatile boolean failFast;
+	
+	/**
+	 * The current rate in calls per second
+	 */
+	private double rate;
+	
+	/**
+	 * Tokens available - negative when calls are waiting for their turn
+	 */
+	private double tokens;
+	
+	/**
+	 * The time at which tokens were last added
+	 */
+	private long refilledAt;
+	
+	/**
+	 * The time at which the rate was last decreased
+	 */
+	private long decreasedAt;
+	
+	/**
+	 * Create a limiter that lets the given number of calls per second
+	 * through, and up to <code>burst</code> calls at once.
+	 * 
+	 * @param permitsPerSecond
+	 *            the maximum number of calls per second
+	 * 
+	 * @param burst
+	 *            the maximum number of calls that may be made at once
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the rate is not positive or the burst is less than one
+	 */
+	public RateLimiter(double permitsPerSecond, int burst) {
+		if(!(permitsPerSecond > 0)) {
+			throw new IllegalArgumentException("Rate must be positive");
+		}
+		
+		if(burst < 1) {
+			throw new IllegalArgumentException("Burst must be at least one");
+		}
+		
+		this.maxRate = permitsPerSecond;
+		this.rate = permitsPerSecond;
+		this.burst = burst;
+		this.tokens = burst;
+		this.refilledAt = System.nanoTime();
+		this.decreasedAt = this.refilledAt - DECREASE_INTERVAL;
+	}
+	
+	/**
+	 * Take a token for a call, waiting for it if needed and the limiter does
+	 * not fail fast.
+	 * 
+	 * @param maxWait
+	 *            the maximum time in millis to wait for a token
+	 * 
+	 * @return the time in millis spent waiting, or <code>-1</code> if no
+	 *         token could be had within the time
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public long acquire(long maxWait) throws InterruptedException {
+		long wait = this.reserve(TimeUnit.MILLISECONDS.toNanos(maxWait));
+		if(wait < 0) {
+			return -1;
+		}
+		
+		if(wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		
+		return TimeUnit.NANOSECONDS.toMillis(wait);
+	}
+	
+	/**
+	 * Take a token if one is available right now.
+	 * 
+	 * @return <code>true</code> if a token was taken
+	 */
+	public boolean tryAcquire() {
+		return this.reserve(0) == 0;
+	}
+	
+	/**
+	 * Reserve a token, possibly one that becomes available in the future. No
+	 * token is taken if it would only become available once the caller has
+	 * run out of time, so that a caller who would give up never wastes one.
+	 * 
+	 * @param maxWait
+	 *            the maximum time in nanos the caller may wait
+	 * 
+	 * @return the time in nanos until the reserved token is available, or
+	 *         <code>-1</code> if none was reserved
+	 */
+	synchronized long reserve(long maxWait) {
+		this.refill(System.nanoTime());
+		
+		if(this.tokens >= 1) {
+			this.tokens -= 1;
+			return 0;
+		}
+		
+		if(this.failFast) {
+			return -1;
+		}
+		
+		long wait = (long) ((1 - this.tokens) * TimeUnit.SECONDS.toNanos(1) / this.rate);
+		if(wait >= maxWait) {
+			return -1;
+		}
+		
+		this.tokens -= 1;
+		return wait;
+	}
+	
+	private void refill(long now) {
+		double added = (now - this.refilledAt) * this.rate / TimeUnit.SECONDS.toNanos(1);
+		this.tokens = Math.min(this.burst, this.tokens + added);
+		this.refilledAt = now;
+	}
+	
+	/**
+	 * Record that a call went through, raising the current rate towards the
+	 * configured one.
+	 */
+	public synchronized void onSuccess() {
+		if(this.rate >= this.maxRate) {
+			return;
+		}
+		
+		this.refill(System.nanoTime());
+		this.rate = Math.min(this.maxRate, this.rate + this.maxRate * INCREASE_STEP);
+	}
+	
+	/**
+	 * Record that a call was throttled by the provider, halving the current
+	 * rate.
+	 */
+	public synchronized void onThrottled() {
+		long now = System.nanoTime();
+		if(now - this.decreasedAt < DECREASE_INTERVAL) {
+			return;
+		}
+		
+		this.refill(now);
+		this.rate = Math.max(this.maxRate * MIN_RATE_FRACTION, this.rate / 2);
+		this.decreasedAt = now;
+	}
+	
+	/**
+	 * Return the rate at which calls are currently let through.
+	 * 
+	 * @return the current rate in calls per second
+	 */
+	public synchronized double getRate() {
+		return this.rate;
+	}
+	
+	// Usual accessors follow
+	
+	public double getMaxRate() {
+		return this.maxRate;
+	}
+	
+	public int getBurst() {
+		return this.burst;
+	}
+	
+	public boolean isFailFast() {
+		return this.failFast;
+	}
+	
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+}
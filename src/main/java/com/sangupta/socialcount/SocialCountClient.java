@@ -21,205 +21,2240 @@
 
 package com.sangupta.socialcount;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.http.entity.ContentType;
-
-import com.google.gson.FieldNamingPolicy;
-import com.sangupta.jerry.http.WebInvoker;
-import com.sangupta.jerry.http.WebRequest;
-import com.sangupta.jerry.http.WebRequestMethod;
-import com.sangupta.jerry.http.WebResponse;
+import com.google.gson.stream.MalformedJsonException;
 import com.sangupta.jerry.util.AssertUtils;
-import com.sangupta.jerry.util.GsonUtils;
-import com.sangupta.jerry.util.UriUtils;
-import com.sangupta.socialcount.web.FacebookResponse;
-import com.sangupta.socialcount.web.GoogleRequest;
-import com.sangupta.socialcount.web.GoogleResponse;
-import com.sangupta.socialcount.web.LinkedinResponse;
-import com.sangupta.socialcount.web.PinterestResponse;
-import com.sangupta.socialcount.web.TwitterResponse;
+import com.sangupta.socialcount.cache.SocialCountCache;
+import com.sangupta.socialcount.history.CountHistory;
+import com.sangupta.socialcount.http.HttpTransport;
+import com.sangupta.socialcount.http.PooledHttpTransport;
+import com.sangupta.socialcount.metrics.ProviderMetrics;
+import com.sangupta.socialcount.metrics.SocialCountMetrics;
+import com.sangupta.socialcount.provider.AbstractSocialCountProvider;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.GooglePlusOneProvider;
+import com.sangupta.socialcount.provider.GoogleSharesProvider;
+import com.sangupta.socialcount.provider.LinkedinProvider;
+import com.sangupta.socialcount.provider.PinterestProvider;
+import com.sangupta.socialcount.provider.ProviderRequest;
+import com.sangupta.socialcount.provider.ProviderResponse;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
 
 /**
  * Simple client to fetch the social share counts from various social
- * media sites for a given URL. The URL is canonicalized before sending
- * it for media shares.
+ * media sites for a given URL. The URL is canonicalized by a
+ * {@link UrlCanonicalizer} before sending it for media shares, and the
+ * canonical URL is what results are cached, coalesced and stored under.
  * 
  * The client is thread-safe and thus you can hit it as hard as you
- * want.
+ * want. Each instance owns a bounded thread pool that is reused for every
+ * provider call across all URLs fetched via the instance. The pool is
+ * released when the client is closed. The static methods delegate to a
+ * shared default instance.
+ * 
+ * The providers hit by the client are pluggable - the default ones may be
+ * tuned, replaced or removed, and new ones added via
+ * {@link #register(SocialCountProvider)}.
  * 
  * @author sangupta
  *
  */
-public class SocialCountClient {
+public class SocialCountClient implements Closeable {
+	
+	/**
+	 * An internal instance that is an ALL TRUE instance - that is all providers
+	 * will be hit.
+	 * 
+	 */
+	private static final SocialCountConfig ALL_TRUE_CONFIG = new SocialCountConfig();
+	
+	/**
+	 * Default number of threads in the provider pool
+	 */
+	public static final int DEFAULT_THREADS = 24;
+	
+	/**
+	 * Default number of provider calls that may wait in the pool queue
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+	
+	/**
+	 * Default number of URLs a batch fetch keeps in progress
+	 */
+	public static final int DEFAULT_BATCH_WINDOW = 256;
+	
+	/**
+	 * Name of the Twitter provider
+	 */
+	public static final String TWITTER = TwitterProvider.NAME;
+	
+	/**
+	 * Name of the Facebook provider
+	 */
+	public static final String FACEBOOK = FacebookProvider.NAME;
+	
+	/**
+	 * Name of the Google Plus One provider
+	 */
+	public static final String GOOGLE_PLUS_ONE = GooglePlusOneProvider.NAME;
+	
+	/**
+	 * Name of the Google Plus shares provider
+	 */
+	public static final String GOOGLE_SHARES = GoogleSharesProvider.NAME;
+	
+	/**
+	 * Name of the LinkedIn provider
+	 */
+	public static final String LINKEDIN = LinkedinProvider.NAME;
+	
+	/**
+	 * Name of the Pinterest provider
+	 */
+	public static final String PINTEREST = PinterestProvider.NAME;
+	
+	/**
+	 * Counter used to name the threads of all client pools
+	 */
+	private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+	
+	/**
+	 * The shared instance used by all static methods
+	 */
+	private static SocialCountClient defaultClient;
+	
+	/**
+	 * The pool on which all provider calls of this client are run
+	 */
+	private final ExecutorService executor;
+	
+	/**
+	 * How the provider calls are run
+	 */
+	private final ExecutionMode executionMode;
+	
+	/**
+	 * Timer used to enforce time budgets and deadlines
+	 */
+	private final ScheduledThreadPoolExecutor scheduler = newTimer();
+	
+	/**
+	 * The transport created by this client, whose connection pool is kept
+	 * large enough for the concurrency caps of the providers
+	 */
+	private final PooledHttpTransport ownTransport = new PooledHttpTransport();
+	
+	/**
+	 * The transport used to make all provider calls
+	 */
+	private volatile HttpTransport transport = this.ownTransport;
+	
+	/**
+	 * Provider calls in flight keyed by provider and URL
+	 */
+	private final ConcurrentMap<String, ProviderCall> inFlight = new ConcurrentHashMap<>();
+	
+	/**
+	 * The optional cache in front of the providers
+	 */
+	private volatile SocialCountCache cache;
+	
+	/**
+	 * The optional history every fetched value is recorded in
+	 */
+	private volatile CountHistory history;
+	
+	/**
+	 * Turns the URLs fetched into their canonical form, <code>null</code> to
+	 * use URLs as given
+	 */
+	private volatile UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+	
+	/**
+	 * The providers registered with this client in the order they are hit
+	 */
+	private final List<SocialCountProvider> providers = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Per provider queues that cap the number of concurrent calls to each
+	 * provider across all URLs
+	 */
+	private final Map<String, ProviderQueue> queues = new ConcurrentHashMap<>();
+	
+	/**
+	 * Per provider rate limiters shared by all calls made by this client
+	 */
+	private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+	
+	/**
+	 * Per provider circuit breakers that skip providers which keep failing
+	 */
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+	
+	/**
+	 * Per provider policies for hedging slow calls
+	 */
+	private final Map<String, HedgePolicy> hedging = new ConcurrentHashMap<>();
+	
+	/**
+	 * Per provider collectors that combine calls into batched requests
+	 */
+	private final Map<String, ProviderBatcher<BatchedAttempt>> batchers = new ConcurrentHashMap<>();
+	
+	/**
+	 * Calls waiting on the timer for their rate limit permit to be due
+	 */
+	private final Set<CompletableFuture<Void>> awaitingPermit = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Latencies, counters and gauges of the calls made by this client
+	 */
+	private final SocialCountMetrics metrics = new SocialCountMetrics();
+	
+	/**
+	 * Maximum number of URLs a batch fetch keeps in progress or waiting to be
+	 * consumed
+	 */
+	private volatile int batchWindow = DEFAULT_BATCH_WINDOW;
+	
+	/**
+	 * Create a new client with {@link #DEFAULT_THREADS} threads.
+	 * 
+	 */
+	public SocialCountClient() {
+		this(DEFAULT_THREADS);
+	}
+	
+	/**
+	 * Create a new client using the given number of threads for making
+	 * provider calls.
+	 * 
+	 * @param threads
+	 *            the number of threads in the pool
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is less than one
+	 */
+	public SocialCountClient(int threads) {
+		this(threads, DEFAULT_QUEUE_SIZE);
+	}
+	
+	/**
+	 * Create a new client using the given number of threads for making
+	 * provider calls, and a bounded queue for calls waiting to be run. Once
+	 * the queue is full, the calling thread runs the provider call itself
+	 * which slows down the submitter. Each provider may use as many threads at
+	 * a time as declared by {@link SocialCountProvider#getMaxConcurrency()},
+	 * which can be changed using {@link #setMaxConcurrency(String, int)}.
+	 * 
+	 * @param threads
+	 *            the number of threads in the pool
+	 * 
+	 * @param queueSize
+	 *            the maximum number of provider calls that may wait for a
+	 *            thread
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number of threads or the queue size is less than one
+	 */
+	public SocialCountClient(int threads, int queueSize) {
+		this.executor = this.newPool(threads, queueSize);
+		this.executionMode = ExecutionMode.PLATFORM;
+		this.registerDefaults();
+	}
+	
+	/**
+	 * Create a new client that runs its provider calls in the given mode.
+	 * When {@link ExecutionMode#VIRTUAL} is asked for, every call runs on a
+	 * virtual thread of its own and only the per provider concurrency caps
+	 * limit the calls in flight, which can then be raised by orders of
+	 * magnitude via {@link #setMaxConcurrency(String, int)}. The connection
+	 * pool of the transport created by the client grows along with the caps,
+	 * while a transport set via {@link #setTransport(HttpTransport)} must
+	 * allow as many connections per host itself. On JVMs without
+	 * virtual threads the client falls back to a pool of
+	 * {@link #DEFAULT_THREADS} platform threads, as reported by
+	 * {@link #getExecutionMode()}.
+	 * 
+	 * @param mode
+	 *            the {@link ExecutionMode} to use
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the mode is <code>null</code>
+	 */
+	public SocialCountClient(ExecutionMode mode) {
+		if(mode == null) {
+			throw new IllegalArgumentException("Execution mode cannot be null");
+		}
+		
+		ExecutorService executor = null;
+		if(mode == ExecutionMode.VIRTUAL) {
+			executor = VirtualThreads.newExecutor("socialcount-" + POOL_COUNTER.incrementAndGet() + "-v");
+		}
+		
+		if(executor == null) {
+			executor = this.newPool(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+			mode = ExecutionMode.PLATFORM;
+		}
+		
+		this.executor = executor;
+		this.executionMode = mode;
+		this.registerDefaults();
+	}
+	
+	/**
+	 * Create the pool of platform threads the provider calls are run on. The
+	 * transport is closed once the pool terminates. Once the queue is full the
+	 * submitter runs the call itself, while calls submitted after the pool
+	 * has been shut down are rejected so that they can be failed.
+	 * 
+	 * @param threads
+	 *            the number of threads in the pool
+	 * 
+	 * @param queueSize
+	 *            the maximum number of provider calls that may wait for a
+	 *            thread
+	 * 
+	 * @return the {@link ThreadPoolExecutor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number of threads or the queue size is less than one
+	 */
+	private ThreadPoolExecutor newPool(int threads, int queueSize) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least one");
+		}
+		
+		if(queueSize < 1) {
+			throw new IllegalArgumentException("Queue size must be at least one");
+		}
+		
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ClientThreadFactory(), SocialCountClient::runOrReject) {
+			
+			@Override
+			protected void terminated() {
+				closeTransport();
+			}
+			
+		};
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
+	/**
+	 * Run a call that does not fit in the queue of the pool in the calling
+	 * thread, unless the pool has been shut down.
+	 * 
+	 * @param call
+	 *            the call that was not accepted
+	 * 
+	 * @param pool
+	 *            the pool that did not accept the call
+	 * 
+	 * @throws RejectedExecutionException
+	 *             if the pool has been shut down
+	 */
+	private static void runOrReject(Runnable call, ThreadPoolExecutor pool) {
+		if(pool.isShutdown()) {
+			throw new RejectedExecutionException("Client has already been closed");
+		}
+		
+		call.run();
+	}
+	
+	private static ScheduledThreadPoolExecutor newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ClientThreadFactory());
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+	
+	/**
+	 * Register the default providers.
+	 * 
+	 */
+	private void registerDefaults() {
+		this.register(new TwitterProvider());
+		this.register(new FacebookProvider());
+		this.register(new GooglePlusOneProvider());
+		this.register(new GoogleSharesProvider());
+		this.register(new LinkedinProvider());
+		this.register(new PinterestProvider());
+	}
+	
+	/**
+	 * Return the shared client instance that backs all static methods. A new
+	 * instance is created if none exists or the existing one was closed.
+	 * 
+	 * @return the default {@link SocialCountClient}
+	 */
+	public static synchronized SocialCountClient getDefault() {
+		if(defaultClient == null || defaultClient.isClosed()) {
+			defaultClient = new SocialCountClient();
+		}
+		
+		return defaultClient;
+	}
+	
+	/**
+	 * Find various social counts for the given URL. The returned object
+	 * contains the various values. If a value is <code>-1</code>, it represents
+	 * that something went wrong while fetching the value. All APIs are run
+	 * sequentially one after another and thus may take time.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @return the {@link SocialCounts} containing all metrics
+	 */
+	public static SocialCounts getSocialCounts(String url) {
+		return getSocialCounts(url, ALL_TRUE_CONFIG);
+	}
+	
+	/**
+	 * Find various social counts for the given URL. This method allows you to
+	 * control the providers that you want to hit.
+	 * 
+	 * The returned object contains the various values. If a value is
+	 * <code>-1</code>, it represents that something went wrong while fetching
+	 * the value. All APIs are run sequentially one after another and thus may
+	 * take time.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @param config
+	 *            the provider configuration on which ones to hit
+	 * 
+	 * @return the {@link SocialCounts} containing all metrics
+	 * 
+	 */
+	public static SocialCounts getSocialCounts(String url, SocialCountConfig config) {
+		return getDefault().fetchSequential(url, config);
+	}
+
+	/**
+	 * Compute the social counts from all providers, and return the metrics.
+	 * The APIs are run in parallel to speed up the fetching of counts.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @return the {@link SocialCounts} instance containing updated metrics
+	 */
+	public static SocialCounts getSocialCountsParallel(String url) {
+		return getSocialCountsParallel(url, ALL_TRUE_CONFIG);
+	}
+	
+	/**
+	 * Compute the social counts from given chosen providers using the
+	 * {@link SocialCountConfig} instance. The APIs are run in parallel to speed
+	 * up the fetching of counts.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return the {@link SocialCounts} instance containing updated metrics
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 */
+	public static SocialCounts getSocialCountsParallel(String url, SocialCountConfig config) {
+		return getDefault().fetch(url, config);
+	}
+	
+	/**
+	 * Find various social counts for the given URL hitting all providers
+	 * sequentially in the calling thread.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @param config
+	 *            the provider configuration on which ones to hit
+	 * 
+	 * @return the {@link SocialCounts} containing all metrics
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 */
+	public SocialCounts fetchSequential(String url, SocialCountConfig config) {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		// prepare
+		SocialCounts counts = new SocialCounts(this.canonicalize(url));
+
+		// hit the various services one after another
+		final long start = System.nanoTime();
+		for(SocialCountProvider provider : this.providers) {
+			if(provider.isEnabled(config) && !this.readCache(provider, counts, config)) {
+				int timeout = timeoutFor(provider, config, start);
+				if(timeout <= 0) {
+					counts.setStatus(provider.getName(), FetchStatus.TIMEOUT, 0, 0);
+				} else if(!this.isOpen(provider, counts)) {
+					this.invoke(provider, counts, timeout, null, true);
+				}
+			}
+		}
+		
+		// mark complete - so that we can note down the time taken here
+		counts.markComplete();
+		
+		return counts;
+	}
+	
+	/**
+	 * Compute the social counts from all providers in parallel using the
+	 * thread pool of this client.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @return the {@link SocialCounts} instance containing updated metrics
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 */
+	public SocialCounts fetch(String url) {
+		return fetch(url, ALL_TRUE_CONFIG);
+	}
+	
+	/**
+	 * Compute the social counts from given chosen providers in parallel using
+	 * the thread pool of this client.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return the {@link SocialCounts} instance containing updated metrics
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public SocialCounts fetch(String url, SocialCountConfig config) {
+		return this.fetchAsync(url, config).join();
+	}
+	
+	/**
+	 * Compute the social counts from all providers without blocking the
+	 * calling thread.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the
+	 *         {@link SocialCounts} once all providers have finished
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public CompletableFuture<SocialCounts> fetchAsync(String url) {
+		return fetchAsync(url, ALL_TRUE_CONFIG);
+	}
+	
+	/**
+	 * Compute the social counts from given chosen providers without blocking
+	 * the calling thread. The returned future completes once every selected
+	 * provider has either finished or failed. It never completes
+	 * exceptionally because of a provider failure - the corresponding value
+	 * in {@link SocialCounts} is left at <code>-1</code> instead.
+	 * 
+	 * If the config specifies a {@link SocialCountConfig#timeBudget} the
+	 * future completes with the partially filled counts as soon as the budget
+	 * elapses, and calls that have not completed are cancelled. Calls waiting
+	 * for a slot are never made, and the response of a call in progress is
+	 * discarded. The same applies to a single provider once the
+	 * {@link SocialCountConfig#providerDeadline} elapses.
+	 * 
+	 * @param url
+	 *            the url to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the
+	 *         {@link SocialCounts} once all providers have finished
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public CompletableFuture<SocialCounts> fetchAsync(String url, SocialCountConfig config) {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		if(this.isClosed()) {
+			throw new IllegalStateException("Client has already been closed");
+		}
+		
+		// prepare
+		final SocialCounts counts = new SocialCounts(this.canonicalize(url));
+		final long start = System.nanoTime();
+		List<CompletableFuture<Void>> list = new ArrayList<>();
+		
+		// add tasks one by one
+		for(SocialCountProvider provider : this.providers) {
+			if(provider.isEnabled(config) && !this.readCache(provider, counts, config)) {
+				list.add(this.submit(provider, counts, config, start));
+			}
+		}
+		
+		return CompletableFuture.allOf(list.toArray(new CompletableFuture<?>[list.size()])).handle((result, error) -> {
+			counts.markComplete();
+			return counts;
+		});
+	}
+	
+	/**
+	 * Fetch the values from the given provider into the given instance in the
+	 * calling thread.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @param provider
+	 *            the name of the registered provider to hit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no such provider is registered
+	 */
+	public void fetch(SocialCounts counts, String provider) {
+		SocialCountProvider socialCountProvider = this.getProvider(provider);
+		if(!this.isOpen(socialCountProvider, counts)) {
+			this.invoke(socialCountProvider, counts, socialCountProvider.getTimeout(), null, true);
+		}
+	}
+	
+	/**
+	 * Fetch the values from the given provider into the given instance on the
+	 * client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @param provider
+	 *            the name of the registered provider to hit
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no such provider is registered
+	 */
+	public CompletableFuture<SocialCounts> fetchAsync(SocialCounts counts, String provider) {
+		return this.submit(this.getProvider(provider), counts, ALL_TRUE_CONFIG, System.nanoTime()).thenApply(result -> counts);
+	}
+	
+	/**
+	 * Fetch the twitter count for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getTwitterCountAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, TWITTER);
+	}
+	
+	/**
+	 * Fetch the facebook counts for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getFacebookCountAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, FACEBOOK);
+	}
+	
+	/**
+	 * Fetch the Google +1 count for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getGooglePlusOneCountAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, GOOGLE_PLUS_ONE);
+	}
+	
+	/**
+	 * Fetch the Google+ shares for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getGoogleSharesAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, GOOGLE_SHARES);
+	}
+	
+	/**
+	 * Fetch the linkedin shares for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getLinkedinCountAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, LINKEDIN);
+	}
+	
+	/**
+	 * Fetch the pinterest pins for the given instance on the client pool.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated and containing
+	 *            the url
+	 * 
+	 * @return a {@link CompletableFuture} that completes with the same
+	 *         {@link SocialCounts} instance once the provider has been hit
+	 */
+	public CompletableFuture<SocialCounts> getPinterestCountAsync(SocialCounts counts) {
+		return this.fetchAsync(counts, PINTEREST);
+	}
+	
+	/**
+	 * Fetch counts for all the given URLs. See
+	 * {@link #fetchAll(Iterator, SocialCountConfig)} for details.
+	 * 
+	 * @param urls
+	 *            the urls to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return an {@link Iterator} over the {@link SocialCounts} in the order
+	 *         in which they complete
+	 */
+	public Iterator<SocialCounts> fetchAll(Iterable<String> urls, SocialCountConfig config) {
+		return this.fetchAll(urls.iterator(), config);
+	}
+	
+	/**
+	 * Fetch counts for all the given URLs. The (URL, provider) calls are
+	 * scheduled against the per provider concurrency caps of this client, and
+	 * thus the throughput is only limited by the capacity allowed to each
+	 * provider. The returned iterator hands back the results in the order in
+	 * which they complete, blocking in {@link Iterator#next()} until the next
+	 * one is available. <code>null</code> or empty URLs are skipped.
+	 * 
+	 * URLs are read from the given iterator lazily, and no more than
+	 * {@link #getBatchWindow()} URLs are fetched or held waiting to be
+	 * consumed at any time. A slow consumer thus throttles the fetchers.
+	 * 
+	 * @param urls
+	 *            the urls to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return an {@link Iterator} over the {@link SocialCounts} in the order
+	 *         in which they complete
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public Iterator<SocialCounts> fetchAll(Iterator<String> urls, SocialCountConfig config) {
+		return new BatchIterator(this, urls, config, this.batchWindow);
+	}
+	
+	/**
+	 * Fetch counts for all the given URLs and hand each one to the given sink
+	 * as soon as it completes. The sink is called in the calling thread, and
+	 * this method returns once all URLs have been handed over. See
+	 * {@link #fetchAll(Iterator, SocialCountConfig)} for details on how URLs
+	 * are scheduled.
+	 * 
+	 * @param urls
+	 *            the urls to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @param sink
+	 *            the {@link Consumer} that receives every {@link SocialCounts}
+	 * 
+	 * @return the number of results handed to the sink
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public long fetchAll(Iterator<String> urls, SocialCountConfig config, Consumer<SocialCounts> sink) {
+		Iterator<SocialCounts> results = this.fetchAll(urls, config);
+		
+		long delivered = 0;
+		while(results.hasNext()) {
+			sink.accept(results.next());
+			delivered++;
+		}
+		
+		return delivered;
+	}
+	
+	/**
+	 * Fetch counts for all the given URLs as a sequential {@link Stream} in
+	 * the order in which they complete. See
+	 * {@link #fetchAll(Iterator, SocialCountConfig)} for details on how URLs
+	 * are scheduled.
+	 * 
+	 * @param urls
+	 *            the urls to analyze
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} containing which providers to
+	 *            hit
+	 * 
+	 * @return a {@link Stream} of {@link SocialCounts}
+	 */
+	public Stream<SocialCounts> stream(Iterator<String> urls, SocialCountConfig config) {
+		Spliterator<SocialCounts> spliterator = Spliterators.spliteratorUnknownSize(this.fetchAll(urls, config), Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false);
+	}
+	
+	/**
+	 * Return the maximum number of URLs that a batch fetch keeps in progress
+	 * or waiting to be consumed.
+	 * 
+	 * @return the batch window
+	 */
+	public int getBatchWindow() {
+		return this.batchWindow;
+	}
+	
+	/**
+	 * Change the maximum number of URLs that a batch fetch keeps in progress
+	 * or waiting to be consumed. Only affects batches started afterwards.
+	 * 
+	 * @param batchWindow
+	 *            the batch window, at least one
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is less than one
+	 */
+	public void setBatchWindow(int batchWindow) {
+		if(batchWindow < 1) {
+			throw new IllegalArgumentException("Batch window must be at least one");
+		}
+		
+		this.batchWindow = batchWindow;
+	}
+	
+	/**
+	 * Change the maximum number of calls that may be in flight to the given
+	 * provider at any time across all URLs fetched by this client. The
+	 * connection pool of the transport created by this client is grown to
+	 * match, as calls beyond its limits would fail waiting for a connection.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param maxConcurrency
+	 *            the maximum number of concurrent calls
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is unknown or the value is less than one
+	 */
+	public void setMaxConcurrency(String provider, int maxConcurrency) {
+		this.getQueue(provider).setMaxConcurrency(maxConcurrency);
+		this.sizeTransport();
+	}
+	
+	/**
+	 * Size the connection pool of the transport created by this client so
+	 * that every provider can use its full concurrency cap. The pool never
+	 * shrinks below the defaults of {@link PooledHttpTransport}.
+	 * 
+	 */
+	private synchronized void sizeTransport() {
+		int perHost = PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+		int total = 0;
+		for(ProviderQueue queue : this.queues.values()) {
+			perHost = Math.max(perHost, queue.getMaxConcurrency());
+			total += queue.getMaxConcurrency();
+		}
+		
+		this.ownTransport.setMaxConnections(Math.max(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS, total), perHost);
+	}
+	
+	/**
+	 * Return the maximum number of calls that may be in flight to the given
+	 * provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @return the maximum number of concurrent calls
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is unknown
+	 */
+	public int getMaxConcurrency(String provider) {
+		return this.getQueue(provider).getMaxConcurrency();
+	}
+	
+	/**
+	 * Limit the rate at which the given provider is called by this client,
+	 * across all threads and entry points. Calls over the limit wait for
+	 * their turn, within their timeout, unless the returned limiter is set to
+	 * fail fast. The rate is lowered whenever the provider throttles a call,
+	 * and recovers gradually up to the given rate.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param permitsPerSecond
+	 *            the maximum number of calls per second
+	 * 
+	 * @param burst
+	 *            the maximum number of calls that may be made at once
+	 * 
+	 * @return the {@link RateLimiter} now in use for the provider
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty, the rate is not positive or
+	 *             the burst is less than one
+	 */
+	public RateLimiter setRateLimit(String provider, double permitsPerSecond, int burst) {
+		RateLimiter limiter = new RateLimiter(permitsPerSecond, burst);
+		this.setRateLimiter(provider, limiter);
+		return limiter;
+	}
+	
+	/**
+	 * Use the given rate limiter for all calls to the given provider. The
+	 * same limiter may be shared between clients to enforce a single limit.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param limiter
+	 *            the {@link RateLimiter} to use, or <code>null</code> to
+	 *            remove the limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty
+	 */
+	public void setRateLimiter(String provider, RateLimiter limiter) {
+		if(AssertUtils.isEmpty(provider)) {
+			throw new IllegalArgumentException("Provider name cannot be empty");
+		}
+		
+		if(limiter == null) {
+			this.limiters.remove(provider);
+			return;
+		}
+		
+		this.limiters.put(provider, limiter);
+	}
+	
+	/**
+	 * Return the rate limiter in use for the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @return the {@link RateLimiter}, or <code>null</code> if the provider
+	 *         is not rate limited
+	 */
+	public RateLimiter getRateLimiter(String provider) {
+		return this.limiters.get(provider);
+	}
+	
+	/**
+	 * Use the given circuit breaker for the given provider. Every provider
+	 * gets a {@link CircuitBreaker} with default settings when registered.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param breaker
+	 *            the {@link CircuitBreaker} to use, or <code>null</code> to
+	 *            never skip the provider
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty
+	 */
+	public void setCircuitBreaker(String provider, CircuitBreaker breaker) {
+		if(AssertUtils.isEmpty(provider)) {
+			throw new IllegalArgumentException("Provider name cannot be empty");
+		}
+		
+		if(breaker == null) {
+			this.breakers.remove(provider);
+			return;
+		}
+		
+		this.breakers.put(provider, breaker);
+	}
+	
+	/**
+	 * Return the circuit breaker in use for the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @return the {@link CircuitBreaker}, or <code>null</code> if there is
+	 *         none
+	 */
+	public CircuitBreaker getCircuitBreaker(String provider) {
+		return this.breakers.get(provider);
+	}
+	
+	/**
+	 * Hedge calls to the given provider that take longer than the given
+	 * percentile of its recent latencies: a duplicate request is sent and
+	 * whichever answers first is used, the other being discarded. Hedges
+	 * count against the concurrency cap and rate limit of the provider, and
+	 * are not sent when calls are already waiting for either. Only calls made
+	 * on the client pool are hedged.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param percentile
+	 *            the percentile, like <code>95</code>, or zero to stop
+	 *            hedging
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty, or the percentile is not
+	 *             zero and not between zero and 100
+	 */
+	public void setHedgePercentile(String provider, double percentile) {
+		if(AssertUtils.isEmpty(provider)) {
+			throw new IllegalArgumentException("Provider name cannot be empty");
+		}
+		
+		if(percentile == 0) {
+			this.hedging.remove(provider);
+			return;
+		}
+		
+		this.hedging.put(provider, new HedgePolicy(percentile));
+	}
+	
+	/**
+	 * Return the percentile of recent latencies after which calls to the
+	 * given provider are hedged.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @return the percentile, or zero if calls are not hedged
+	 */
+	public double getHedgePercentile(String provider) {
+		HedgePolicy policy = this.hedging.get(provider);
+		return policy != null ? policy.percentile : 0;
+	}
+	
+	/**
+	 * Combine the calls to the given provider into batched requests, for
+	 * providers whose API can answer for many URLs at once. Calls wait until
+	 * the batch is full or the first call in it has waited for the linger
+	 * time, and the batch then takes a single slot and a single permit of
+	 * the provider. Hedges are never batched.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #FACEBOOK}
+	 * 
+	 * @param batchSize
+	 *            the maximum number of URLs per request, up to
+	 *            {@link SocialCountProvider#getMaxBatchSize()}, or one to
+	 *            stop batching
+	 * 
+	 * @param linger
+	 *            the maximum time in millis a call waits for the batch to
+	 *            fill up, at least one when batching - ignored when the batch
+	 *            size is one
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is unknown, the batch size is less than one
+	 *             or more than the provider supports, or the batch size is
+	 *             more than one and the linger time is not positive or the
+	 *             provider does not implement the batch methods of
+	 *             {@link SocialCountProvider}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the client has been closed
+	 */
+	public void setBatching(String provider, int batchSize, long linger) {
+		SocialCountProvider socialCountProvider = this.getProvider(provider);
+		if(batchSize < 1 || batchSize > socialCountProvider.getMaxBatchSize()) {
+			throw new IllegalArgumentException("Batch size must be between one and " + socialCountProvider.getMaxBatchSize());
+		}
+		
+		if(batchSize > 1 && linger < 1) {
+			throw new IllegalArgumentException("Linger time must be positive");
+		}
+		
+		if(batchSize > 1 && !implementsBatching(socialCountProvider)) {
+			throw new IllegalArgumentException("Provider " + provider + " does not implement batch requests");
+		}
+		
+		if(this.isClosed()) {
+			throw new IllegalStateException("Client has already been closed");
+		}
+		
+		ProviderBatcher<BatchedAttempt> previous;
+		if(batchSize == 1) {
+			previous = this.batchers.remove(provider);
+		} else {
+			previous = this.batchers.put(provider, new ProviderBatcher<>(batchSize, linger, this.scheduler, this::dispatch));
+		}
+		
+		// do not strand the calls collected so far
+		if(previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * Return the maximum number of URLs sent to the given provider in a
+	 * single request.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #FACEBOOK}
+	 * 
+	 * @return the batch size, one if calls are not batched
+	 */
+	public int getBatchSize(String provider) {
+		ProviderBatcher<BatchedAttempt> batcher = this.batchers.get(provider);
+		return batcher != null ? batcher.batchSize : 1;
+	}
+	
+	/**
+	 * Return the maximum time in millis a call to the given provider waits
+	 * for its batch to fill up.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #FACEBOOK}
+	 * 
+	 * @return the linger time, zero if calls are not batched
+	 */
+	public long getBatchLinger(String provider) {
+		ProviderBatcher<BatchedAttempt> batcher = this.batchers.get(provider);
+		return batcher != null ? batcher.linger : 0;
+	}
+	
+	/**
+	 * Send the requests of the given provider to another server, such as a
+	 * local simulator, instead of the provider API.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link #TWITTER}
+	 * 
+	 * @param baseUrl
+	 *            the scheme, host and port to use, like
+	 *            <code>http://localhost:8080</code>, or <code>null</code> to
+	 *            go back to the provider API
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is unknown, or does not extend
+	 *             {@link AbstractSocialCountProvider}
+	 */
+	public void setBaseUrl(String provider, String baseUrl) {
+		SocialCountProvider socialCountProvider = this.getProvider(provider);
+		if(!(socialCountProvider instanceof AbstractSocialCountProvider)) {
+			throw new IllegalArgumentException("Provider " + provider + " does not support a base URL");
+		}
+		
+		((AbstractSocialCountProvider) socialCountProvider).setBaseUrl(baseUrl);
+	}
+	
+	/**
+	 * Register a provider with this client. Any existing provider with the
+	 * same name is replaced, otherwise the provider is hit after all existing
+	 * ones.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} to register
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is <code>null</code> or has no name
+	 */
+	public synchronized void register(SocialCountProvider provider) {
+		if(provider == null) {
+			throw new IllegalArgumentException("Provider cannot be null");
+		}
+		
+		String name = provider.getName();
+		if(AssertUtils.isEmpty(name)) {
+			throw new IllegalArgumentException("Provider name cannot be null/empty");
+		}
+		
+		this.queues.put(name, new ProviderQueue(name, this.executor, provider.getMaxConcurrency()));
+		this.breakers.putIfAbsent(name, new CircuitBreaker());
+		this.sizeTransport();
+		
+		// the replacement may not batch as much, if at all
+		ProviderBatcher<BatchedAttempt> batcher = this.batchers.get(name);
+		if(batcher != null && (batcher.batchSize > provider.getMaxBatchSize() || !implementsBatching(provider))) {
+			this.batchers.remove(name, batcher);
+			batcher.close();
+		}
+		
+		for(int index = 0; index < this.providers.size(); index++) {
+			if(name.equals(this.providers.get(index).getName())) {
+				this.providers.set(index, provider);
+				return;
+			}
+		}
+		
+		this.providers.add(provider);
+	}
+	
+	/**
+	 * Remove the provider with the given name from this client. It will no
+	 * longer be hit for any URL.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @return <code>true</code> if a provider was removed, <code>false</code>
+	 *         otherwise
+	 */
+	public synchronized boolean unregister(String name) {
+		for(SocialCountProvider provider : this.providers) {
+			if(provider.getName().equals(name)) {
+				this.providers.remove(provider);
+				this.queues.remove(name);
+				
+				ProviderBatcher<BatchedAttempt> batcher = this.batchers.remove(name);
+				if(batcher != null) {
+					batcher.close();
+				}
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Check if the given provider implements the batch methods, rather than
+	 * leaving them to the defaults of {@link SocialCountProvider} that throw.
+	 * 
+	 */
+	private static boolean implementsBatching(SocialCountProvider provider) {
+		try {
+			Class<?> type = provider.getClass();
+			return !type.getMethod("buildBatchRequest", List.class).isDefault()
+				&& !type.getMethod("parseBatchResponse", List.class, ProviderResponse.class).isDefault();
+		} catch(NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Return the registered provider with the given name.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @return the {@link SocialCountProvider}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no such provider is registered
+	 */
+	public SocialCountProvider getProvider(String name) {
+		for(SocialCountProvider provider : this.providers) {
+			if(provider.getName().equals(name)) {
+				return provider;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown provider: " + name);
+	}
+	
+	/**
+	 * Return all providers registered with this client in the order they are
+	 * hit.
+	 * 
+	 * @return an unmodifiable {@link List} of providers
+	 */
+	public List<SocialCountProvider> getProviders() {
+		return Collections.unmodifiableList(this.providers);
+	}
+	
+	/**
+	 * Return the queue for the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the {@link ProviderQueue}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider is unknown
+	 */
+	private ProviderQueue getQueue(String provider) {
+		ProviderQueue queue = this.queues.get(provider);
+		if(queue == null) {
+			throw new IllegalArgumentException("Unknown provider: " + provider);
+		}
+		
+		return queue;
+	}
+	
+	/**
+	 * Hit the given provider on the client pool, respecting the concurrency
+	 * cap of the provider and the deadlines set in the config. If a call to
+	 * the same provider for the same URL is already in flight, the fetch
+	 * waits for it instead of making a new one. The shared call runs within
+	 * the timeout of the provider alone, and each fetch gives up on it once
+	 * its own budget or deadline elapses.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} to hit
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} for the fetch
+	 * 
+	 * @param start
+	 *            the {@link System#nanoTime()} at which the fetch started
+	 * 
+	 * @return a {@link CompletableFuture} that completes once the call is
+	 *         done, or exceptionally if the call failed or timed out
+	 */
+	private CompletableFuture<Void> submit(final SocialCountProvider provider, final SocialCounts counts, final SocialCountConfig config, final long start) {
+		if(this.isOpen(provider, counts)) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		final ProviderCall call = this.join(provider, counts);
+		
+		// either the timer or the result settles the fetch, never both - the
+		// values are never copied into counts already handed to the caller
+		final AtomicBoolean settled = new AtomicBoolean();
+		
+		// abandon the call once the budget or the deadline elapses
+		long expiry = Math.min(positiveOrMax(config.timeBudget), positiveOrMax(config.providerDeadline));
+		if(expiry != Long.MAX_VALUE) {
+			final ScheduledFuture<?> timer = this.scheduler.schedule(() -> {
+				if(settled.compareAndSet(false, true)) {
+					future.completeExceptionally(new TimeoutException("Provider " + provider.getName() + " timed out"));
+				}
+			}, expiry, TimeUnit.MILLISECONDS);
+			future.whenComplete((result, error) -> timer.cancel(false));
+		}
+		
+		call.result.whenComplete((result, error) -> {
+			if(!settled.compareAndSet(false, true)) {
+				return;
+			}
+			
+			if(error != null) {
+				future.completeExceptionally(error);
+				return;
+			}
+			
+			call.copyTo(counts);
+			future.complete(null);
+		});
+		
+		// the status is set before anyone waiting on the returned stage runs
+		return future.whenComplete((result, error) -> {
+			if(error != null) {
+				call.leave();
+				
+				if(error instanceof TimeoutException || error.getCause() instanceof TimeoutException) {
+					counts.setStatus(provider.getName(), FetchStatus.TIMEOUT, 0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Attach to the in-flight call to the given provider for the URL, or
+	 * start a new call if there is none. The call is not bound by the
+	 * deadlines of the fetch that starts it, as other fetches may join it.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} to hit
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance of the fetch
+	 * 
+	 * @return the {@link ProviderCall} to wait on
+	 */
+	private ProviderCall join(final SocialCountProvider provider, final SocialCounts counts) {
+		final String key = provider.getName() + '\n' + counts.url;
+		
+		while(true) {
+			ProviderCall existing = this.inFlight.get(key);
+			if(existing != null) {
+				if(existing.join()) {
+					return existing;
+				}
+				
+				// abandoned or just completed - replace it
+				if(!this.inFlight.remove(key, existing)) {
+					continue;
+				}
+			}
+			
+			final ProviderCall call = new ProviderCall(provider, counts);
+			if(this.inFlight.putIfAbsent(key, call) != null) {
+				continue;
+			}
+			
+			call.result.whenComplete((result, error) -> this.inFlight.remove(key, call));
+			
+			this.attempt(call, false);
+			
+			// hedge the call if it has not answered within the usual time
+			HedgePolicy hedging = this.hedging.get(provider.getName());
+			long delay = hedging != null ? hedging.getDelay() : -1;
+			if(delay > 0) {
+				final ScheduledFuture<?> timer = this.scheduler.schedule(() -> this.attempt(call, true), delay, TimeUnit.MILLISECONDS);
+				call.result.whenComplete((result, error) -> timer.cancel(false));
+			}
+			
+			return call;
+		}
+	}
+	
+	/**
+	 * Queue one attempt of the given call. The attempt is dropped if the call
+	 * completes, or is abandoned by every fetch, before the attempt gets a
+	 * slot.
+	 * 
+	 * @param call
+	 *            the {@link ProviderCall} to make an attempt for
+	 * 
+	 * @param hedge
+	 *            whether this is a duplicate of an attempt that is already in
+	 *            progress - a hedge is only made when the provider has spare
+	 *            capacity, and never waits for its rate limit
+	 */
+	private void attempt(final ProviderCall call, final boolean hedge) {
+		final SocialCountProvider provider = call.provider;
+		final ProviderQueue queue = this.getQueue(provider.getName());
+		if(hedge && (call.result.isDone() || queue.getInFlight() >= queue.getMaxConcurrency())) {
+			return;
+		}
+		
+		final SocialCounts values = call.newAttempt();
+		final CompletableFuture<Void> attempt = new CompletableFuture<>();
+		call.result.whenComplete((result, error) -> attempt.cancel(false));
+		attempt.whenComplete((result, error) -> call.attemptDone(values, error));
+		
+		// a batcher closed meanwhile leaves the attempt to be sent on its own
+		ProviderBatcher<BatchedAttempt> batcher = hedge ? null : this.batchers.get(provider.getName());
+		if(batcher != null && batcher.add(new BatchedAttempt(call, values, attempt))) {
+			return;
+		}
+		
+		final int timeout = provider.getTimeout();
+		boolean queued = this.schedule(queue, hedge ? 0 : timeout, attempt, () -> {
+			if(this.invoke(provider, values, timeout, call.result, false)) {
+				call.succeed(values);
+			}
+		});
+		
+		if(!queued) {
+			this.rateLimited(provider.getName(), Collections.singletonList(values));
+			attempt.complete(null);
+		}
+	}
+	
+	/**
+	 * Queue a call to a provider once it has a permit of the rate limiter of
+	 * the provider, if any. The permit is taken before the call is queued and
+	 * the call is queued only once the permit is due, so that waiting for it
+	 * holds neither a slot of the provider nor a thread.
+	 * 
+	 * @param queue
+	 *            the {@link ProviderQueue} of the provider
+	 * 
+	 * @param maxWait
+	 *            the maximum time in millis to wait for a permit
+	 * 
+	 * @param future
+	 *            the {@link CompletableFuture} to complete once the call has
+	 *            run
+	 * 
+	 * @param call
+	 *            the provider call to run
+	 * 
+	 * @return <code>true</code> if the call was queued or will be once its
+	 *         permit is due, <code>false</code> if the provider is over its
+	 *         limit for longer than the call may wait
+	 */
+	private boolean schedule(final ProviderQueue queue, long maxWait, final CompletableFuture<Void> future, final Runnable call) {
+		RateLimiter limiter = this.limiters.get(queue.getName());
+		long wait = limiter != null ? limiter.reserve(TimeUnit.MILLISECONDS.toNanos(maxWait)) : 0;
+		if(wait < 0) {
+			return false;
+		}
+		
+		if(wait == 0) {
+			queue.submit(future, call);
+			return true;
+		}
+		
+		// tracked so that closing the client fails the call instead of dropping it
+		this.awaitingPermit.add(future);
+		future.whenComplete((result, error) -> this.awaitingPermit.remove(future));
+		try {
+			final ScheduledFuture<?> timer = this.scheduler.schedule(() -> {
+				if(this.awaitingPermit.remove(future)) {
+					queue.submit(future, call);
+				}
+			}, wait, TimeUnit.NANOSECONDS);
+			future.whenComplete((result, error) -> timer.cancel(false));
+		} catch(RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Mark a call to the given provider as skipped for being over the rate
+	 * limit of the provider.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @param batch
+	 *            the {@link SocialCounts} instances of the call
+	 */
+	private void rateLimited(String name, List<SocialCounts> batch) {
+		for(SocialCounts counts : batch) {
+			counts.setStatus(name, FetchStatus.RATE_LIMITED, 0, 0);
+		}
+		
+		this.metrics.forProvider(name).callSkipped();
+	}
+	
+	/**
+	 * Queue a batch of attempts collected for a provider as a single call.
+	 * Every attempt completes once the batched request is done.
+	 * 
+	 * @param batch
+	 *            the {@link BatchedAttempt}s to the same provider
+	 */
+	private void dispatch(final List<BatchedAttempt> batch) {
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		future.whenComplete((result, error) -> {
+			for(BatchedAttempt attempt : batch) {
+				if(error != null) {
+					attempt.attempt.completeExceptionally(error);
+				} else {
+					attempt.attempt.complete(null);
+				}
+			}
+		});
+		
+		final SocialCountProvider provider = batch.get(0).call.provider;
+		ProviderQueue queue = this.queues.get(provider.getName());
+		if(queue == null) {
+			future.completeExceptionally(new IllegalStateException("Provider " + provider.getName() + " is no longer registered"));
+			return;
+		}
+		
+		if(!this.schedule(queue, provider.getTimeout(), future, () -> this.invoke(batch))) {
+			List<SocialCounts> values = new ArrayList<>(batch.size());
+			for(BatchedAttempt attempt : batch) {
+				values.add(attempt.values);
+			}
+			
+			this.rateLimited(provider.getName(), values);
+			future.complete(null);
+		}
+	}
+	
+	/**
+	 * Hit a provider in the calling thread for all the attempts of a batch
+	 * that are still wanted, with a single request. Attempts abandoned while
+	 * waiting are not sent.
+	 * 
+	 * @param batch
+	 *            the {@link BatchedAttempt}s to the same provider
+	 */
+	private void invoke(List<BatchedAttempt> batch) {
+		final SocialCountProvider provider = batch.get(0).call.provider;
+		final List<BatchedAttempt> live = new ArrayList<>(batch.size());
+		final List<SocialCounts> values = new ArrayList<>(batch.size());
+		
+		for(BatchedAttempt attempt : batch) {
+			if(!attempt.attempt.isDone()) {
+				live.add(attempt);
+				values.add(attempt.values);
+			}
+		}
+		
+		if(live.isEmpty() || this.invoke(provider, values, provider.getTimeout(), null, false) == 0) {
+			return;
+		}
+		
+		for(BatchedAttempt attempt : live) {
+			if(attempt.values.getStatus(provider.getName()) == FetchStatus.OK) {
+				attempt.call.succeed(attempt.values);
+			}
+		}
+	}
+	
+	/**
+	 * Hit the given provider in the calling thread and update the values in
+	 * the given instance. The values are left untouched if the provider
+	 * cannot be reached or returns an error. Successfully fetched values are
+	 * written to the cache and recorded in the history, if any.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} to hit
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated
+	 * 
+	 * @param timeout
+	 *            the read timeout in millis for the call
+	 * 
+	 * @param call
+	 *            the future tracking the call, if any - once it is done, as
+	 *            when another attempt of the call answered first, the request
+	 *            is aborted and any response is discarded
+	 * 
+	 * @param throttle
+	 *            whether to take a permit of the rate limiter first, waiting
+	 *            for it within the timeout - calls queued on the client pool
+	 *            have taken their permit before being queued
+	 * 
+	 * @return <code>true</code> if the values were updated,
+	 *         <code>false</code> otherwise
+	 */
+	private boolean invoke(SocialCountProvider provider, SocialCounts counts, int timeout, CompletableFuture<?> call, boolean throttle) {
+		return this.invoke(provider, Collections.singletonList(counts), timeout, call, throttle) > 0;
+	}
+	
+	/**
+	 * Hit the given provider in the calling thread with a single request for
+	 * all the given instances, batching them if there is more than one. The
+	 * status of the request is set in every instance, except that instances
+	 * missing from an otherwise good batch response are marked as
+	 * {@link FetchStatus#PARSE_ERROR}.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} to hit
+	 * 
+	 * @param batch
+	 *            the {@link SocialCounts} instances to be updated
+	 * 
+	 * @param timeout
+	 *            the read timeout in millis for the call
+	 * 
+	 * @param call
+	 *            the future tracking the call, if any - once it is done, as
+	 *            when another attempt of the call answered first, the request
+	 *            is aborted and any response is discarded
+	 * 
+	 * @param throttle
+	 *            whether to take a permit of the rate limiter first, waiting
+	 *            for it within the timeout - calls queued on the client pool
+	 *            have taken their permit before being queued
+	 * 
+	 * @return the number of instances updated
+	 */
+	private int invoke(SocialCountProvider provider, List<SocialCounts> batch, int timeout, CompletableFuture<?> call, boolean throttle) {
+		final String name = provider.getName();
+		
+		RateLimiter limiter = this.limiters.get(name);
+		if(limiter != null && throttle) {
+			try {
+				long waited = limiter.acquire(timeout);
+				if(waited < 0) {
+					// over the limit
+					this.rateLimited(name, batch);
+					return 0;
+				}
+				
+				timeout -= waited;
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return 0;
+			}
+			
+			if(call != null && call.isDone()) {
+				return 0;
+			}
+		}
+		
+		// a trial of a half-open breaker is taken only for a request that is
+		// sure to be made, and is given back if the request is abandoned
+		CircuitBreaker breaker = this.breakers.get(name);
+		if(breaker != null && !breaker.allowRequest()) {
+			this.skipped(name, batch);
+			return 0;
+		}
+		
+		final boolean batched = batch.size() > 1;
+		ProviderRequest request = batched ? provider.buildBatchRequest(batch) : provider.buildRequest(batch.get(0));
+		ProviderMetrics metrics = this.metrics.forProvider(name);
+		
+		FetchStatus status;
+		boolean[] parsed = null;
+		int httpStatus = 0;
+		long bytes = 0;
+		boolean discarded = false;
+		
+		final long start = System.nanoTime();
+		metrics.callStarted();
+		try(ProviderResponse response = this.transport.execute(request, timeout, call)) {
+			httpStatus = response.statusCode;
+			
+			final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if(breaker != null) {
+				if(response.statusCode >= 500) {
+					breaker.onFailure();
+				} else {
+					breaker.onSuccess(latency);
+				}
+			}
+			
+			HedgePolicy hedging = this.hedging.get(name);
+			if(hedging != null && response.isSuccess()) {
+				hedging.record(latency);
+			}
+			
+			if(limiter != null) {
+				if(response.statusCode == RateLimiter.TOO_MANY_REQUESTS) {
+					limiter.onThrottled();
+				} else if(response.isSuccess()) {
+					limiter.onSuccess();
+				}
+			}
+			
+			if(!response.isSuccess()) {
+				status = FetchStatus.HTTP_ERROR;
+			} else if(call != null && call.isDone()) {
+				// too late - the fetch has moved on
+				status = FetchStatus.OK;
+				discarded = true;
+			} else {
+				try {
+					parsed = batched ? provider.parseBatchResponse(batch, response) : new boolean[] { provider.parseResponse(batch.get(0), response) };
+				} catch(RuntimeException | MalformedJsonException e) {
+					// malformed body - not the provider being unreachable
+					parsed = null;
+				}
+				
+				status = anyParsed(parsed) ? FetchStatus.OK : FetchStatus.PARSE_ERROR;
+			}
+			
+			bytes = response.getBytesRead();
+		} catch(IOException e) {
+			if(call != null && call.isDone()) {
+				// aborted as another attempt answered first, or no one waits
+				if(breaker != null) {
+					breaker.onAbandoned();
+				}
+				
+				status = FetchStatus.TIMEOUT;
+				discarded = true;
+			} else {
+				// provider could not be reached - leave the values untouched
+				if(breaker != null) {
+					breaker.onFailure();
+				}
+				
+				status = e instanceof InterruptedIOException ? FetchStatus.TIMEOUT : FetchStatus.IO_ERROR;
+			}
+		}
+		
+		final long elapsed = System.nanoTime() - start;
+		metrics.callFinished(status, elapsed, bytes);
+		if(discarded) {
+			return 0;
+		}
+		
+		final long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+		final SocialCountCache cache = this.cache;
+		final CountHistory history = this.history;
+		final long now = history != null ? System.currentTimeMillis() : 0;
+		int updated = 0;
+		for(int index = 0; index < batch.size(); index++) {
+			SocialCounts counts = batch.get(index);
+			if(status != FetchStatus.OK || !parsed[index]) {
+				counts.setStatus(name, status == FetchStatus.OK ? FetchStatus.PARSE_ERROR : status, httpStatus, millis);
+				continue;
+			}
+			
+			counts.setStatus(name, FetchStatus.OK, httpStatus, millis);
+			if(cache != null) {
+				cache.write(counts.url, provider, counts);
+			}
+			
+			if(history != null) {
+				history.record(counts, name, now);
+			}
+			
+			updated++;
+		}
+		
+		return updated;
+	}
+	
+	private static boolean anyParsed(boolean[] parsed) {
+		if(parsed == null) {
+			return false;
+		}
+		
+		for(boolean value : parsed) {
+			if(value) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
 	
 	/**
-	 * An internal instance that is an ALL TRUE instance - that is all providers
-	 * will be hit.
+	 * Check if the circuit breaker of the given provider is open, and if so
+	 * mark the provider as skipped in the given instance. No trial call is
+	 * taken here: fetches may yet join another call, be rate limited or
+	 * time out in the queue, and a trial is only taken right before the
+	 * request that reports back to the breaker.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} about to be hit
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance being fetched
 	 * 
+	 * @return <code>true</code> if the provider must be skipped,
+	 *         <code>false</code> if it may be hit
 	 */
-	private static final SocialCountConfig ALL_TRUE_CONFIG = new SocialCountConfig();
+	private boolean isOpen(SocialCountProvider provider, SocialCounts counts) {
+		CircuitBreaker breaker = this.breakers.get(provider.getName());
+		if(breaker == null || breaker.isCallPermitted()) {
+			return false;
+		}
+		
+		this.skipped(provider.getName(), Collections.singletonList(counts));
+		return true;
+	}
 	
 	/**
-	 * Find various social counts for the given URL. The returned object
-	 * contains the various values. If a value is <code>-1</code>, it represents
-	 * that something went wrong while fetching the value. All APIs are run
-	 * sequentially one after another and thus may take time.
+	 * Mark a call to the given provider as skipped for its circuit breaker
+	 * being open.
 	 * 
-	 * @param url
-	 *            the url to analyze
+	 * @param name
+	 *            the name of the provider
 	 * 
-	 * @return the {@link SocialCounts} containing all metrics
+	 * @param batch
+	 *            the {@link SocialCounts} instances of the call
 	 */
-	public static SocialCounts getSocialCounts(String url) {
-		return getSocialCounts(url, ALL_TRUE_CONFIG);
+	private void skipped(String name, List<SocialCounts> batch) {
+		for(SocialCounts counts : batch) {
+			counts.setStatus(name, FetchStatus.SKIPPED, 0, 0);
+		}
+		
+		this.metrics.forProvider(name).callSkipped();
 	}
 	
 	/**
-	 * Find various social counts for the given URL. This method allows you to
-	 * control the providers that you want to hit.
+	 * Copy the values of the given provider from the cache, if there is one
+	 * and the values have not expired. If the config allows stale values,
+	 * expired values are copied as well and a refresh is started in the
+	 * background.
 	 * 
-	 * The returned object contains the various values. If a value is
-	 * <code>-1</code>, it represents that something went wrong while fetching
-	 * the value. All APIs are run sequentially one after another and thus may
-	 * take time.
+	 * @param provider
+	 *            the {@link SocialCountProvider} whose values are needed
 	 * 
-	 * @param url
-	 *            the url to analyze
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated
 	 * 
 	 * @param config
-	 *            the provider configuration on which ones to hit
-	 * 
-	 * @return the {@link SocialCounts} containing all metrics
+	 *            the {@link SocialCountConfig} for the fetch
 	 * 
+	 * @return <code>true</code> if the values were read from the cache,
+	 *         <code>false</code> if the provider needs to be hit
 	 */
-	public static SocialCounts getSocialCounts(String url, SocialCountConfig config) {
-		if(AssertUtils.isEmpty(url)) {
-			throw new IllegalArgumentException("URL cannot be null/empty");
+	private boolean readCache(SocialCountProvider provider, SocialCounts counts, SocialCountConfig config) {
+		SocialCountCache cache = this.cache;
+		if(cache == null) {
+			return false;
 		}
 		
-		// prepare
-		SocialCounts counts = new SocialCounts(url);
-
-		// hit the various services one after another
-		if(config.twitter) {
-			getTwitterCount(counts);
+		if(cache.read(counts.url, provider, counts)) {
+			counts.setStatus(provider.getName(), FetchStatus.CACHED, 0, 0);
+			return true;
 		}
 		
-		if(config.facebook) {
-			getFacebookCount(counts);
+		if(!config.staleWhileRevalidate) {
+			return false;
 		}
 		
-		if(config.googlePlusOne) {
-			getGooglePlusOneCount(counts);
+		long fetchedAt = cache.readStale(counts.url, provider, counts);
+		if(fetchedAt <= 0) {
+			return false;
 		}
 		
-		if(config.googleShares) {
-			getGoogleShares(counts);
-		}
-
-		if(config.linkedin) {
-			getLinkedinCount(counts);
+		counts.markStale(fetchedAt);
+		counts.setStatus(provider.getName(), FetchStatus.STALE, 0, 0);
+		
+		// refresh in the background - the fetched values land in the cache
+		SocialCounts refresh = new SocialCounts(counts.url, counts.encodedUri, System.currentTimeMillis());
+		this.submit(provider, refresh, ALL_TRUE_CONFIG, System.nanoTime());
+		return true;
+	}
+	
+	/**
+	 * Compute the read timeout for a call to the given provider that starts
+	 * now, such that neither the timeout of the provider nor any deadline in
+	 * the config is crossed.
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} being hit
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} for the fetch
+	 * 
+	 * @param start
+	 *            the {@link System#nanoTime()} at which the fetch started
+	 * 
+	 * @return the timeout in millis, zero or less if there is no time left
+	 */
+	private static int timeoutFor(SocialCountProvider provider, SocialCountConfig config, long start) {
+		long timeout = provider.getTimeout();
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		if(config.timeBudget > 0) {
+			timeout = Math.min(timeout, config.timeBudget - elapsed);
 		}
 		
-		if(config.pinterest) {
-			getPinterestCount(counts);
+		if(config.providerDeadline > 0) {
+			timeout = Math.min(timeout, config.providerDeadline - elapsed);
 		}
 		
-		// mark complete - so that we can note down the time taken here
-		counts.markComplete();
+		return (int) timeout;
+	}
+	
+	private static long positiveOrMax(long value) {
+		return value > 0 ? value : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Return the cache in front of the providers.
+	 * 
+	 * @return the {@link SocialCountCache}, <code>null</code> if none
+	 */
+	public SocialCountCache getCache() {
+		return this.cache;
+	}
+	
+	/**
+	 * Set the cache to be used in front of the providers. Fetches for a URL
+	 * then only hit the providers whose values are not cached or have
+	 * expired, and write the fetched values back to the cache. Fetches for a
+	 * single provider via {@link #fetch(SocialCounts, String)} always hit the
+	 * provider.
+	 * 
+	 * @param cache
+	 *            the {@link SocialCountCache} to use, <code>null</code> to
+	 *            disable caching
+	 */
+	public void setCache(SocialCountCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Return the history the fetched values are recorded in.
+	 * 
+	 * @return the {@link CountHistory}, <code>null</code> if none
+	 */
+	public CountHistory getHistory() {
+		return this.history;
+	}
+	
+	/**
+	 * Record every value fetched from a provider in the given history, to be
+	 * able to tell how fast URLs are being shared. Values read from the cache
+	 * are not recorded again. Values are recorded under canonical URLs, and
+	 * the history is given the canonicalizer of this client so that queries
+	 * by any spelling of a URL find them.
+	 * 
+	 * @param history
+	 *            the {@link CountHistory} to use, <code>null</code> to stop
+	 *            recording
+	 */
+	public void setHistory(CountHistory history) {
+		if(history != null) {
+			history.setCanonicalizer(this.canonicalizer);
+		}
 		
-		return counts;
+		this.history = history;
 	}
-
+	
 	/**
-	 * Compute the social counts from all providers, and return the metrics.
-	 * The APIs are run in parallel to speed up the fetching of counts.
+	 * Return the canonical form of the given URL, which is the URL fetched for
+	 * it and the key its values are cached, coalesced and stored under.
+	 * {@link SocialCounts} instances passed to
+	 * {@link #fetch(SocialCounts, String)} should be created for canonical
+	 * URLs to share those.
 	 * 
 	 * @param url
-	 *            the url to analyze
+	 *            the URL
 	 * 
-	 * @return the {@link SocialCounts} instance containing updated metrics
+	 * @return the canonical URL, or the URL itself if canonicalization is
+	 *         turned off
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is <code>null</code> or empty
 	 */
-	public static SocialCounts getSocialCountsParallel(String url) {
-		return getSocialCountsParallel(url, ALL_TRUE_CONFIG);
+	public String canonicalize(String url) {
+		UrlCanonicalizer canonicalizer = this.canonicalizer;
+		if(canonicalizer == null) {
+			return url;
+		}
+		
+		return canonicalizer.canonicalize(url);
 	}
 	
 	/**
-	 * Compute the social counts from given chosen providers using the
-	 * {@link SocialCountConfig} instance. The APIs are run in parallel to speed
-	 * up the fetching of counts.
+	 * Return the canonicalizer used for the keys URLs are cached, coalesced
+	 * and stored under. This is the live instance, not a copy: changing its
+	 * settings takes effect for all fetches that follow, and entries cached
+	 * under the old canonical form are then no longer found.
 	 * 
-	 * @param url
-	 *            the url to analyze
+	 * @return the {@link UrlCanonicalizer}, <code>null</code> if URLs are
+	 *         fetched as given
+	 */
+	public UrlCanonicalizer getCanonicalizer() {
+		return this.canonicalizer;
+	}
+	
+	/**
+	 * Change how URLs are canonicalized before being fetched. The history,
+	 * if any, is given the same canonicalizer.
 	 * 
-	 * @param config
-	 *            the {@link SocialCountConfig} containing which providers to
-	 *            hit
+	 * @param canonicalizer
+	 *            the {@link UrlCanonicalizer} to use, <code>null</code> to
+	 *            fetch URLs as given
+	 */
+	public void setCanonicalizer(UrlCanonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+		
+		CountHistory history = this.history;
+		if(history != null) {
+			history.setCanonicalizer(canonicalizer);
+		}
+	}
+	
+	/**
+	 * Return the metrics of the calls made by this client, per provider. The
+	 * metrics may also be published over JMX via
+	 * {@link SocialCountMetrics#registerMBeans(String)}, in which case they
+	 * are unregistered when this client is closed.
 	 * 
-	 * @return the {@link SocialCounts} instance containing updated metrics
+	 * @return the {@link SocialCountMetrics}
+	 */
+	public SocialCountMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Return the transport used to make provider calls.
+	 * 
+	 * @return the {@link HttpTransport}
+	 */
+	public HttpTransport getTransport() {
+		return this.transport;
+	}
+	
+	/**
+	 * Change the transport used to make provider calls. The transport is
+	 * closed along with this client, while the previous transport is left
+	 * open.
+	 * 
+	 * @param transport
+	 *            the {@link HttpTransport} to use
 	 * 
 	 * @throws IllegalArgumentException
-	 *             if the url is <code>null</code> or empty
+	 *             if the transport is <code>null</code>
 	 */
-	public static SocialCounts getSocialCountsParallel(String url, SocialCountConfig config) {
-		if(AssertUtils.isEmpty(url)) {
-			throw new IllegalArgumentException("URL cannot be null/empty");
+	public void setTransport(HttpTransport transport) {
+		if(transport == null) {
+			throw new IllegalArgumentException("Transport cannot be null");
 		}
 		
-		// prepare
-		final SocialCounts counts = new SocialCounts(url);
+		this.transport = transport;
+	}
+	
+	/**
+	 * Return how the provider calls of this client are run.
+	 * 
+	 * @return the {@link ExecutionMode}, which is
+	 *         {@link ExecutionMode#PLATFORM} if virtual threads were asked
+	 *         for but are not available
+	 */
+	public ExecutionMode getExecutionMode() {
+		return this.executionMode;
+	}
+	
+	/**
+	 * Check if this client has been closed.
+	 * 
+	 * @return <code>true</code> if {@link #close()} has been called,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isClosed() {
+		return this.executor.isShutdown();
+	}
+	
+	/**
+	 * Close this client. Provider calls already running or waiting for a
+	 * pool thread are allowed to complete, and the pool threads are released
+	 * thereafter. Calls still waiting for a slot of their provider are never
+	 * made, and the fetches waiting on them complete without their values.
+	 * The transport is closed once all calls have completed. Any new fetch on
+	 * this instance will fail.
+	 * 
+	 */
+	@Override
+	public void close() {
+		final boolean open = !this.executor.isShutdown();
+		this.executor.shutdown();
 		
-		// prepare a parallel execution thing
-		ExecutorService pool = null;
-		try {
-			pool = Executors.newFixedThreadPool(6);
-			List<Future<?>> list = new ArrayList<Future<?>>();
-			
-			// add tasks one by one
-			if(config.facebook) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getFacebookCount(counts); } }));
-			}
-			if(config.twitter) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getTwitterCount(counts); } }));
-			}
-			if(config.googlePlusOne) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getGooglePlusOneCount(counts); } }));
-			}
-			if(config.googleShares) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getGoogleShares(counts); } }));
-			}
-			if(config.linkedin) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getLinkedinCount(counts); } }));
-			}
-			if(config.pinterest) {
-				list.add(pool.submit(new Runnable() { @Override public void run() {  getPinterestCount(counts); } }));
+		// partial batches go to the queues, which then fail them
+		for(ProviderBatcher<BatchedAttempt> batcher : this.batchers.values()) {
+			batcher.close();
+		}
+		
+		for(ProviderQueue queue : this.queues.values()) {
+			queue.close();
+		}
+		
+		for(CompletableFuture<Void> future : this.awaitingPermit) {
+			if(this.awaitingPermit.remove(future)) {
+				future.completeExceptionally(new RejectedExecutionException("Client has already been closed"));
 			}
-			
-			// shutdown the pool
-			pool.shutdown();
-			
-			// start reading
-			for(Future<?> future : list) {
+		}
+		
+		this.scheduler.shutdownNow();
+		this.metrics.unregisterMBeans();
+		
+		if(open && !(this.executor instanceof ThreadPoolExecutor)) {
+			// no termination hook - close the transport once the calls are done
+			Thread closer = new Thread(() -> {
 				try {
-					future.get();
-				} catch(Exception e) {
-					// eat up
+					this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+				} catch(InterruptedException e) {
+					// close anyway
 				}
-			}
-		} finally {
-			if(pool != null && !pool.isShutdown()) {
-				pool.shutdownNow();
-			}
-			
-			counts.markComplete();
+				
+				this.closeTransport();
+			}, "socialcount-closer");
+			closer.setDaemon(true);
+			closer.start();
 		}
-		
-		return counts;
+	}
+	
+	/**
+	 * Close the transport of this client ignoring any error.
+	 * 
+	 */
+	private void closeTransport() {
+		try {
+			this.transport.close();
+		} catch(IOException e) {
+			// eat up
+		}
+	}
+	
+	/**
+	 * Close this client and wait for the provider calls in progress to
+	 * complete.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * 
+	 * @param unit
+	 *            the unit of the timeout
+	 * 
+	 * @return <code>true</code> if all calls completed, <code>false</code> if
+	 *         the timeout elapsed first
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+		this.close();
+		return this.executor.awaitTermination(timeout, unit);
 	}
 
 	/**
@@ -230,21 +2265,7 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getLinkedinCount(SocialCounts counts) {
-		String api = "http://www.linkedin.com/countserv/count/share?lang=en_US&callback=showCount&url=" + counts.encodedUri;
-		WebResponse response = WebInvoker.getResponse(api);
-		if(response == null || !response.isSuccess()) {
-			return;
-		}
-		
-		// remove the JSONP callback function name
-		String json = response.getContent();
-		json = json.substring("showCount(".length(), json.length() - 2);
-		LinkedinResponse linkedin = GsonUtils.getGson().fromJson(json, LinkedinResponse.class);
-		if(linkedin == null) {
-			return;
-		}
-		
-		counts.linkedinShares = linkedin.count;
+		getDefault().fetch(counts, LINKEDIN);
 	}
 
 	/**
@@ -255,21 +2276,7 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getPinterestCount(SocialCounts counts) {
-		String api = "http://api.pinterest.com/v1/urls/count.json?callback=showCount&url=" + counts.encodedUri;
-		WebResponse response = WebInvoker.getResponse(api);
-		if(response == null || !response.isSuccess()) {
-			return;
-		}
-		
-		// remove the JSONP callback function name
-		String json = response.getContent();
-		json = json.substring("showCount(".length(), json.length() - 1);
-		PinterestResponse pinterest = GsonUtils.getGson().fromJson(json, PinterestResponse.class);
-		if(pinterest == null) {
-			return;
-		}
-		
-		counts.pinterestPins = pinterest.count;
+		getDefault().fetch(counts, PINTEREST);
 	}
 
 	/**
@@ -280,23 +2287,7 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getGooglePlusOneCount(SocialCounts counts) {
-		String api = "https://clients6.google.com/rpc";
-		GoogleRequest googleRequest = new GoogleRequest(counts.url);
-		WebRequest request = WebInvoker.getWebRequest(api, WebRequestMethod.POST);
-		request.addHeader("Content-type", "application/json");
-		request.bodyString(googleRequest.toString(), ContentType.APPLICATION_JSON);
-		
-		WebResponse response = WebInvoker.executeSilently(request);
-		if(response == null || !response.isSuccess()) {
-			return;
-		}
-		
-		GoogleResponse google = GsonUtils.getGson(FieldNamingPolicy.IDENTITY).fromJson(response.getContent(), GoogleResponse.class);
-		if(google == null || google.result == null || google.result.metadata == null || google.result.metadata.globalCounts == null) {
-			return;
-		}
-		
-		counts.googlePlusOne = (long) google.result.metadata.globalCounts.count;
+		getDefault().fetch(counts, GOOGLE_PLUS_ONE);
 	}
 
 	/**
@@ -308,24 +2299,7 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getGoogleShares(SocialCounts counts) {
-		String api = "https://plus.google.com/ripple/details?url=" + UriUtils.encodeURIComponent("http://facebook.com");
-		WebResponse response = WebInvoker.getResponse(api);
-		if(response == null || !response.isSuccess()) {
-			return;
-		}
-		
-		String st = response.getContent();
-		int index = st.indexOf(" public shares");
-		if(index <= 0) {
-			return;
-		}
-		int end = st.substring(0, index).lastIndexOf("<div>");
-		String count = st.substring(end + 5, index).trim();
-		try {
-			counts.googleShares = Long.parseLong(count);
-		} catch(NumberFormatException e) {
-			// eat up
-		}
+		getDefault().fetch(counts, GOOGLE_SHARES);
 	}
 
 	/**
@@ -341,22 +2315,7 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getFacebookCount(SocialCounts counts) {
-		String query = "SELECT url, like_count, click_count, comment_count, share_count FROM link_stat WHERE url='" + counts.url + "'";
-		String api = "http://graph.facebook.com/fql?q=" + UriUtils.encodeURIComponent(query);
-		WebResponse response = WebInvoker.getResponse(api);
-		if(response == null || !response.isSuccess()) {
-			return;
-		}
-
-		FacebookResponse facebook = GsonUtils.getGson(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).fromJson(response.getContent(), FacebookResponse.class);
-		if(facebook == null || facebook.data == null) {
-			return;
-		}
-		
-		counts.facebookShares = facebook.data[0].shareCount;
-		counts.facebookComments = facebook.data[0].commentCount;
-		counts.facebookLikes = facebook.data[0].likeCount;
-		counts.facebookClicks = facebook.data[0].clickCount;
+		getDefault().fetch(counts, FACEBOOK);
 	}
 
 	/**
@@ -367,18 +2326,51 @@ public class SocialCountClient {
 	 *            the url
 	 */
 	public static void getTwitterCount(SocialCounts counts) {
-		String api = "https://cdn.api.twitter.com/1/urls/count.json?url=" + counts.encodedUri;
-		WebResponse response = WebInvoker.getResponse(api);
-		if(response == null || !response.isSuccess()) {
-			return;
+		getDefault().fetch(counts, TWITTER);
+	}
+
+	/**
+	 * An attempt of a call waiting to be sent as part of a batch.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class BatchedAttempt {
+		
+		final ProviderCall call;
+		
+		final SocialCounts values;
+		
+		final CompletableFuture<Void> attempt;
+		
+		BatchedAttempt(ProviderCall call, SocialCounts values, CompletableFuture<Void> attempt) {
+			this.call = call;
+			this.values = values;
+			this.attempt = attempt;
 		}
 		
-		TwitterResponse twitter = GsonUtils.getGson().fromJson(response.getContent(), TwitterResponse.class);
-		if(twitter == null) {
-			return;
+	}
+	
+	/**
+	 * Creates daemon threads for the client pools so that an unclosed client
+	 * does not keep the JVM alive.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class ClientThreadFactory implements ThreadFactory {
+		
+		private final String prefix = "socialcount-" + POOL_COUNTER.incrementAndGet() + "-";
+		
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, this.prefix + this.counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
 		}
 		
-		counts.twitter = twitter.count;
 	}
 
 }
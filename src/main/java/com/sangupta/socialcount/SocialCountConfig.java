@@ -61,5 +61,28 @@ public class SocialCountConfig {
 	 * Whether to hit Pinterest API or not
 	 */
 	public boolean pinterest = true;
+	
+	/**
+	 * The total time in millis that all providers together may take for a
+	 * single URL. Once elapsed, the counts fetched so far are returned and
+	 * the outstanding calls are cancelled. A value of zero or less means no
+	 * budget, and each provider is only bound by its own timeout.
+	 */
+	public long timeBudget = 0;
+	
+	/**
+	 * The time in millis, counted from the start of the fetch, after which
+	 * the call to any single provider is abandoned. A value of zero or less
+	 * means that only the timeout of the provider applies.
+	 */
+	public long providerDeadline = 0;
+	
+	/**
+	 * Whether values that have expired in the client cache may be returned
+	 * right away. The returned {@link SocialCounts} is then flagged as
+	 * {@link SocialCounts#stale}, and the values are refreshed in the
+	 * background so that later fetches see fresh values.
+	 */
+	public boolean staleWhileRevalidate = false;
 
 }
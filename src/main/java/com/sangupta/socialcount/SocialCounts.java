@@ -21,8 +21,11 @@
 
 package com.sangupta.socialcount;
 
+import java.util.Arrays;
+
 import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.jerry.util.UriUtils;
+import com.sangupta.socialcount.provider.ProviderSlots;
 
 /**
  * Holds the like/comment/share counts for a given URL from various social media
@@ -98,6 +101,26 @@ public class SocialCounts {
 	 */
 	public long timeTaken;
 	
+	/**
+	 * Whether some of the values were served from a cache past their expiry
+	 * while being refreshed in the background
+	 */
+	public volatile boolean stale;
+	
+	/**
+	 * The time at which the oldest stale value was collected, zero if there
+	 * is none
+	 */
+	public volatile long staleSince;
+	
+	/**
+	 * The status of each provider, indexed by provider slot. Each entry packs
+	 * the {@link FetchStatus} in the lowest byte, the HTTP status code in the
+	 * next two bytes and the latency in millis in the upper four bytes, so
+	 * that no object is needed per provider.
+	 */
+	private transient volatile long[] statuses;
+	
 	/**
 	 * Convenience constructor. A proper URL is necessary.
 	 * 
@@ -114,6 +137,33 @@ public class SocialCounts {
 		this.encodedUri = UriUtils.encodeURIComponent(url);
 		this.lastUpdated = System.currentTimeMillis();
 	}
+	
+	/**
+	 * Create an instance with all values unknown for an already encoded URL
+	 * and a given collection time. Useful when working with copies of, or
+	 * restoring, an existing instance.
+	 * 
+	 * @param url
+	 *            the URL for which we are fetching the metrics
+	 * 
+	 * @param encodedUri
+	 *            the URI encoded format of the URL
+	 * 
+	 * @param lastUpdated
+	 *            the time at which the metrics were collected
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URL is <code>null</code>/empty.
+	 */
+	public SocialCounts(String url, String encodedUri, long lastUpdated) {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		this.url = url;
+		this.encodedUri = encodedUri != null ? encodedUri : UriUtils.encodeURIComponent(url);
+		this.lastUpdated = lastUpdated;
+	}
 
 	/**
 	 * Mark this complete - basically compute the time taken to fetch
@@ -125,6 +175,145 @@ public class SocialCounts {
 		this.timeTaken = System.currentTimeMillis() - this.lastUpdated;
 	}
 	
+	/**
+	 * Flag this instance as containing a stale value that was collected at
+	 * the given time.
+	 * 
+	 * @param collectedAt
+	 *            the time at which the stale value was collected
+	 */
+	public synchronized void markStale(long collectedAt) {
+		if(!this.stale || collectedAt < this.staleSince) {
+			this.staleSince = collectedAt;
+		}
+		
+		this.stale = true;
+	}
+	
+	/**
+	 * Return the age of the oldest stale value in this instance.
+	 * 
+	 * @return the age in millis, zero if no value is stale
+	 */
+	public long getStaleAge() {
+		if(!this.stale) {
+			return 0;
+		}
+		
+		return System.currentTimeMillis() - this.staleSince;
+	}
+	
+	/**
+	 * Record the outcome of fetching the values of the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @param status
+	 *            the {@link FetchStatus} of the fetch
+	 * 
+	 * @param httpStatus
+	 *            the HTTP status code returned by the provider, zero if none
+	 * 
+	 * @param latency
+	 *            the time in millis the provider took
+	 */
+	public synchronized void setStatus(String provider, FetchStatus status, int httpStatus, long latency) {
+		this.setPackedStatus(ProviderSlots.slotOf(provider), status.ordinal() | ((httpStatus & 0xFFFFL) << 8) | (Math.min(latency, Integer.MAX_VALUE) << 32));
+	}
+	
+	/**
+	 * Copy the status of the given provider from another instance.
+	 * 
+	 * @param from
+	 *            the {@link SocialCounts} to copy from
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 */
+	public void copyStatus(SocialCounts from, String provider) {
+		int slot = ProviderSlots.indexOf(provider);
+		long packed = from.getPackedStatus(slot);
+		if(packed != 0) {
+			synchronized(this) {
+				this.setPackedStatus(slot, packed);
+			}
+		}
+	}
+	
+	private void setPackedStatus(int slot, long packed) {
+		long[] statuses = this.statuses;
+		if(statuses == null) {
+			statuses = new long[Math.max(slot + 1, ProviderSlots.size())];
+		} else if(slot >= statuses.length) {
+			statuses = Arrays.copyOf(statuses, Math.max(slot + 1, ProviderSlots.size()));
+		}
+		
+		statuses[slot] = packed;
+		
+		// publish the write
+		this.statuses = statuses;
+	}
+	
+	private long getPackedStatus(int slot) {
+		long[] statuses = this.statuses;
+		if(statuses == null || slot < 0 || slot >= statuses.length) {
+			return 0;
+		}
+		
+		return statuses[slot];
+	}
+	
+	/**
+	 * Return the outcome of fetching the values of the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the {@link FetchStatus}, {@link FetchStatus#NONE} if the
+	 *         provider was not asked for
+	 */
+	public FetchStatus getStatus(String provider) {
+		return FetchStatus.of((int) (this.getPackedStatus(ProviderSlots.indexOf(provider)) & 0xFF));
+	}
+	
+	/**
+	 * Return the HTTP status code the given provider answered with.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the status code, zero if the provider did not answer
+	 */
+	public int getHttpStatus(String provider) {
+		return (int) ((this.getPackedStatus(ProviderSlots.indexOf(provider)) >>> 8) & 0xFFFF);
+	}
+	
+	/**
+	 * Return the time the given provider took to answer.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the latency in millis, zero if the provider was not hit
+	 */
+	public long getLatency(String provider) {
+		return this.getPackedStatus(ProviderSlots.indexOf(provider)) >>> 32;
+	}
+	
+	/**
+	 * Check if the given provider was skipped without being hit, because its
+	 * circuit breaker was open, as opposed to being hit and failing.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return <code>true</code> if the provider was skipped
+	 */
+	public boolean isSkipped(String provider) {
+		return this.getStatus(provider) == FetchStatus.SKIPPED;
+	}
+	
 	/**
 	 * Hash code based on the URL
 	 */
@@ -201,6 +390,11 @@ public class SocialCounts {
 		builder.append(", timeTaken: ");
 		builder.append(this.timeTaken);
 		
+		if(this.stale) {
+			builder.append(", staleAge: ");
+			builder.append(this.getStaleAge());
+		}
+		
 		builder.append(']');
 		
 		return builder.toString();
@@ -0,0 +1,442 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns the many spellings of a URL into a single canonical one, so that
+ * <code>http://X.com:80/a/</code>, <code>x.com/a?utm_source=tw</code> and
+ * <code>http://x.com/a#top</code> are fetched, cached, coalesced and stored
+ * once. The canonical URL:
+ * 
+ * <ul>
+ * <li>has a scheme, the default one if none was given</li>
+ * <li>has the scheme and host in lower case, and no default port</li>
+ * <li>has no trailing slash, except for the root path</li>
+ * <li>has no tracking parameters, and the remaining query parameters sorted</li>
+ * <li>has no fragment, unless it is a <code>#!</code> route</li>
+ * </ul>
+ * 
+ * The path and the parameter values are left as they are, as servers may
+ * treat them as case sensitive. Canonicalization works on a per thread
+ * buffer, and hands back the given string itself when it is already
+ * canonical.
+ * 
+ * @author sangupta
+ *
+ */
+public class UrlCanonicalizer {
+	
+	/**
+	 * Query parameters stripped by default - a trailing <code>*</code>
+	 * matches any suffix
+	 */
+	public static final List<String> DEFAULT_TRACKING_PARAMETERS = Collections.unmodifiableList(Arrays.asList("utm_*", "fbclid", "gclid", "dclid", "msclkid", "yclid", "mc_cid", "mc_eid", "igshid", "_ga", "_hsenc", "_hsmi", "ref_src"));
+	
+	/**
+	 * Scheme added to URLs that have none
+	 */
+	public static final String DEFAULT_SCHEME = "http";
+	
+	private static final ThreadLocal<Buffer> BUFFERS = new ThreadLocal<Buffer>() {
+		
+		@Override
+		protected Buffer initialValue() {
+			return new Buffer();
+		}
+	
+	};
+	
+	/**
+	 * The tracking parameters, copied on write
+	 */
+	private volatile String[] trackingParameters = DEFAULT_TRACKING_PARAMETERS.toArray(new String[0]);
+	
+	private volatile String defaultScheme = DEFAULT_SCHEME;
+	
+	private volatile boolean removeTrailingSlash = true;
+	
+	private volatile boolean sortParameters = true;
+	
+	private volatile boolean removeFragment = true;
+	
+	/**
+	 * Return the canonical form of the given URL.
+	 * 
+	 * @param url
+	 *            the URL
+	 * 
+	 * @return the canonical URL, the same instance if the URL is already
+	 *         canonical
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URL is <code>null</code> or empty
+	 */
+	public String canonicalize(String url) {
+		if(url == null) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		int start = 0;
+		int end = url.length();
+		while(start < end && url.charAt(start) <= ' ') {
+			start++;
+		}
+		
+		while(end > start && url.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		
+		if(start == end) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		Buffer buffer = BUFFERS.get();
+		StringBuilder builder = buffer.builder;
+		builder.setLength(0);
+		
+		// scheme
+		int position = start;
+		int schemeEnd = url.indexOf("://", start);
+		if(schemeEnd > start && schemeEnd < end && isScheme(url, start, schemeEnd)) {
+			appendLowerCase(builder, url, start, schemeEnd);
+			position = schemeEnd + 3;
+		} else {
+			builder.append(this.defaultScheme);
+			if(url.startsWith("//", start)) {
+				position += 2;
+			}
+		}
+		
+		int schemeLength = builder.length();
+		builder.append("://");
+		
+		// authority
+		int authorityEnd = position;
+		while(authorityEnd < end) {
+			char ch = url.charAt(authorityEnd);
+			if(ch == '/' || ch == '?' || ch == '#') {
+				break;
+			}
+			
+			authorityEnd++;
+		}
+		
+		this.appendAuthority(builder, url, position, authorityEnd, schemeLength);
+		position = authorityEnd;
+		
+		// path
+		int pathEnd = position;
+		while(pathEnd < end && url.charAt(pathEnd) != '?' && url.charAt(pathEnd) != '#') {
+			pathEnd++;
+		}
+		
+		int trimmedEnd = pathEnd;
+		if(this.removeTrailingSlash) {
+			while(trimmedEnd > position + 1 && url.charAt(trimmedEnd - 1) == '/') {
+				trimmedEnd--;
+			}
+		}
+		
+		if(trimmedEnd == position) {
+			builder.append('/');
+		} else {
+			builder.append(url, position, trimmedEnd);
+		}
+		
+		position = pathEnd;
+		
+		// query
+		int queryEnd = position;
+		while(queryEnd < end && url.charAt(queryEnd) != '#') {
+			queryEnd++;
+		}
+		
+		if(position < queryEnd) {
+			this.appendQuery(buffer, url, position + 1, queryEnd);
+		}
+		
+		position = queryEnd;
+		
+		// fragment
+		if(position < end && (!this.removeFragment || url.startsWith("#!", position))) {
+			builder.append(url, position, end);
+		}
+		
+		if(builder.length() == url.length() && contentEquals(builder, url)) {
+			return url;
+		}
+		
+		return builder.toString();
+	}
+	
+	private void appendAuthority(StringBuilder builder, String url, int start, int end, int schemeLength) {
+		// keep any user info as is
+		int hostStart = url.lastIndexOf('@', end - 1) + 1;
+		if(hostStart <= start) {
+			hostStart = start;
+		} else {
+			builder.append(url, start, hostStart);
+		}
+		
+		// the port follows the last colon that is not within an IPv6 address
+		int portStart = end;
+		for(int index = end - 1; index >= hostStart; index--) {
+			char ch = url.charAt(index);
+			if(ch == ':') {
+				portStart = index;
+				break;
+			}
+			
+			if(ch < '0' || ch > '9') {
+				break;
+			}
+		}
+		
+		int hostEnd = portStart;
+		while(hostEnd > hostStart && url.charAt(hostEnd - 1) == '.') {
+			hostEnd--;
+		}
+		
+		appendLowerCase(builder, url, hostStart, hostEnd);
+		
+		if(portStart + 1 < end && !isDefaultPort(builder, schemeLength, url, portStart + 1, end)) {
+			builder.append(url, portStart, end);
+		}
+	}
+	
+	private void appendQuery(Buffer buffer, String url, int start, int end) {
+		// collect the parameters to keep as start and end offsets
+		int count = 0;
+		int position = start;
+		while(position <= end) {
+			int parameterEnd = position;
+			while(parameterEnd < end && url.charAt(parameterEnd) != '&') {
+				parameterEnd++;
+			}
+			
+			if(parameterEnd > position && !this.isTracking(url, position, parameterEnd)) {
+				if(2 * count + 2 > buffer.parameters.length) {
+					buffer.parameters = Arrays.copyOf(buffer.parameters, buffer.parameters.length * 2);
+				}
+				
+				buffer.parameters[2 * count] = position;
+				buffer.parameters[2 * count + 1] = parameterEnd;
+				count++;
+			}
+			
+			position = parameterEnd + 1;
+		}
+		
+		if(count == 0) {
+			return;
+		}
+		
+		int[] parameters = buffer.parameters;
+		if(this.sortParameters) {
+			// insertion sort - queries are short, and the sort is stable
+			for(int index = 1; index < count; index++) {
+				int from = parameters[2 * index];
+				int to = parameters[2 * index + 1];
+				
+				int other = index - 1;
+				while(other >= 0 && compare(url, parameters[2 * other], parameters[2 * other + 1], from, to) > 0) {
+					parameters[2 * other + 2] = parameters[2 * other];
+					parameters[2 * other + 3] = parameters[2 * other + 1];
+					other--;
+				}
+				
+				parameters[2 * other + 2] = from;
+				parameters[2 * other + 3] = to;
+			}
+		}
+		
+		StringBuilder builder = buffer.builder;
+		for(int index = 0; index < count; index++) {
+			builder.append(index == 0 ? '?' : '&');
+			builder.append(url, parameters[2 * index], parameters[2 * index + 1]);
+		}
+	}
+	
+	/**
+	 * Check if the parameter at the given offsets is a tracking parameter.
+	 * 
+	 */
+	private boolean isTracking(String url, int start, int end) {
+		int nameEnd = start;
+		while(nameEnd < end && url.charAt(nameEnd) != '=') {
+			nameEnd++;
+		}
+		
+		int length = nameEnd - start;
+		for(String name : this.trackingParameters) {
+			if(name.endsWith("*")) {
+				int prefix = name.length() - 1;
+				if(length >= prefix && url.regionMatches(true, start, name, 0, prefix)) {
+					return true;
+				}
+			} else if(length == name.length() && url.regionMatches(true, start, name, 0, length)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static int compare(String url, int start, int end, int otherStart, int otherEnd) {
+		int length = Math.min(end - start, otherEnd - otherStart);
+		for(int index = 0; index < length; index++) {
+			int diff = url.charAt(start + index) - url.charAt(otherStart + index);
+			if(diff != 0) {
+				return diff;
+			}
+		}
+		
+		return (end - start) - (otherEnd - otherStart);
+	}
+	
+	private static boolean isScheme(String url, int start, int end) {
+		for(int index = start; index < end; index++) {
+			char ch = url.charAt(index);
+			boolean valid = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (index > start && ((ch >= '0' && ch <= '9') || ch == '+' || ch == '-' || ch == '.'));
+			if(!valid) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static boolean isDefaultPort(StringBuilder builder, int schemeLength, String url, int start, int end) {
+		if(schemeLength == 4 && builder.indexOf("http") == 0) {
+			return url.regionMatches(start, "80", 0, 2) && end - start == 2;
+		}
+		
+		if(schemeLength == 5 && builder.indexOf("https") == 0) {
+			return url.regionMatches(start, "443", 0, 3) && end - start == 3;
+		}
+		
+		return false;
+	}
+	
+	private static void appendLowerCase(StringBuilder builder, String url, int start, int end) {
+		for(int index = start; index < end; index++) {
+			char ch = url.charAt(index);
+			builder.append(ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch);
+		}
+	}
+	
+	private static boolean contentEquals(StringBuilder builder, String url) {
+		for(int index = builder.length() - 1; index >= 0; index--) {
+			if(builder.charAt(index) != url.charAt(index)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Add a query parameter to strip. A trailing <code>*</code> strips all
+	 * parameters starting with the name.
+	 * 
+	 * @param name
+	 *            the name of the parameter, matched ignoring case
+	 */
+	public synchronized void addTrackingParameter(String name) {
+		if(name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Parameter name cannot be null/empty");
+		}
+		
+		String[] parameters = Arrays.copyOf(this.trackingParameters, this.trackingParameters.length + 1);
+		parameters[parameters.length - 1] = name;
+		this.trackingParameters = parameters;
+	}
+	
+	/**
+	 * Replace the query parameters to strip.
+	 * 
+	 * @param names
+	 *            the names of the parameters, empty to strip none
+	 */
+	public synchronized void setTrackingParameters(Collection<String> names) {
+		this.trackingParameters = names.toArray(new String[names.size()]);
+	}
+	
+	public List<String> getTrackingParameters() {
+		return Collections.unmodifiableList(Arrays.asList(this.trackingParameters));
+	}
+	
+	// Usual accessors follow
+	
+	public String getDefaultScheme() {
+		return this.defaultScheme;
+	}
+	
+	public void setDefaultScheme(String defaultScheme) {
+		this.defaultScheme = defaultScheme;
+	}
+	
+	public boolean isRemoveTrailingSlash() {
+		return this.removeTrailingSlash;
+	}
+	
+	public void setRemoveTrailingSlash(boolean removeTrailingSlash) {
+		this.removeTrailingSlash = removeTrailingSlash;
+	}
+	
+	public boolean isSortParameters() {
+		return this.sortParameters;
+	}
+	
+	public void setSortParameters(boolean sortParameters) {
+		this.sortParameters = sortParameters;
+	}
+	
+	public boolean isRemoveFragment() {
+		return this.removeFragment;
+	}
+	
+	public void setRemoveFragment(boolean removeFragment) {
+		this.removeFragment = removeFragment;
+	}
+	
+	/**
+	 * The scratch space reused by a thread.
+	 * 
+	 */
+	private static class Buffer {
+		
+		final StringBuilder builder = new StringBuilder(256);
+		
+		/**
+		 * Start and end offsets of the query parameters kept
+		 */
+		int[] parameters = new int[32];
+		
+	}
+
+}
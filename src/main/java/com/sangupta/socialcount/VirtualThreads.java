@@ -0,0 +1,115 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors that run every task on a new virtual thread. Virtual
+ * threads are only available from Java 21, while this library is built for
+ * Java 8, so they are reached via reflection.
+ * 
+ * @author sangupta
+ *
+ */
+final class VirtualThreads {
+	
+	/**
+	 * <code>Thread.ofVirtual()</code>, <code>null</code> if not available
+	 */
+	private static final Method OF_VIRTUAL;
+	
+	/**
+	 * <code>Thread.Builder.name(String, long)</code>
+	 */
+	private static final Method NAME;
+	
+	/**
+	 * <code>Thread.Builder.factory()</code>
+	 */
+	private static final Method FACTORY;
+	
+	/**
+	 * <code>Executors.newThreadPerTaskExecutor(ThreadFactory)</code>
+	 */
+	private static final Method NEW_EXECUTOR;
+	
+	static {
+		Method ofVirtual = null, name = null, factory = null, newExecutor = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			
+			// a preview release throws unless previews are enabled
+			ofVirtual.invoke(null);
+		} catch(ReflectiveOperationException | RuntimeException | LinkageError e) {
+			ofVirtual = null;
+		}
+		
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		NEW_EXECUTOR = newExecutor;
+	}
+	
+	private VirtualThreads() {
+		throw new RuntimeException("Instance of VirtualThreads is not allowed");
+	}
+	
+	/**
+	 * Check if virtual threads are available on the running JVM.
+	 * 
+	 * @return <code>true</code> if available
+	 */
+	static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Create an executor that starts a new virtual thread for every task.
+	 * 
+	 * @param prefix
+	 *            the prefix of the thread names, followed by a counter
+	 * 
+	 * @return the {@link ExecutorService}, or <code>null</code> if virtual
+	 *         threads are not available
+	 */
+	static ExecutorService newExecutor(String prefix) {
+		if(OF_VIRTUAL == null) {
+			return null;
+		}
+		
+		try {
+			Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+			return (ExecutorService) NEW_EXECUTOR.invoke(null, FACTORY.invoke(builder));
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,458 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.ProviderSlots;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+
+/**
+ * An in-memory cache of {@link SocialCounts} keyed by URL. The values of
+ * every provider are cached and expire independently, based on the
+ * {@link SocialCounts#lastUpdated} time of the fetch that produced them and a
+ * time-to-live configured per provider. An expired Twitter count thus does
+ * not force a refetch from Facebook.
+ * 
+ * The number of URLs cached is bounded. The cache is split into segments that
+ * are locked independently, and within each segment the least recently used
+ * URL is evicted first.
+ * 
+ * Writes can also be appended to a {@link SocialCountStore} on disk, from
+ * which the cache is warmed after a restart.
+ * 
+ * @author sangupta
+ *
+ */
+public class SocialCountCache {
+	
+	/**
+	 * Default time-to-live for the values of a provider
+	 */
+	public static final long DEFAULT_TTL = 5 * 60 * 1000L;
+	
+	/**
+	 * Number of independently locked segments
+	 */
+	private static final int SEGMENTS = 16;
+	
+	/**
+	 * The segments holding the entries
+	 */
+	private final Segment[] segments;
+	
+	/**
+	 * Time-to-live in millis for each provider that does not use the default
+	 */
+	private final ConcurrentMap<String, Long> ttls = new ConcurrentHashMap<>();
+	
+	/**
+	 * Time-to-live in millis for providers without a specific one
+	 */
+	private volatile long defaultTtl = DEFAULT_TTL;
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder staleHits = new LongAdder();
+	
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * The optional store that every write is appended to
+	 */
+	private volatile SocialCountStore store;
+	
+	/**
+	 * Create a cache holding at most the given number of URLs.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of URLs to cache
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is less than one
+	 */
+	public SocialCountCache(int maxEntries) {
+		if(maxEntries < 1) {
+			throw new IllegalArgumentException("Max entries must be at least one");
+		}
+		
+		int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+		this.segments = new Segment[SEGMENTS];
+		for(int index = 0; index < SEGMENTS; index++) {
+			this.segments[index] = new Segment(perSegment);
+		}
+	}
+	
+	/**
+	 * Copy the cached values of the given provider for the given URL into the
+	 * target instance, if they have not expired.
+	 * 
+	 * @param key
+	 *            the URL
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} whose values are needed
+	 * 
+	 * @param target
+	 *            the {@link SocialCounts} instance to copy the values to
+	 * 
+	 * @return <code>true</code> if the values were found and copied,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean read(String key, SocialCountProvider provider, SocialCounts target) {
+		CacheEntry entry = this.segmentFor(key).get(key);
+		if(entry != null) {
+			int slot = ProviderSlots.indexOf(provider.getName());
+			long expiry = System.currentTimeMillis() - this.getTtl(provider.getName());
+			
+			synchronized(entry) {
+				if(slot >= 0 && slot < entry.fetchedAt.length && entry.fetchedAt[slot] > expiry) {
+					provider.copyCounts(entry.values, target);
+					this.hits.increment();
+					return true;
+				}
+			}
+		}
+		
+		this.misses.increment();
+		return false;
+	}
+	
+	/**
+	 * Copy the cached values of the given provider for the given URL into the
+	 * target instance even if they have expired. Lookups served by this
+	 * method are counted as stale hits, and are in addition to the miss
+	 * counted by {@link #read(String, SocialCountProvider, SocialCounts)}.
+	 * 
+	 * @param key
+	 *            the URL
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} whose values are needed
+	 * 
+	 * @param target
+	 *            the {@link SocialCounts} instance to copy the values to
+	 * 
+	 * @return the time at which the copied values were fetched, or zero if
+	 *         the values are not in the cache
+	 */
+	public long readStale(String key, SocialCountProvider provider, SocialCounts target) {
+		CacheEntry entry = this.segmentFor(key).get(key);
+		if(entry == null) {
+			return 0;
+		}
+		
+		int slot = ProviderSlots.indexOf(provider.getName());
+		synchronized(entry) {
+			if(slot < 0 || slot >= entry.fetchedAt.length || entry.fetchedAt[slot] == 0) {
+				return 0;
+			}
+			
+			provider.copyCounts(entry.values, target);
+			this.staleHits.increment();
+			return entry.fetchedAt[slot];
+		}
+	}
+	
+	/**
+	 * Cache the values of the given provider for the given URL as fetched in
+	 * the given instance. The values are considered fetched at the
+	 * {@link SocialCounts#lastUpdated} time of the instance.
+	 * 
+	 * @param key
+	 *            the URL
+	 * 
+	 * @param provider
+	 *            the {@link SocialCountProvider} whose values are to be cached
+	 * 
+	 * @param source
+	 *            the {@link SocialCounts} instance holding the fetched values
+	 */
+	public void write(String key, SocialCountProvider provider, SocialCounts source) {
+		int slot = ProviderSlots.slotOf(provider.getName());
+		CacheEntry entry = this.segmentFor(key).getOrCreate(key, source);
+		
+		synchronized(entry) {
+			if(slot >= entry.fetchedAt.length) {
+				entry.fetchedAt = Arrays.copyOf(entry.fetchedAt, Math.max(slot + 1, ProviderSlots.size()));
+			}
+			
+			// never overwrite newer values with older ones
+			if(entry.fetchedAt[slot] <= source.lastUpdated) {
+				provider.copyCounts(source, entry.values);
+				entry.fetchedAt[slot] = source.lastUpdated;
+				
+				SocialCountStore store = this.store;
+				if(store != null) {
+					store.append(key, entry.values, entry.fetchedAt);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Put values loaded from a {@link SocialCountStore} into the cache, unless
+	 * the URL is already cached.
+	 * 
+	 * @param key
+	 *            the URL
+	 * 
+	 * @param values
+	 *            the values of all providers, owned by the cache from now on
+	 * 
+	 * @param fetchedAt
+	 *            the time at which the values of each provider slot were
+	 *            fetched
+	 * 
+	 * @return <code>true</code> if the values were put in the cache
+	 */
+	boolean restore(String key, SocialCounts values, long[] fetchedAt) {
+		return this.segmentFor(key).putIfAbsent(key, new CacheEntry(values, fetchedAt));
+	}
+	
+	/**
+	 * Remove all cached values for the given URL.
+	 * 
+	 * @param key
+	 *            the URL
+	 */
+	public void invalidate(String key) {
+		this.segmentFor(key).remove(key);
+	}
+	
+	/**
+	 * Remove all cached values.
+	 * 
+	 */
+	public void clear() {
+		for(Segment segment : this.segments) {
+			segment.clear();
+		}
+	}
+	
+	/**
+	 * Return the number of URLs currently cached.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : this.segments) {
+			size += segment.size();
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Return the fraction of lookups that were served from the cache.
+	 * 
+	 * @return the hit rate between zero and one
+	 */
+	public double getHitRate() {
+		long hits = this.hits.sum();
+		long total = hits + this.misses.sum();
+		if(total == 0) {
+			return 0;
+		}
+		
+		return (double) hits / total;
+	}
+	
+	/**
+	 * Change the time-to-live for the values of the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @param ttl
+	 *            the time-to-live in millis
+	 */
+	public void setTtl(String provider, long ttl) {
+		this.ttls.put(provider, ttl);
+	}
+	
+	/**
+	 * Return the time-to-live for the values of the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the time-to-live in millis
+	 */
+	public long getTtl(String provider) {
+		Long ttl = this.ttls.get(provider);
+		if(ttl != null) {
+			return ttl;
+		}
+		
+		return this.defaultTtl;
+	}
+	
+	private Segment segmentFor(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return this.segments[hash & (SEGMENTS - 1)];
+	}
+	
+	// Usual accessors follow
+	
+	public long getDefaultTtl() {
+		return this.defaultTtl;
+	}
+	
+	public void setDefaultTtl(long defaultTtl) {
+		this.defaultTtl = defaultTtl;
+	}
+	
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+	
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+	
+	public long getStaleHitCount() {
+		return this.staleHits.sum();
+	}
+	
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+	
+	public SocialCountStore getStore() {
+		return this.store;
+	}
+	
+	/**
+	 * Set the store that every write to this cache is appended to, so that
+	 * the cache can be warmed with {@link SocialCountStore#load(SocialCountCache)}
+	 * after a restart.
+	 * 
+	 * @param store
+	 *            the {@link SocialCountStore} to use, <code>null</code> to
+	 *            stop writing to it
+	 */
+	public void setStore(SocialCountStore store) {
+		this.store = store;
+	}
+	
+	/**
+	 * The cached values of a single URL.
+	 * 
+	 */
+	private static class CacheEntry {
+		
+		/**
+		 * Holds the latest values of all providers
+		 */
+		final SocialCounts values;
+		
+		/**
+		 * The time at which the values of each provider slot were fetched
+		 */
+		long[] fetchedAt = new long[ProviderSlots.size()];
+		
+		CacheEntry(SocialCounts values) {
+			this.values = values;
+		}
+		
+		CacheEntry(SocialCounts values, long[] fetchedAt) {
+			this.values = values;
+			this.fetchedAt = fetchedAt;
+		}
+		
+	}
+	
+	/**
+	 * A part of the cache with its own lock and LRU order.
+	 * 
+	 */
+	private class Segment {
+		
+		private final LinkedHashMap<String, CacheEntry> map;
+		
+		Segment(final int maxEntries) {
+			this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+				
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+					if(this.size() > maxEntries) {
+						evictions.increment();
+						return true;
+					}
+					
+					return false;
+				}
+				
+			};
+		}
+		
+		synchronized CacheEntry get(String key) {
+			return this.map.get(key);
+		}
+		
+		synchronized CacheEntry getOrCreate(String key, SocialCounts source) {
+			CacheEntry entry = this.map.get(key);
+			if(entry == null) {
+				entry = new CacheEntry(new SocialCounts(source.url));
+				this.map.put(key, entry);
+			}
+			
+			return entry;
+		}
+		
+		synchronized boolean putIfAbsent(String key, CacheEntry entry) {
+			if(this.map.containsKey(key)) {
+				return false;
+			}
+			
+			this.map.put(key, entry);
+			return true;
+		}
+		
+		synchronized void remove(String key) {
+			this.map.remove(key);
+		}
+		
+		synchronized void clear() {
+			this.map.clear();
+		}
+		
+		synchronized int size() {
+			return this.map.size();
+		}
+		
+	}
+
+}
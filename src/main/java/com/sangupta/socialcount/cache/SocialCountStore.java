@@ -0,0 +1,925 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.ProviderSlots;
+
+/**
+ * A durable, append-only log of the entries of a {@link SocialCountCache},
+ * so that a restarted process can pre-warm its cache from disk instead of
+ * refetching every URL from the providers.
+ * 
+ * Every write to a cache the store is set on appends a snapshot of the entry
+ * for the URL as a binary record: a length, a CRC32 checksum, the URL, the
+ * nine counts and the fetch time of each provider. Provider names are written
+ * once per file and referred to by a one byte index. Records are buffered and
+ * written out by a background thread within a flush interval of being
+ * appended, so that the caches appending them never wait for the disk; a
+ * process crash thus loses at most that much, and a torn record at the end of
+ * the log is dropped on open. Should the disk fall so far behind that
+ * {@link #MAX_PENDING_BUFFERS} buffers wait to be written, further records are
+ * dropped and counted as write errors.
+ * 
+ * As the same URL is written many times, the log is compacted in the
+ * background once it has doubled in size, keeping only the latest record of
+ * each URL that is younger than the maximum age.
+ * 
+ * Loading a store reads it through a memory-mapped buffer. Only the URL of
+ * each record is decoded to find the latest record for the URL, and only
+ * those records are turned into cache entries.
+ * 
+ * @author sangupta
+ *
+ */
+public class SocialCountStore implements Closeable {
+	
+	/**
+	 * Default age in millis after which records are dropped
+	 */
+	public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+	
+	/**
+	 * Default time in millis after which buffered records are written out
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	
+	/**
+	 * Size in bytes below which the log is never compacted
+	 */
+	private static final long MIN_COMPACTION_SIZE = 4 * 1024 * 1024;
+	
+	/**
+	 * Marks the start of a store file - <code>SCST</code>
+	 */
+	private static final int MAGIC = 0x53435354;
+	
+	private static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 8;
+	
+	/**
+	 * Largest record accepted - anything bigger is a corrupt length
+	 */
+	private static final int MAX_RECORD_SIZE = 16 * 1024;
+	
+	/**
+	 * Number of counts in a record
+	 */
+	private static final int COUNTS = 9;
+	
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Maximum number of full write buffers waiting to be written out
+	 */
+	public static final int MAX_PENDING_BUFFERS = 16;
+	
+	/**
+	 * The log file
+	 */
+	private final Path path;
+	
+	/**
+	 * Guards the log and the number of bytes written to it. Taken before the
+	 * monitor of the store, never while holding it, so that appending a
+	 * record never waits for the disk.
+	 */
+	private final Object io = new Object();
+	
+	/**
+	 * Buffers records before they are written out
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	
+	/**
+	 * Full buffers waiting to be written out, oldest first
+	 */
+	private final List<ByteBuffer> pending = new ArrayList<>();
+	
+	/**
+	 * A written out buffer kept for reuse, <code>null</code> if none
+	 */
+	private ByteBuffer spare;
+	
+	private final CRC32 crc = new CRC32();
+	
+	private final LongAdder appends = new LongAdder();
+	
+	private final LongAdder writeErrors = new LongAdder();
+	
+	/**
+	 * Writes out buffered records once they have waited for the flush
+	 * interval
+	 */
+	private final ScheduledThreadPoolExecutor flusher;
+	
+	/**
+	 * The flush scheduled for the buffered records, <code>null</code> if none
+	 */
+	private ScheduledFuture<?> scheduledFlush;
+	
+	/**
+	 * The open log
+	 */
+	private FileChannel channel;
+	
+	/**
+	 * Number of bytes written to the log
+	 */
+	private volatile long written;
+	
+	/**
+	 * Size of the log after it was opened or last compacted
+	 */
+	private volatile long compactedSize;
+	
+	/**
+	 * The provider name for each index used in the log
+	 */
+	private final List<String> names = new ArrayList<>();
+	
+	/**
+	 * The index used in the log for each provider slot, <code>-1</code> if
+	 * the provider has not been written yet
+	 */
+	private int[] indexes = new int[0];
+	
+	private long flushedAt = System.currentTimeMillis();
+	
+	private boolean compacting;
+	
+	private boolean closed;
+	
+	private volatile long maxAge = DEFAULT_MAX_AGE;
+	
+	private volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	
+	/**
+	 * Open the store in the given file, creating it if needed.
+	 * 
+	 * @param file
+	 *            the log file
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened, or is not a store
+	 */
+	public SocialCountStore(File file) throws IOException {
+		this.path = file.toPath();
+		this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		try {
+			if(this.channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).flip();
+				this.channel.write(header, 0);
+				this.written = HEADER_SIZE;
+			} else {
+				// learn the provider names, and drop a record torn by a crash
+				MappedByteBuffer map = this.map(this.channel);
+				this.written = scan(map, HEADER_SIZE, map.limit(), this.crc, this.names, null);
+				if(this.written < this.channel.size()) {
+					this.channel.truncate(this.written);
+				}
+			}
+		} catch(IOException | RuntimeException e) {
+			// not a store, or corrupt
+			this.channel.close();
+			throw e;
+		}
+		
+		this.compactedSize = this.written;
+		this.indexByName();
+		
+		this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "socialcount-store-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flusher.setRemoveOnCancelPolicy(true);
+	}
+	
+	/**
+	 * Load the latest values of every URL in the store, that are younger than
+	 * the maximum age, into the given cache. URLs already in the cache are
+	 * left untouched. URLs are loaded oldest record first, so that if the
+	 * cache is too small to hold them all, the most recently written ones
+	 * remain.
+	 * 
+	 * @param cache
+	 *            the {@link SocialCountCache} to warm
+	 * 
+	 * @return the number of URLs loaded
+	 * 
+	 * @throws IOException
+	 *             if the store cannot be read
+	 */
+	public int load(SocialCountCache cache) throws IOException {
+		MappedByteBuffer map;
+		Map<String, Integer> latest = new HashMap<>();
+		List<String> names = new ArrayList<>();
+		synchronized(this.io) {
+			this.writePending();
+			
+			map = this.map(this.channel);
+			scan(map, HEADER_SIZE, (int) this.written, new CRC32(), names, latest);
+		}
+		
+		// the slot of each provider index in this process
+		int[] slots = new int[names.size()];
+		for(int index = 0; index < slots.length; index++) {
+			slots[index] = names.get(index) != null ? ProviderSlots.slotOf(names.get(index)) : -1;
+		}
+		
+		int[] offsets = new int[latest.size()];
+		int count = 0;
+		for(Integer offset : latest.values()) {
+			offsets[count++] = offset;
+		}
+		
+		Arrays.sort(offsets);
+		
+		long oldest = System.currentTimeMillis() - this.maxAge;
+		int loaded = 0;
+		for(int offset : offsets) {
+			if(this.restore(map, offset, slots, oldest, cache)) {
+				loaded++;
+			}
+		}
+		
+		return loaded;
+	}
+	
+	/**
+	 * Decode a single entry record into the cache.
+	 * 
+	 */
+	private boolean restore(ByteBuffer map, int offset, int[] slots, long oldest, SocialCountCache cache) {
+		int position = offset + 8;
+		int keyLength = map.getShort(position);
+		String key = readString(map, position + 2, keyLength);
+		position += 2 + keyLength;
+		
+		int countsAt = position;
+		position += COUNTS * 8;
+		
+		int providers = map.get(position++) & 0xff;
+		long[] fetchedAt = new long[ProviderSlots.size()];
+		long newest = 0;
+		for(int index = 0; index < providers; index++, position += 9) {
+			int providerIndex = map.get(position) & 0xff;
+			long time = map.getLong(position + 1);
+			newest = Math.max(newest, time);
+			
+			int slot = providerIndex < slots.length ? slots[providerIndex] : -1;
+			if(slot >= 0 && slot < fetchedAt.length) {
+				fetchedAt[slot] = time;
+			}
+		}
+		
+		if(newest <= oldest) {
+			return false;
+		}
+		
+		SocialCounts values = new SocialCounts(key, null, newest);
+		values.facebookShares = map.getLong(countsAt);
+		values.facebookLikes = map.getLong(countsAt + 8);
+		values.facebookComments = map.getLong(countsAt + 16);
+		values.facebookClicks = map.getLong(countsAt + 24);
+		values.twitter = map.getLong(countsAt + 32);
+		values.googlePlusOne = map.getLong(countsAt + 40);
+		values.googleShares = map.getLong(countsAt + 48);
+		values.linkedinShares = map.getLong(countsAt + 56);
+		values.pinterestPins = map.getLong(countsAt + 64);
+		
+		return cache.restore(key, values, fetchedAt);
+	}
+	
+	/**
+	 * Append a snapshot of a cache entry to the write buffer. Called by the
+	 * cache with the entry locked, so records of a URL are appended in order,
+	 * and thus never writes to the disk itself. Failures are counted, not
+	 * thrown, as the cache works without the store.
+	 * 
+	 * @param key
+	 *            the URL
+	 * 
+	 * @param values
+	 *            the cached values
+	 * 
+	 * @param fetchedAt
+	 *            the time at which the values of each provider slot were
+	 *            fetched
+	 */
+	synchronized void append(String key, SocialCounts values, long[] fetchedAt) {
+		if(this.closed) {
+			return;
+		}
+		
+		try {
+			int providers = 0;
+			for(int slot = 0; slot < fetchedAt.length; slot++) {
+				if(fetchedAt[slot] != 0 && this.indexOf(slot) >= 0) {
+					providers++;
+				}
+			}
+			
+			byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			int length = 2 + keyBytes.length + COUNTS * 8 + 1 + providers * 9;
+			if(keyBytes.length > Short.MAX_VALUE || length > MAX_RECORD_SIZE) {
+				throw new IOException("URL too long to store: " + keyBytes.length + " bytes");
+			}
+			
+			int start = this.begin(length);
+			this.buffer.putShort((short) keyBytes.length).put(keyBytes);
+			this.buffer.putLong(values.facebookShares)
+					   .putLong(values.facebookLikes)
+					   .putLong(values.facebookComments)
+					   .putLong(values.facebookClicks)
+					   .putLong(values.twitter)
+					   .putLong(values.googlePlusOne)
+					   .putLong(values.googleShares)
+					   .putLong(values.linkedinShares)
+					   .putLong(values.pinterestPins);
+			
+			this.buffer.put((byte) providers);
+			for(int slot = 0; slot < fetchedAt.length; slot++) {
+				if(fetchedAt[slot] != 0 && this.indexOf(slot) >= 0) {
+					this.buffer.put((byte) this.indexOf(slot)).putLong(fetchedAt[slot]);
+				}
+			}
+			
+			this.end(start);
+			this.appends.increment();
+			
+			// written out even if no other record is appended
+			this.scheduleFlush(this.flushedAt + this.flushInterval - System.currentTimeMillis());
+			
+			long size = this.written + this.buffered();
+			if(!this.compacting && size > MIN_COMPACTION_SIZE && size > 2 * this.compactedSize) {
+				this.compacting = true;
+				Thread compactor = new Thread(this::compactQuietly, "socialcount-store-compactor");
+				compactor.setDaemon(true);
+				compactor.start();
+			}
+		} catch(IOException e) {
+			this.writeErrors.increment();
+		}
+	}
+	
+	/**
+	 * Return the log index of the provider in the given slot, writing the
+	 * provider name to the log when first seen.
+	 * 
+	 * @return the index, or <code>-1</code> if the provider cannot be stored
+	 */
+	private int indexOf(int slot) throws IOException {
+		if(slot < this.indexes.length && this.indexes[slot] >= 0) {
+			return this.indexes[slot];
+		}
+		
+		String name = ProviderSlots.nameOf(slot);
+		if(name == null || this.names.size() > 255) {
+			return -1;
+		}
+		
+		int index = this.names.size();
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		int start = this.begin(2 + 1 + 2 + nameBytes.length);
+		this.buffer.putShort((short) 0).put((byte) index).putShort((short) nameBytes.length).put(nameBytes);
+		this.end(start);
+		
+		this.names.add(name);
+		this.indexByName();
+		return index;
+	}
+	
+	/**
+	 * Start a record of the given length in the write buffer. A full buffer
+	 * is handed to the flusher and replaced by an empty one.
+	 * 
+	 * @return the position of the record in the buffer
+	 * 
+	 * @throws IOException
+	 *             if too many buffers are already waiting to be written
+	 */
+	private int begin(int length) throws IOException {
+		if(this.buffer.remaining() < 8 + length) {
+			if(this.pending.size() >= MAX_PENDING_BUFFERS) {
+				throw new IOException("Store is too far behind, record dropped");
+			}
+			
+			this.pending.add(this.buffer);
+			this.buffer = this.spare != null ? this.spare : ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+			this.spare = null;
+			this.scheduleFlush(0);
+		}
+		
+		int start = this.buffer.position();
+		this.buffer.putInt(length).putInt(0);
+		return start;
+	}
+	
+	/**
+	 * Fill in the checksum of the record started at the given position.
+	 * 
+	 */
+	private void end(int start) {
+		this.crc.reset();
+		this.crc.update(this.buffer.array(), start + 8, this.buffer.position() - start - 8);
+		this.buffer.putInt(start + 4, (int) this.crc.getValue());
+	}
+	
+	/**
+	 * Have the flusher write out the buffered records after the given delay,
+	 * unless it is already due to do so sooner.
+	 * 
+	 * @param delay
+	 *            the delay in millis
+	 */
+	private void scheduleFlush(long delay) {
+		delay = Math.max(0, delay);
+		if(this.scheduledFlush != null) {
+			if(this.scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+				return;
+			}
+			
+			this.scheduledFlush.cancel(false);
+		}
+		
+		this.scheduledFlush = this.flusher.schedule(this::flushQuietly, delay, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Return the number of bytes buffered but not yet written out.
+	 * 
+	 */
+	private long buffered() {
+		long size = this.buffer.position();
+		for(ByteBuffer full : this.pending) {
+			size += full.position();
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Write out all buffered records.
+	 * 
+	 * @throws IOException
+	 *             if the records cannot be written
+	 */
+	public void flush() throws IOException {
+		synchronized(this.io) {
+			this.writePending();
+		}
+	}
+	
+	/**
+	 * Write out all buffered records, with the io lock held. The buffers are
+	 * swapped out under the monitor of the store, and written outside it so
+	 * that appends carry on meanwhile.
+	 * 
+	 */
+	private void writePending() throws IOException {
+		final List<ByteBuffer> full;
+		synchronized(this) {
+			this.flushedAt = System.currentTimeMillis();
+			if(this.scheduledFlush != null) {
+				this.scheduledFlush.cancel(false);
+				this.scheduledFlush = null;
+			}
+			
+			if(this.closed) {
+				return;
+			}
+			
+			if(this.buffer.position() > 0) {
+				this.pending.add(this.buffer);
+				this.buffer = this.spare != null ? this.spare : ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+				this.spare = null;
+			}
+			
+			if(this.pending.isEmpty()) {
+				return;
+			}
+			
+			full = new ArrayList<>(this.pending);
+			this.pending.clear();
+		}
+		
+		try {
+			for(ByteBuffer records : full) {
+				records.flip();
+				while(records.hasRemaining()) {
+					this.written += this.channel.write(records, this.written);
+				}
+			}
+		} finally {
+			ByteBuffer reuse = full.get(0);
+			reuse.clear();
+			synchronized(this) {
+				this.spare = reuse;
+			}
+		}
+	}
+	
+	private void flushQuietly() {
+		try {
+			this.flush();
+		} catch(IOException e) {
+			this.writeErrors.increment();
+		}
+	}
+	
+	/**
+	 * Rewrite the log keeping only the latest record of each URL that is
+	 * younger than the maximum age. Records appended while the log is being
+	 * rewritten are carried over.
+	 * 
+	 * @throws IOException
+	 *             if the log cannot be rewritten
+	 */
+	public void compact() throws IOException {
+		synchronized(this) {
+			if(this.compacting || this.closed) {
+				return;
+			}
+			
+			this.compacting = true;
+		}
+		
+		this.compactLog();
+	}
+	
+	private void compactQuietly() {
+		try {
+			this.compactLog();
+		} catch(IOException e) {
+			this.writeErrors.increment();
+		}
+	}
+	
+	/**
+	 * Rewrite the log, once the caller has set the compacting flag.
+	 * 
+	 */
+	private void compactLog() throws IOException {
+		final long end;
+		final List<String> names;
+		synchronized(this.io) {
+			this.writePending();
+			end = this.written;
+			synchronized(this) {
+				names = new ArrayList<>(this.names);
+			}
+		}
+		
+		Path temp = this.path.resolveSibling(this.path.getFileName() + ".compact");
+		try(FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			this.rewrite(end, names, out);
+			
+			synchronized(this.io) {
+				synchronized(this) {
+					if(this.closed) {
+						return;
+					}
+				}
+				
+				// carry over what was appended meanwhile
+				this.writePending();
+				long copied = end;
+				while(copied < this.written) {
+					copied += this.channel.transferTo(copied, this.written - copied, out);
+				}
+				
+				long position = out.size();
+				out.force(false);
+				
+				// some platforms cannot replace a file that is open
+				boolean moved = false;
+				this.channel.close();
+				try {
+					move(temp, this.path);
+					moved = true;
+				} finally {
+					// the old log if the move failed, so appends carry on
+					this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					if(moved) {
+						this.written = position;
+					}
+					
+					// do not retry until the log has doubled again
+					this.compactedSize = this.written;
+				}
+			}
+		} finally {
+			synchronized(this) {
+				this.compacting = false;
+			}
+			
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	/**
+	 * Write the header, the provider names and the live records of the
+	 * first <code>end</code> bytes of the log to the given channel.
+	 * 
+	 */
+	private void rewrite(long end, List<String> names, FileChannel out) throws IOException {
+		ByteBuffer map;
+		synchronized(this.io) {
+			map = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		}
+		
+		CRC32 crc = new CRC32();
+		Map<String, Integer> latest = new HashMap<>();
+		scan(map, HEADER_SIZE, (int) end, crc, new ArrayList<String>(), latest);
+		
+		ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		
+		// same names at the same indexes, so that records are copied as is
+		for(int index = 0; index < names.size(); index++) {
+			byte[] name = names.get(index).getBytes(StandardCharsets.UTF_8);
+			int start = buffer.position();
+			buffer.putInt(2 + 1 + 2 + name.length).putInt(0);
+			buffer.putShort((short) 0).put((byte) index).putShort((short) name.length).put(name);
+			
+			crc.reset();
+			crc.update(buffer.array(), start + 8, buffer.position() - start - 8);
+			buffer.putInt(start + 4, (int) crc.getValue());
+		}
+		
+		int[] offsets = new int[latest.size()];
+		int count = 0;
+		for(Integer offset : latest.values()) {
+			offsets[count++] = offset;
+		}
+		
+		Arrays.sort(offsets);
+		
+		long oldest = System.currentTimeMillis() - this.maxAge;
+		for(int offset : offsets) {
+			if(newestFetch(map, offset) <= oldest) {
+				continue;
+			}
+			
+			int length = 8 + map.getInt(offset);
+			if(buffer.remaining() < length) {
+				writeFully(buffer, out);
+			}
+			
+			ByteBuffer record = map.duplicate();
+			record.limit(offset + length).position(offset);
+			buffer.put(record);
+		}
+		
+		writeFully(buffer, out);
+	}
+	
+	/**
+	 * Replace the target with the source file, atomically where the file
+	 * system supports it.
+	 * 
+	 */
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private static void writeFully(ByteBuffer buffer, FileChannel out) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		
+		buffer.clear();
+	}
+	
+	/**
+	 * Return the latest fetch time in the entry record at the given offset.
+	 * 
+	 */
+	private static long newestFetch(ByteBuffer map, int offset) {
+		int position = offset + 8;
+		position += 2 + map.getShort(position) + COUNTS * 8;
+		
+		int providers = map.get(position++) & 0xff;
+		long newest = 0;
+		for(int index = 0; index < providers; index++, position += 9) {
+			newest = Math.max(newest, map.getLong(position + 1));
+		}
+		
+		return newest;
+	}
+	
+	/**
+	 * Walk the valid records of the log, stopping at the first one that is
+	 * truncated or fails its checksum.
+	 * 
+	 * @param map
+	 *            the log
+	 * 
+	 * @param start
+	 *            the offset of the first record
+	 * 
+	 * @param end
+	 *            the offset to stop at
+	 * 
+	 * @param crc
+	 *            the checksum to use
+	 * 
+	 * @param names
+	 *            receives the provider name of each index
+	 * 
+	 * @param latest
+	 *            receives the offset of the latest record of each URL, may
+	 *            be <code>null</code>
+	 * 
+	 * @return the offset after the last valid record
+	 */
+	private static int scan(ByteBuffer map, int start, int end, CRC32 crc, List<String> names, Map<String, Integer> latest) {
+		int position = start;
+		while(position + 8 + 2 <= end) {
+			int length = map.getInt(position);
+			if(length < 2 || length > MAX_RECORD_SIZE || position + 8 + length > end) {
+				break;
+			}
+			
+			ByteBuffer payload = map.duplicate();
+			payload.limit(position + 8 + length).position(position + 8);
+			crc.reset();
+			crc.update(payload);
+			if((int) crc.getValue() != map.getInt(position + 4)) {
+				break;
+			}
+			
+			int keyLength = map.getShort(position + 8);
+			if(keyLength == 0) {
+				// a provider name
+				int index = map.get(position + 10) & 0xff;
+				String name = readString(map, position + 13, map.getShort(position + 11));
+				while(names.size() <= index) {
+					names.add(null);
+				}
+				
+				names.set(index, name);
+			} else if(latest != null) {
+				latest.put(readString(map, position + 10, keyLength), position);
+			}
+			
+			position += 8 + length;
+		}
+		
+		return position;
+	}
+	
+	private static String readString(ByteBuffer map, int position, int length) {
+		byte[] bytes = new byte[length];
+		ByteBuffer source = map.duplicate();
+		source.position(position);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private MappedByteBuffer map(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("Store is too large to load: " + size + " bytes");
+		}
+		
+		MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		if(size < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+			throw new IOException("Not a social count store: " + this.path);
+		}
+		
+		return map;
+	}
+	
+	private void indexByName() {
+		int[] indexes = new int[Math.max(this.indexes.length, ProviderSlots.size())];
+		Arrays.fill(indexes, -1);
+		for(int index = 0; index < this.names.size(); index++) {
+			String name = this.names.get(index);
+			if(name != null) {
+				indexes[ProviderSlots.slotOf(name)] = index;
+			}
+		}
+		
+		this.indexes = indexes;
+	}
+	
+	/**
+	 * Write out all buffered records and close the log.
+	 * 
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this.io) {
+			synchronized(this) {
+				if(this.closed) {
+					return;
+				}
+			}
+			
+			try {
+				this.writePending();
+				this.channel.force(false);
+			} finally {
+				synchronized(this) {
+					this.closed = true;
+				}
+				
+				this.flusher.shutdownNow();
+				this.channel.close();
+			}
+		}
+	}
+	
+	/**
+	 * Return the size of the log.
+	 * 
+	 * @return the size in bytes, including buffered records
+	 */
+	public long size() {
+		synchronized(this.io) {
+			synchronized(this) {
+				return this.written + this.buffered();
+			}
+		}
+	}
+	
+	// Usual accessors follow
+	
+	public long getAppendCount() {
+		return this.appends.sum();
+	}
+	
+	public long getWriteErrorCount() {
+		return this.writeErrors.sum();
+	}
+	
+	public long getMaxAge() {
+		return this.maxAge;
+	}
+	
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+	
+	public long getFlushInterval() {
+		return this.flushInterval;
+	}
+	
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+}
@@ -0,0 +1,360 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.history;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.UrlCanonicalizer;
+
+/**
+ * Keeps the history of the counts of every URL recorded, to answer how fast
+ * a URL is being shared. Only changes are kept, as varint encoded deltas in
+ * a byte array per URL, so that a sample takes a few bytes and weeks of
+ * history can be kept for millions of URLs. Times are kept to the second.
+ * 
+ * The value of a count at any time is that of the last sample at or before
+ * it. Queries reaching back before the first sample of a count use the
+ * first sample instead.
+ * 
+ * The history is keyed by canonical URL. Samples are recorded under the URL
+ * of the given counts as is, and queries canonicalize the URL asked for with
+ * the canonicalizer of the history, if any. When set on a client, every
+ * value fetched from a provider is recorded under its canonical URL, and the
+ * history is given the canonicalizer of the client, so that any spelling of
+ * a URL finds its history.
+ * 
+ * The history is thread-safe.
+ * 
+ * @author sangupta
+ *
+ */
+public class CountHistory {
+	
+	/**
+	 * Default time in millis history is kept for
+	 */
+	public static final long DEFAULT_RETENTION = TimeUnit.DAYS.toMillis(28);
+	
+	private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+	
+	/**
+	 * The history of each URL
+	 */
+	private final ConcurrentMap<String, UrlHistory> urls = new ConcurrentHashMap<>();
+	
+	/**
+	 * Time in millis history is kept for
+	 */
+	private volatile long retention = DEFAULT_RETENTION;
+	
+	/**
+	 * Turns the URLs asked for into the keys samples were recorded under,
+	 * <code>null</code> to look them up as given
+	 */
+	private volatile UrlCanonicalizer canonicalizer;
+	
+	/**
+	 * Record all the counts fetched in the given instance as of now.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to record
+	 */
+	public void record(SocialCounts counts) {
+		this.record(counts, null, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Record the counts fetched in the given instance. Counts that were not
+	 * fetched, or have not changed since the last sample, take no space.
+	 * Samples older than the latest one of the URL are ignored.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to record, whose URL
+	 *            should be canonical
+	 * 
+	 * @param provider
+	 *            the name of the provider whose counts are to be recorded,
+	 *            or <code>null</code> for all
+	 * 
+	 * @param time
+	 *            the time in millis the counts were fetched at
+	 * 
+	 * @return <code>true</code> if a sample was written
+	 */
+	public boolean record(SocialCounts counts, String provider, long time) {
+		long[] values = new long[CountType.VALUES.length];
+		boolean any = false;
+		for(CountType type : CountType.VALUES) {
+			long value = -1;
+			if(provider == null || provider.equals(type.provider)) {
+				value = type.valueOf(counts);
+			}
+			
+			values[type.ordinal()] = value;
+			any |= value >= 0;
+		}
+		
+		if(!any) {
+			return false;
+		}
+		
+		UrlHistory history = this.urls.get(counts.url);
+		if(history == null) {
+			history = new UrlHistory();
+			UrlHistory existing = this.urls.putIfAbsent(counts.url, history);
+			if(existing != null) {
+				history = existing;
+			}
+		}
+		
+		return history.append(TimeUnit.MILLISECONDS.toSeconds(time), values, TimeUnit.MILLISECONDS.toSeconds(this.retention));
+	}
+	
+	/**
+	 * Return the latest value recorded for the given count of a URL.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @return the value, <code>-1</code> if never recorded
+	 */
+	public long getLatest(String url, CountType type) {
+		UrlHistory history = this.urls.get(this.keyOf(url));
+		return history != null ? history.latest(type) : -1;
+	}
+	
+	/**
+	 * Return the value the given count of a URL had at the given time.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @param time
+	 *            the time in millis
+	 * 
+	 * @return the value, <code>-1</code> if not recorded by then
+	 */
+	public long getValueAt(String url, CountType type, long time) {
+		long[] result = new long[3];
+		if(!this.find(url, type, time, result)) {
+			return -1;
+		}
+		
+		return result[0];
+	}
+	
+	/**
+	 * Return how much the given count of a URL grew over the given window
+	 * ending now, like the number of shares in the last hour.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @param window
+	 *            the length of the window in millis
+	 * 
+	 * @return the growth, zero if not recorded
+	 */
+	public long getDelta(String url, CountType type, long window) {
+		long now = System.currentTimeMillis();
+		return this.getDelta(url, type, now - window, now);
+	}
+	
+	/**
+	 * Return how much the given count of a URL grew between the given times.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @param from
+	 *            the start of the window in millis
+	 * 
+	 * @param to
+	 *            the end of the window in millis
+	 * 
+	 * @return the growth, zero if not recorded
+	 */
+	public long getDelta(String url, CountType type, long from, long to) {
+		long[] result = new long[3];
+		if(!this.find(url, type, from, result)) {
+			return 0;
+		}
+		
+		long start = result[0] >= 0 ? result[0] : result[1];
+		long end = this.getValueAt(url, type, to);
+		return end >= 0 ? end - start : 0;
+	}
+	
+	/**
+	 * Return the rate at which the given count of a URL grew over the given
+	 * window ending now, like shares per hour. When the history of the count
+	 * is shorter than the window, the rate is taken over the history alone.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @param window
+	 *            the length of the window in millis
+	 * 
+	 * @return the growth per hour, or {@link Double#NaN} if the count has
+	 *         not been recorded long enough to tell
+	 */
+	public double getGrowthRate(String url, CountType type, long window) {
+		final long now = System.currentTimeMillis();
+		long[] result = new long[3];
+		if(!this.find(url, type, now - window, result)) {
+			return Double.NaN;
+		}
+		
+		long from = now - window;
+		long start = result[0];
+		if(start < 0) {
+			// history is shorter than the window
+			from = TimeUnit.SECONDS.toMillis(result[2]);
+			start = result[1];
+		}
+		
+		long elapsed = now - from;
+		if(elapsed <= 0) {
+			return Double.NaN;
+		}
+		
+		return (double) (this.getLatest(url, type) - start) * MILLIS_PER_HOUR / elapsed;
+	}
+	
+	private boolean find(String url, CountType type, long time, long[] result) {
+		UrlHistory history = this.urls.get(this.keyOf(url));
+		return history != null && history.valueAt(type, Math.floorDiv(time, 1000), result);
+	}
+	
+	/**
+	 * Return the key the history of the given URL is recorded under.
+	 * 
+	 */
+	private String keyOf(String url) {
+		UrlCanonicalizer canonicalizer = this.canonicalizer;
+		return canonicalizer != null ? canonicalizer.canonicalize(url) : url;
+	}
+	
+	/**
+	 * Drop the history of the given URL.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return <code>true</code> if there was any
+	 */
+	public boolean remove(String url) {
+		return this.urls.remove(this.keyOf(url)) != null;
+	}
+	
+	/**
+	 * Drop the history of all URLs.
+	 * 
+	 */
+	public void clear() {
+		this.urls.clear();
+	}
+	
+	/**
+	 * Return the number of URLs with history.
+	 * 
+	 * @return the number of URLs
+	 */
+	public int size() {
+		return this.urls.size();
+	}
+	
+	/**
+	 * Return the number of bytes taken by the samples of all URLs, not
+	 * counting the spare capacity of the arrays or the URLs themselves.
+	 * 
+	 * @return the number of bytes
+	 */
+	public long getSampleBytes() {
+		long bytes = 0;
+		for(UrlHistory history : this.urls.values()) {
+			bytes += history.size();
+		}
+		
+		return bytes;
+	}
+	
+	// Usual accessors follow
+	
+	public long getRetention() {
+		return this.retention;
+	}
+	
+	/**
+	 * Change how long history is kept for. Older samples are dropped lazily,
+	 * as the history of a URL grows.
+	 * 
+	 * @param retention
+	 *            the time in millis, at least one second
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is less than a second
+	 */
+	public void setRetention(long retention) {
+		if(retention < 1000) {
+			throw new IllegalArgumentException("Retention must be at least a second");
+		}
+		
+		this.retention = retention;
+	}
+	
+	public UrlCanonicalizer getCanonicalizer() {
+		return this.canonicalizer;
+	}
+	
+	/**
+	 * Change how the URLs asked for are canonicalized. Set by a client to its
+	 * own canonicalizer when the history is set on it.
+	 * 
+	 * @param canonicalizer
+	 *            the {@link UrlCanonicalizer} to use, <code>null</code> to
+	 *            look URLs up as given
+	 */
+	public void setCanonicalizer(UrlCanonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+	}
+
+}
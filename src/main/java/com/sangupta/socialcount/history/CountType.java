@@ -0,0 +1,128 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.history;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.GooglePlusOneProvider;
+import com.sangupta.socialcount.provider.GoogleSharesProvider;
+import com.sangupta.socialcount.provider.LinkedinProvider;
+import com.sangupta.socialcount.provider.PinterestProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * The counts of {@link SocialCounts} that a {@link CountHistory} keeps a
+ * series of, along with the provider each is fetched from.
+ * 
+ * @author sangupta
+ *
+ */
+public enum CountType {
+	
+	FACEBOOK_SHARES(FacebookProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.facebookShares;
+		}
+	},
+	
+	FACEBOOK_LIKES(FacebookProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.facebookLikes;
+		}
+	},
+	
+	FACEBOOK_COMMENTS(FacebookProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.facebookComments;
+		}
+	},
+	
+	FACEBOOK_CLICKS(FacebookProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.facebookClicks;
+		}
+	},
+	
+	TWITTER(TwitterProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.twitter;
+		}
+	},
+	
+	GOOGLE_PLUS_ONE(GooglePlusOneProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.googlePlusOne;
+		}
+	},
+	
+	GOOGLE_SHARES(GoogleSharesProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.googleShares;
+		}
+	},
+	
+	LINKEDIN(LinkedinProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.linkedinShares;
+		}
+	},
+	
+	PINTEREST(PinterestProvider.NAME) {
+		@Override
+		public long valueOf(SocialCounts counts) {
+			return counts.pinterestPins;
+		}
+	};
+	
+	/**
+	 * Cached copy of the values, to avoid a copy on every lookup
+	 */
+	static final CountType[] VALUES = values();
+	
+	/**
+	 * The name of the provider this count is fetched from
+	 */
+	public final String provider;
+	
+	private CountType(String provider) {
+		this.provider = provider;
+	}
+	
+	/**
+	 * Read this count from the given instance.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to read
+	 * 
+	 * @return the count, <code>-1</code> if not fetched
+	 */
+	public abstract long valueOf(SocialCounts counts);
+
+}
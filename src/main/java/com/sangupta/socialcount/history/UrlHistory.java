@@ -0,0 +1,348 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.history;
+
+import java.util.Arrays;
+
+/**
+ * The history of the counts of a single URL, kept as a log of changes in a
+ * byte array. Each row holds the time of the change and the counts that
+ * changed, both as varint encoded deltas from the previous row:
+ * 
+ * <pre>
+ * varint   seconds since the previous row (since the epoch for the first)
+ * varint   bitmask of the {@link CountType}s that changed
+ * varint   zig-zag encoded change of each count in the bitmask, in order
+ * </pre>
+ * 
+ * Counts only grow slowly between fetches, so a row takes a few bytes. Rows
+ * are only written when a count changes, and the value of a count at any
+ * time is that of the last change at or before it.
+ * 
+ * All methods are synchronized, as rows are appended by the fetching threads
+ * while being read by queries.
+ * 
+ * @author sangupta
+ *
+ */
+class UrlHistory {
+	
+	private static final int INITIAL_CAPACITY = 32;
+	
+	/**
+	 * Maximum number of bytes a single row may take
+	 */
+	private static final int MAX_ROW_SIZE = 10 + 2 + 10 * CountType.VALUES.length;
+	
+	private byte[] data = new byte[INITIAL_CAPACITY];
+	
+	/**
+	 * Number of bytes of {@link #data} in use
+	 */
+	private int size;
+	
+	/**
+	 * Time in seconds of the last row
+	 */
+	private long lastTime;
+	
+	/**
+	 * The latest value of every count, valid if its bit is set in
+	 * {@link #seen}
+	 */
+	private final long[] lastValues = new long[CountType.VALUES.length];
+	
+	/**
+	 * Bitmask of the counts that have been recorded
+	 */
+	private int seen;
+	
+	/**
+	 * Record the given counts, keeping only those that changed.
+	 * 
+	 * @param time
+	 *            the time in seconds the counts were fetched at
+	 * 
+	 * @param values
+	 *            the value of each {@link CountType} by ordinal,
+	 *            <code>-1</code> for counts not fetched
+	 * 
+	 * @param retention
+	 *            the number of seconds of history to keep, at least
+	 * 
+	 * @return <code>true</code> if a row was written, <code>false</code> if
+	 *         nothing changed or the counts are older than the last row
+	 */
+	synchronized boolean append(long time, long[] values, long retention) {
+		if(this.size > 0 && time < this.lastTime) {
+			return false;
+		}
+		
+		int mask = 0;
+		for(int index = 0; index < values.length; index++) {
+			if(values[index] < 0) {
+				continue;
+			}
+			
+			if((this.seen & (1 << index)) == 0 || values[index] != this.lastValues[index]) {
+				mask |= 1 << index;
+			}
+		}
+		
+		if(mask == 0) {
+			return false;
+		}
+		
+		if(this.size + MAX_ROW_SIZE > this.data.length) {
+			this.makeRoom(time - retention);
+		}
+		
+		this.size = writeVarLong(this.data, this.size, time - this.lastTime);
+		this.size = writeVarLong(this.data, this.size, mask);
+		for(int index = 0; index < values.length; index++) {
+			if((mask & (1 << index)) == 0) {
+				continue;
+			}
+			
+			long previous = (this.seen & (1 << index)) != 0 ? this.lastValues[index] : 0;
+			this.size = writeVarLong(this.data, this.size, zigZag(values[index] - previous));
+			this.lastValues[index] = values[index];
+		}
+		
+		this.lastTime = time;
+		this.seen |= mask;
+		return true;
+	}
+	
+	/**
+	 * Return the latest value of the given count.
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @return the value, <code>-1</code> if never recorded
+	 */
+	synchronized long latest(CountType type) {
+		if((this.seen & (1 << type.ordinal())) == 0) {
+			return -1;
+		}
+		
+		return this.lastValues[type.ordinal()];
+	}
+	
+	/**
+	 * Find the value the given count had at the given time, along with the
+	 * time it was first recorded.
+	 * 
+	 * @param type
+	 *            the {@link CountType}
+	 * 
+	 * @param time
+	 *            the time in seconds
+	 * 
+	 * @param result
+	 *            receives the value at the time, or <code>-1</code> if the
+	 *            count was not recorded by then, followed by the first value
+	 *            and the time in seconds it was recorded at
+	 * 
+	 * @return <code>true</code> if the count was ever recorded
+	 */
+	synchronized boolean valueAt(CountType type, long time, long[] result) {
+		final int bit = 1 << type.ordinal();
+		if((this.seen & bit) == 0) {
+			return false;
+		}
+		
+		Cursor cursor = new Cursor();
+		result[0] = -1;
+		result[2] = -1;
+		while(cursor.next()) {
+			if((cursor.mask & bit) == 0) {
+				continue;
+			}
+			
+			if(result[2] < 0) {
+				result[1] = cursor.values[type.ordinal()];
+				result[2] = cursor.time;
+			}
+			
+			if(cursor.time > time) {
+				break;
+			}
+			
+			result[0] = cursor.values[type.ordinal()];
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Return the number of bytes taken by the rows.
+	 * 
+	 * @return the number of bytes
+	 */
+	synchronized int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Make room for at least one more row, first by dropping the rows older
+	 * than the given time, and then by growing the array.
+	 * 
+	 * @param cutoff
+	 *            the time in seconds before which rows may be dropped
+	 */
+	private void makeRoom(long cutoff) {
+		this.trim(cutoff);
+		
+		int needed = this.size + MAX_ROW_SIZE;
+		if(needed > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(needed, this.data.length + (this.data.length >> 1)));
+		}
+	}
+	
+	/**
+	 * Drop the rows older than the given time. They are folded into the
+	 * first row that is kept, which then holds the absolute value of every
+	 * count, so that all later rows stay as they are. The last row is always
+	 * kept.
+	 * 
+	 * @param cutoff
+	 *            the time in seconds before which rows are dropped
+	 */
+	private void trim(long cutoff) {
+		Cursor cursor = new Cursor();
+		int seenSoFar = 0;
+		int dropped = 0;
+		while(cursor.next()) {
+			seenSoFar |= cursor.mask;
+			if(cursor.time >= cutoff || cursor.position == this.size) {
+				break;
+			}
+			
+			dropped++;
+		}
+		
+		if(dropped == 0) {
+			return;
+		}
+		
+		// the cursor is past the first row kept, which becomes absolute
+		byte[] head = new byte[MAX_ROW_SIZE];
+		int length = writeVarLong(head, 0, cursor.time);
+		length = writeVarLong(head, length, seenSoFar);
+		for(int index = 0; index < cursor.values.length; index++) {
+			if((seenSoFar & (1 << index)) != 0) {
+				length = writeVarLong(head, length, zigZag(cursor.values[index]));
+			}
+		}
+		
+		int tail = this.size - cursor.position;
+		byte[] data = new byte[Math.max(INITIAL_CAPACITY, length + tail + MAX_ROW_SIZE)];
+		System.arraycopy(head, 0, data, 0, length);
+		System.arraycopy(this.data, cursor.position, data, length, tail);
+		
+		this.data = data;
+		this.size = length + tail;
+	}
+	
+	/**
+	 * Write a varint of seven bits per byte, lowest bits first.
+	 * 
+	 * @return the position after the varint
+	 */
+	static int writeVarLong(byte[] data, int position, long value) {
+		while((value & ~0x7FL) != 0) {
+			data[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		
+		data[position++] = (byte) value;
+		return position;
+	}
+	
+	/**
+	 * Map a signed value to an unsigned one so that small negative values
+	 * also take few bytes as a varint.
+	 * 
+	 */
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Walks the rows from the start, keeping the absolute time and values.
+	 * Must be used while holding the lock.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class Cursor {
+		
+		int position;
+		
+		long time;
+		
+		int mask;
+		
+		final long[] values = new long[CountType.VALUES.length];
+		
+		/**
+		 * Read the next row.
+		 * 
+		 * @return <code>false</code> if there are no more rows
+		 */
+		boolean next() {
+			if(this.position >= UrlHistory.this.size) {
+				return false;
+			}
+			
+			this.time += this.readVarLong();
+			this.mask = (int) this.readVarLong();
+			for(int index = 0; index < this.values.length; index++) {
+				if((this.mask & (1 << index)) != 0) {
+					this.values[index] += unZigZag(this.readVarLong());
+				}
+			}
+			
+			return true;
+		}
+		
+		private long readVarLong() {
+			final byte[] data = UrlHistory.this.data;
+			long value = 0;
+			for(int shift = 0; ; shift += 7) {
+				byte current = data[this.position++];
+				value |= (long) (current & 0x7F) << shift;
+				if(current >= 0) {
+					return value;
+				}
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import com.sangupta.socialcount.provider.ProviderRequest;
+import com.sangupta.socialcount.provider.ProviderResponse;
+
+/**
+ * Executes the requests built by providers. A client owns a single transport
+ * that is shared by all provider calls, which allows connections to the
+ * provider hosts to be pooled and reused. Implementations must be
+ * thread-safe.
+ * 
+ * @author sangupta
+ *
+ */
+public interface HttpTransport extends Closeable {
+	
+	/**
+	 * Execute the given request. The returned response must be closed by the
+	 * caller.
+	 * 
+	 * @param request
+	 *            the {@link ProviderRequest} to execute
+	 * 
+	 * @param readTimeout
+	 *            the maximum time in millis to wait for data once connected,
+	 *            or zero to use the default of the transport
+	 * 
+	 * @return the {@link ProviderResponse}, never <code>null</code>
+	 * 
+	 * @throws IOException
+	 *             if the provider cannot be reached or the call times out
+	 */
+	public ProviderResponse execute(ProviderRequest request, int readTimeout) throws IOException;
+	
+	/**
+	 * Execute the given request, aborting it as soon as the given future
+	 * completes, so that a call whose answer is no longer needed releases its
+	 * connection right away instead of waiting out its timeout. The default
+	 * implementation cannot abort a request and lets it run to completion.
+	 * 
+	 * @param request
+	 *            the {@link ProviderRequest} to execute
+	 * 
+	 * @param readTimeout
+	 *            the maximum time in millis to wait for data once connected,
+	 *            or zero to use the default of the transport
+	 * 
+	 * @param abort
+	 *            the future whose completion aborts the request, if still
+	 *            in progress, or <code>null</code> if it is never aborted
+	 * 
+	 * @return the {@link ProviderResponse}, never <code>null</code>
+	 * 
+	 * @throws IOException
+	 *             if the provider cannot be reached, the call times out or is
+	 *             aborted
+	 */
+	public default ProviderResponse execute(ProviderRequest request, int readTimeout, CompletableFuture<?> abort) throws IOException {
+		return this.execute(request, readTimeout);
+	}
+
+}
@@ -0,0 +1,325 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.sangupta.jerry.http.WebRequestMethod;
+import com.sangupta.socialcount.provider.ProviderRequest;
+import com.sangupta.socialcount.provider.ProviderResponse;
+
+/**
+ * Default {@link HttpTransport} backed by a pooling Apache HTTP client.
+ * Connections to every provider host are kept alive and reused across calls,
+ * and the number of connections to a single host is capped. Connect and read
+ * timeouts are configured separately.
+ * 
+ * @author sangupta
+ *
+ */
+public class PooledHttpTransport implements HttpTransport {
+	
+	/**
+	 * Default maximum number of connections across all hosts
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 200;
+	
+	/**
+	 * Default maximum number of connections to a single host
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+	
+	/**
+	 * Default time in millis to wait for a connection to be established
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+	
+	/**
+	 * Default time in millis to wait for data once connected
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 10000;
+	
+	/**
+	 * Default time in millis after which idle connections are closed
+	 */
+	public static final int DEFAULT_IDLE_TIMEOUT = 60000;
+	
+	/**
+	 * Number of leftover bytes read from a response being closed, so that its
+	 * connection can be reused. Responses with more data left are dropped
+	 * along with their connection.
+	 */
+	private static final int DRAIN_LIMIT = 8192;
+	
+	/**
+	 * The connection pool
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+	
+	/**
+	 * The client that executes all requests
+	 */
+	private final CloseableHttpClient httpClient;
+	
+	/**
+	 * Time in millis to wait for a connection to be established
+	 */
+	private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	
+	/**
+	 * Time in millis to wait for data when none is specified on the call
+	 */
+	private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+	
+	/**
+	 * Create a transport with the default pool limits.
+	 * 
+	 */
+	public PooledHttpTransport() {
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+	}
+	
+	/**
+	 * Create a transport with the given pool limits.
+	 * 
+	 * @param maxConnections
+	 *            the maximum number of connections across all hosts
+	 * 
+	 * @param maxConnectionsPerHost
+	 *            the maximum number of connections to a single host
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any of the limits is less than one
+	 */
+	public PooledHttpTransport(int maxConnections, int maxConnectionsPerHost) {
+		if(maxConnections < 1 || maxConnectionsPerHost < 1) {
+			throw new IllegalArgumentException("Connection limits must be at least one");
+		}
+		
+		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager.setMaxTotal(maxConnections);
+		this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+		
+		this.httpClient = HttpClients.custom()
+									 .setConnectionManager(this.connectionManager)
+									 .setUserAgent("socialcount")
+									 .evictExpiredConnections()
+									 .evictIdleConnections(DEFAULT_IDLE_TIMEOUT, TimeUnit.MILLISECONDS)
+									 .build();
+	}
+	
+	@Override
+	public ProviderResponse execute(ProviderRequest request, int readTimeout) throws IOException {
+		return this.execute(request, readTimeout, null);
+	}
+	
+	/**
+	 * Execute the given request, aborting it and dropping its connection if
+	 * the given future completes before the response has been read.
+	 * 
+	 */
+	@Override
+	public ProviderResponse execute(ProviderRequest request, int readTimeout, CompletableFuture<?> abort) throws IOException {
+		final HttpRequestBase method;
+		if(request.method == WebRequestMethod.POST) {
+			HttpPost post = new HttpPost(request.url);
+			post.setEntity(new StringEntity(request.body, request.contentType));
+			method = post;
+		} else {
+			method = new HttpGet(request.url);
+		}
+		
+		int connectTimeout = this.connectTimeout;
+		method.setConfig(RequestConfig.custom()
+									  .setConnectTimeout(connectTimeout)
+									  .setConnectionRequestTimeout(connectTimeout)
+									  .setSocketTimeout(readTimeout > 0 ? readTimeout : this.readTimeout)
+									  .build());
+		
+		if(abort != null) {
+			// a no-op once the response has been closed
+			abort.whenComplete((result, error) -> method.abort());
+		}
+		
+		final CloseableHttpResponse response = this.httpClient.execute(method);
+		HttpEntity entity = response.getEntity();
+		if(entity == null) {
+			response.close();
+			return new ProviderResponse(response.getStatusLine().getStatusCode(), EmptyInputStream.INSTANCE, null);
+		}
+		
+		Charset charset = null;
+		ContentType contentType = ContentType.get(entity);
+		if(contentType != null) {
+			charset = contentType.getCharset();
+		}
+		
+		InputStream content = new FilterInputStream(entity.getContent()) {
+			
+			@Override
+			public void close() throws IOException {
+				try {
+					drain(this.in);
+				} finally {
+					response.close();
+				}
+			}
+			
+		};
+		
+		return new ProviderResponse(response.getStatusLine().getStatusCode(), content, charset);
+	}
+	
+	/**
+	 * Read a few leftover bytes from the stream so that the connection is
+	 * returned to the pool if the body was almost consumed.
+	 * 
+	 * @param stream
+	 *            the stream to drain
+	 */
+	private static void drain(InputStream stream) {
+		try {
+			byte[] buffer = new byte[1024];
+			int total = 0;
+			while(total < DRAIN_LIMIT) {
+				int read = stream.read(buffer);
+				if(read == -1) {
+					return;
+				}
+				
+				total += read;
+			}
+		} catch(IOException e) {
+			// connection is anyways going away
+		}
+	}
+	
+	/**
+	 * Change the maximum number of connections to the given host.
+	 * 
+	 * @param scheme
+	 *            the scheme, <code>http</code> or <code>https</code>
+	 * 
+	 * @param host
+	 *            the host name
+	 * 
+	 * @param maxConnections
+	 *            the maximum number of connections
+	 */
+	public void setMaxConnectionsPerHost(String scheme, String host, int maxConnections) {
+		if(maxConnections < 1) {
+			throw new IllegalArgumentException("Connection limit must be at least one");
+		}
+		
+		boolean secure = "https".equalsIgnoreCase(scheme);
+		HttpHost target = new HttpHost(host, secure ? 443 : 80, scheme);
+		this.connectionManager.setMaxPerRoute(new HttpRoute(target, null, secure), maxConnections);
+	}
+	
+	/**
+	 * Change the maximum number of connections across all hosts, and to every
+	 * host that has no limit of its own.
+	 * 
+	 * @param maxConnections
+	 *            the maximum number of connections across all hosts
+	 * 
+	 * @param maxConnectionsPerHost
+	 *            the maximum number of connections to a single host
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any of the limits is less than one
+	 */
+	public void setMaxConnections(int maxConnections, int maxConnectionsPerHost) {
+		if(maxConnections < 1 || maxConnectionsPerHost < 1) {
+			throw new IllegalArgumentException("Connection limits must be at least one");
+		}
+		
+		this.connectionManager.setMaxTotal(maxConnections);
+		this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.httpClient.close();
+	}
+	
+	// Usual accessors follow
+	
+	public int getMaxConnections() {
+		return this.connectionManager.getMaxTotal();
+	}
+	
+	public int getMaxConnectionsPerHost() {
+		return this.connectionManager.getDefaultMaxPerRoute();
+	}
+
+	public int getConnectTimeout() {
+		return this.connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return this.readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+	
+	/**
+	 * Stream for responses without a body.
+	 * 
+	 */
+	private static class EmptyInputStream extends InputStream {
+		
+		static final EmptyInputStream INSTANCE = new EmptyInputStream();
+
+		@Override
+		public int read() {
+			return -1;
+		}
+		
+	}
+
+}
@@ -0,0 +1,203 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies. Values are counted in buckets whose
+ * width grows with the value, keeping the relative error of any percentile
+ * under about 3% over the whole range - the same log-linear scheme as used by
+ * HdrHistogram. Recording a value is a couple of atomic increments, and never
+ * blocks or allocates.
+ * 
+ * @author sangupta
+ *
+ */
+public class LatencyHistogram {
+	
+	/**
+	 * Number of bits of precision within each power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+	
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * Values at or above this are counted in the last bucket
+	 */
+	private static final long MAX_TRACKABLE = 1L << 40;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_TRACKABLE - 1) + 1);
+	
+	private final LongAdder totalCount = new LongAdder();
+	
+	private final LongAdder totalValue = new LongAdder();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Record a value.
+	 * 
+	 * @param value
+	 *            the value, negative values are counted as zero
+	 */
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		} else if(value >= MAX_TRACKABLE) {
+			value = MAX_TRACKABLE - 1;
+		}
+		
+		this.counts.incrementAndGet(indexOf(value));
+		this.totalCount.increment();
+		this.totalValue.add(value);
+		
+		long current;
+		while(value > (current = this.max.get())) {
+			if(this.max.compareAndSet(current, value)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Return the value below which the given percentage of the recorded values
+	 * fall.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * 
+	 * @return the highest value in the bucket holding the percentile, or zero
+	 *         if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		final int length = this.counts.length();
+		long[] snapshot = new long[length];
+		for(int index = 0; index < length; index++) {
+			snapshot[index] = this.counts.get(index);
+			total += snapshot[index];
+		}
+		
+		if(total == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for(int index = 0; index < length; index++) {
+			seen += snapshot[index];
+			if(seen >= rank) {
+				return Math.min(highestValueOf(index), this.max.get());
+			}
+		}
+		
+		return this.max.get();
+	}
+	
+	/**
+	 * Return the number of recorded values.
+	 * 
+	 * @return the count
+	 */
+	public long getCount() {
+		return this.totalCount.sum();
+	}
+	
+	/**
+	 * Return the mean of the recorded values.
+	 * 
+	 * @return the mean, or zero if nothing has been recorded
+	 */
+	public double getMean() {
+		long count = this.totalCount.sum();
+		if(count == 0) {
+			return 0;
+		}
+		
+		return (double) this.totalValue.sum() / count;
+	}
+	
+	/**
+	 * Return the largest recorded value.
+	 * 
+	 * @return the maximum, or zero if nothing has been recorded
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+	
+	/**
+	 * Forget all recorded values. Values recorded concurrently may or may not
+	 * be kept.
+	 */
+	public void reset() {
+		for(int index = 0; index < this.counts.length(); index++) {
+			this.counts.set(index, 0);
+		}
+		
+		this.totalCount.reset();
+		this.totalValue.reset();
+		this.max.set(0);
+	}
+	
+	/**
+	 * Return the bucket for a value. The first buckets hold one value each,
+	 * after which every power of two is split into {@link #SUB_BUCKETS}
+	 * buckets of equal width.
+	 * 
+	 * @param value
+	 *            the value, zero or more
+	 * 
+	 * @return the index of the bucket
+	 */
+	static int indexOf(long value) {
+		if(value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+	
+	/**
+	 * Return the highest value counted in the given bucket.
+	 * 
+	 * @param index
+	 *            the index of the bucket
+	 * 
+	 * @return the highest value
+	 */
+	static long highestValueOf(int index) {
+		if(index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sangupta.socialcount.FetchStatus;
+
+/**
+ * Counters, gauges and the latency histogram for calls made to a single
+ * provider. All recording is lock-free. Latencies are kept in microseconds
+ * and reported in millis.
+ * 
+ * @author sangupta
+ *
+ */
+public class ProviderMetrics implements ProviderMetricsMXBean {
+	
+	private final String name;
+	
+	private final LatencyHistogram latency = new LatencyHistogram();
+	
+	private final LongAdder requests = new LongAdder();
+	
+	private final LongAdder successes = new LongAdder();
+	
+	private final LongAdder failures = new LongAdder();
+	
+	private final LongAdder timeouts = new LongAdder();
+	
+	private final LongAdder skipped = new LongAdder();
+	
+	private final LongAdder inFlight = new LongAdder();
+	
+	private final LongAdder bytesReceived = new LongAdder();
+	
+	public ProviderMetrics(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Record that a call to the provider has started.
+	 */
+	public void callStarted() {
+		this.requests.increment();
+		this.inFlight.increment();
+	}
+	
+	/**
+	 * Record that a call to the provider has finished.
+	 * 
+	 * @param status
+	 *            the {@link FetchStatus} of the call
+	 * 
+	 * @param latency
+	 *            the time in nanos the call took
+	 * 
+	 * @param bytes
+	 *            the number of bytes read from the response
+	 */
+	public void callFinished(FetchStatus status, long latency, long bytes) {
+		this.inFlight.decrement();
+		this.latency.record(TimeUnit.NANOSECONDS.toMicros(latency));
+		this.bytesReceived.add(bytes);
+		
+		if(status == FetchStatus.OK) {
+			this.successes.increment();
+		} else if(status == FetchStatus.TIMEOUT) {
+			this.timeouts.increment();
+		} else {
+			this.failures.increment();
+		}
+	}
+	
+	/**
+	 * Record that the provider was not called because of its circuit breaker
+	 * or rate limit.
+	 */
+	public void callSkipped() {
+		this.skipped.increment();
+	}
+	
+	/**
+	 * Return the latency at the given percentile.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * 
+	 * @return the latency in millis
+	 */
+	public double getLatencyPercentile(double percentile) {
+		return toMillis(this.latency.getValueAtPercentile(percentile));
+	}
+	
+	/**
+	 * Forget everything recorded so far, except calls in flight.
+	 */
+	public void reset() {
+		this.latency.reset();
+		this.requests.reset();
+		this.successes.reset();
+		this.failures.reset();
+		this.timeouts.reset();
+		this.skipped.reset();
+		this.bytesReceived.reset();
+	}
+	
+	private static double toMillis(long micros) {
+		return micros / 1000d;
+	}
+	
+	// Usual accessors follow
+	
+	public String getName() {
+		return this.name;
+	}
+	
+	public LatencyHistogram getLatencyHistogram() {
+		return this.latency;
+	}
+	
+	@Override
+	public long getRequestCount() {
+		return this.requests.sum();
+	}
+	
+	@Override
+	public long getSuccessCount() {
+		return this.successes.sum();
+	}
+	
+	@Override
+	public long getFailureCount() {
+		return this.failures.sum();
+	}
+	
+	@Override
+	public long getTimeoutCount() {
+		return this.timeouts.sum();
+	}
+	
+	@Override
+	public long getSkippedCount() {
+		return this.skipped.sum();
+	}
+	
+	@Override
+	public long getInFlight() {
+		return this.inFlight.sum();
+	}
+	
+	@Override
+	public long getBytesReceived() {
+		return this.bytesReceived.sum();
+	}
+	
+	@Override
+	public double getLatencyMean() {
+		return this.latency.getMean() / 1000d;
+	}
+	
+	@Override
+	public double getLatencyP50() {
+		return this.getLatencyPercentile(50);
+	}
+	
+	@Override
+	public double getLatencyP99() {
+		return this.getLatencyPercentile(99);
+	}
+	
+	@Override
+	public double getLatencyP999() {
+		return this.getLatencyPercentile(99.9);
+	}
+	
+	@Override
+	public double getLatencyMax() {
+		return toMillis(this.latency.getMax());
+	}
+
+}
@@ -0,0 +1,180 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of all providers called by a client. Metrics can be pulled at
+ * any time, and may also be published as JMX MBeans.
+ * 
+ * @author sangupta
+ *
+ */
+public class SocialCountMetrics {
+	
+	/**
+	 * The JMX domain under which MBeans are registered
+	 */
+	public static final String JMX_DOMAIN = "com.sangupta.socialcount";
+	
+	private final ConcurrentMap<String, ProviderMetrics> providers = new ConcurrentHashMap<>();
+	
+	/**
+	 * The names of the registered MBeans
+	 */
+	private final List<ObjectName> registered = new ArrayList<>();
+	
+	/**
+	 * The client name used for MBeans, <code>null</code> if not published
+	 */
+	private String jmxName;
+	
+	/**
+	 * Return the metrics for the given provider, creating them if needed.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @return the {@link ProviderMetrics}
+	 */
+	public ProviderMetrics forProvider(String provider) {
+		ProviderMetrics metrics = this.providers.get(provider);
+		if(metrics != null) {
+			return metrics;
+		}
+		
+		metrics = new ProviderMetrics(provider);
+		ProviderMetrics existing = this.providers.putIfAbsent(provider, metrics);
+		if(existing != null) {
+			return existing;
+		}
+		
+		// never fail the call being recorded because of JMX
+		try {
+			this.publish(metrics);
+		} catch(JMException e) {
+			// the metrics are still recorded, just not published
+		}
+		
+		return metrics;
+	}
+	
+	/**
+	 * Return the metrics of all providers called so far.
+	 * 
+	 * @return the {@link ProviderMetrics} of each provider
+	 */
+	public Collection<ProviderMetrics> getProviders() {
+		return Collections.unmodifiableCollection(this.providers.values());
+	}
+	
+	/**
+	 * Forget everything recorded so far for all providers.
+	 */
+	public void reset() {
+		for(ProviderMetrics metrics : this.providers.values()) {
+			metrics.reset();
+		}
+	}
+	
+	/**
+	 * Publish the metrics of every provider as an MBean named
+	 * <code>com.sangupta.socialcount:type=ProviderMetrics,client=&lt;name&gt;,provider=&lt;provider&gt;</code>.
+	 * Providers called later are published as they appear.
+	 * 
+	 * @param name
+	 *            the name of the client, unique within the JVM
+	 * 
+	 * @throws IllegalStateException
+	 *             if the MBeans could not be registered
+	 */
+	public synchronized void registerMBeans(String name) {
+		if(this.jmxName != null) {
+			this.unregisterMBeans();
+		}
+		
+		this.jmxName = ObjectName.quote(name);
+		for(ProviderMetrics metrics : this.providers.values()) {
+			try {
+				this.publish(metrics);
+			} catch(JMException e) {
+				throw new IllegalStateException("Unable to register MBean for provider " + metrics.getName(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Remove all MBeans registered by {@link #registerMBeans(String)}.
+	 */
+	public synchronized void unregisterMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for(ObjectName objectName : this.registered) {
+			try {
+				server.unregisterMBean(objectName);
+			} catch(JMException e) {
+				// already gone
+			}
+		}
+		
+		this.registered.clear();
+		this.jmxName = null;
+	}
+	
+	/**
+	 * Register the MBean of the given provider metrics, unless MBeans are not
+	 * being published or it has already been registered. The metrics of a
+	 * provider seen for the first time may be published both by
+	 * {@link #registerMBeans(String)} and by {@link #forProvider(String)}
+	 * when the two race.
+	 * 
+	 * @param metrics
+	 *            the {@link ProviderMetrics} to publish
+	 * 
+	 * @throws JMException
+	 *             if the MBean could not be registered
+	 */
+	private synchronized void publish(ProviderMetrics metrics) throws JMException {
+		if(this.jmxName == null) {
+			return;
+		}
+		
+		ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=ProviderMetrics,client=" + this.jmxName + ",provider=" + ObjectName.quote(metrics.getName()));
+		if(this.registered.contains(objectName)) {
+			return;
+		}
+		
+		ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+		this.registered.add(objectName);
+	}
+
+}
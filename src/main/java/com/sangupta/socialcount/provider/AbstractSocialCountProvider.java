@@ -0,0 +1,178 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import com.sangupta.socialcount.SocialCountConfig;
+
+/**
+ * Base class for {@link SocialCountProvider} implementations that keeps the
+ * scheduling limits and the base URL of the provider, allowing them to be
+ * tuned before the provider is registered with a client.
+ * 
+ * @author sangupta
+ *
+ */
+public abstract class AbstractSocialCountProvider implements SocialCountProvider {
+	
+	/**
+	 * Default timeout for a single call
+	 */
+	public static final int DEFAULT_TIMEOUT = 10000;
+	
+	/**
+	 * Default maximum number of concurrent calls
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 4;
+	
+	/**
+	 * The name of the provider
+	 */
+	private final String name;
+	
+	/**
+	 * The timeout in millis for a single call
+	 */
+	private volatile int timeout = DEFAULT_TIMEOUT;
+	
+	/**
+	 * Maximum number of calls in flight
+	 */
+	private volatile int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+	
+	/**
+	 * The scheme, host and port of the provider API by default
+	 */
+	private final String defaultBaseUrl;
+	
+	/**
+	 * The scheme, host and port requests are sent to
+	 */
+	private volatile String baseUrl;
+	
+	protected AbstractSocialCountProvider(String name) {
+		this(name, null);
+	}
+	
+	/**
+	 * Create a provider whose requests are sent to the given base URL unless
+	 * overridden via {@link #setBaseUrl(String)}.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @param defaultBaseUrl
+	 *            the scheme, host and port of the provider API, like
+	 *            <code>https://cdn.api.twitter.com</code>
+	 */
+	protected AbstractSocialCountProvider(String name, String defaultBaseUrl) {
+		this.name = name;
+		this.defaultBaseUrl = defaultBaseUrl;
+		this.baseUrl = defaultBaseUrl;
+	}
+	
+	/**
+	 * Enabled for all configurations by default.
+	 * 
+	 */
+	@Override
+	public boolean isEnabled(SocialCountConfig config) {
+		return true;
+	}
+	
+	/**
+	 * No batching by default.
+	 * 
+	 */
+	@Override
+	public int getMaxBatchSize() {
+		return 1;
+	}
+	
+	@Override
+	public String toString() {
+		return this.name;
+	}
+	
+	// Usual accessors follow
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int getTimeout() {
+		return this.timeout;
+	}
+
+	public void setTimeout(int timeout) {
+		if(timeout < 1) {
+			throw new IllegalArgumentException("Timeout must be positive");
+		}
+		
+		this.timeout = timeout;
+	}
+
+	@Override
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		if(maxConcurrency < 1) {
+			throw new IllegalArgumentException("Max concurrency must be at least one");
+		}
+		
+		this.maxConcurrency = maxConcurrency;
+	}
+	
+	public String getBaseUrl() {
+		return this.baseUrl;
+	}
+	
+	/**
+	 * Send the requests of this provider to another server, such as a local
+	 * simulator.
+	 * 
+	 * @param baseUrl
+	 *            the scheme, host and port to use, like
+	 *            <code>http://localhost:8080</code>, or <code>null</code> to
+	 *            go back to the provider API
+	 */
+	public void setBaseUrl(String baseUrl) {
+		if(baseUrl == null) {
+			this.baseUrl = this.defaultBaseUrl;
+			return;
+		}
+		
+		while(baseUrl.endsWith("/")) {
+			baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+		}
+		
+		this.baseUrl = baseUrl;
+	}
+	
+	public String getDefaultBaseUrl() {
+		return this.defaultBaseUrl;
+	}
+
+}
@@ -0,0 +1,282 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sangupta.jerry.util.UriUtils;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Fetches the likes, shares, comments and clicks for a URL from Facebook.
+ * 
+ * Refer <a
+ * href="https://developers.facebook.com/docs/reference/fql/link_stat/">
+ * https://developers.facebook.com/docs/reference/fql/link_stat/</a> for
+ * more details.
+ * 
+ * @author sangupta
+ *
+ */
+public class FacebookProvider extends AbstractSocialCountProvider {
+	
+	public static final String NAME = "facebook";
+	
+	public static final String BASE_URL = "http://graph.facebook.com";
+	
+	/**
+	 * Maximum number of URLs looked up in a single FQL query
+	 */
+	public static final int MAX_BATCH_SIZE = 50;
+	
+	private static final String SELECT = "SELECT url, like_count, click_count, comment_count, share_count FROM link_stat WHERE url";
+	
+	private static final int SHARES = 0;
+	
+	private static final int COMMENTS = 1;
+	
+	private static final int LIKES = 2;
+	
+	private static final int CLICKS = 3;
+	
+	public FacebookProvider() {
+		super(NAME, BASE_URL);
+	}
+	
+	@Override
+	public boolean isEnabled(SocialCountConfig config) {
+		return config.facebook;
+	}
+	
+	@Override
+	public int getMaxBatchSize() {
+		return MAX_BATCH_SIZE;
+	}
+
+	@Override
+	public ProviderRequest buildRequest(SocialCounts counts) {
+		StringBuilder query = new StringBuilder(SELECT.length() + counts.url.length() + 8).append(SELECT).append('=');
+		quote(query, counts.url);
+		return this.fql(query);
+	}
+	
+	/**
+	 * Looks up all the URLs with a single <code>url IN (...)</code> query.
+	 * 
+	 */
+	@Override
+	public ProviderRequest buildBatchRequest(List<SocialCounts> batch) {
+		StringBuilder query = new StringBuilder(SELECT.length() + batch.size() * 64).append(SELECT).append(" IN (");
+		for(int index = 0; index < batch.size(); index++) {
+			if(index > 0) {
+				query.append(", ");
+			}
+			
+			quote(query, batch.get(index).url);
+		}
+		
+		return this.fql(query.append(')'));
+	}
+	
+	private ProviderRequest fql(CharSequence query) {
+		return ProviderRequest.get(this.getBaseUrl() + "/fql?q=" + UriUtils.encodeURIComponent(query.toString()));
+	}
+	
+	/**
+	 * Append the given URL as a quoted FQL string.
+	 * 
+	 */
+	private static void quote(StringBuilder query, String url) {
+		query.append('\'');
+		for(int index = 0; index < url.length(); index++) {
+			char ch = url.charAt(index);
+			if(ch == '\'' || ch == '\\') {
+				query.append('\\');
+			}
+			
+			query.append(ch);
+		}
+		
+		query.append('\'');
+	}
+
+	@Override
+	public boolean parseResponse(SocialCounts counts, ProviderResponse response) throws IOException {
+		JsonReader reader = openData(response);
+		if(reader == null || !reader.hasNext() || reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return false;
+		}
+		
+		// read the first row only until all four counts are known
+		long[] row = new long[4];
+		int found = 0;
+		reader.beginObject();
+		while(found < 4 && reader.hasNext()) {
+			if(readCount(reader, reader.nextName(), row)) {
+				found++;
+			} else {
+				reader.skipValue();
+			}
+		}
+		
+		write(row, counts);
+		return true;
+	}
+	
+	/**
+	 * Reads every row of the <code>data</code> array, and matches it to the
+	 * instances by its <code>url</code>, as rows are not guaranteed to come
+	 * back in the order of the query. Rows whose <code>url</code> is missing
+	 * or matches no instance, as when Facebook hands back the URL normalized,
+	 * go to the instance at the same position if that is still unmatched.
+	 * 
+	 */
+	@Override
+	public boolean[] parseBatchResponse(List<SocialCounts> batch, ProviderResponse response) throws IOException {
+		boolean[] parsed = new boolean[batch.size()];
+		JsonReader reader = openData(response);
+		if(reader == null) {
+			return parsed;
+		}
+		
+		// the rows not matched by url, by position
+		long[][] unmatched = new long[batch.size()][];
+		int position = 0;
+		while(reader.hasNext()) {
+			if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				continue;
+			}
+			
+			String url = null;
+			long[] row = new long[4];
+			reader.beginObject();
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				if("url".equals(name) && reader.peek() == JsonToken.STRING) {
+					url = reader.nextString();
+				} else if(!readCount(reader, name, row)) {
+					reader.skipValue();
+				}
+			}
+			
+			reader.endObject();
+			
+			boolean matched = false;
+			if(url != null) {
+				for(int index = 0; index < parsed.length; index++) {
+					SocialCounts counts = batch.get(index);
+					if(!parsed[index] && url.equals(counts.url)) {
+						write(row, counts);
+						parsed[index] = true;
+						matched = true;
+					}
+				}
+			}
+			
+			if(!matched && position < unmatched.length) {
+				unmatched[position] = row;
+			}
+			
+			position++;
+		}
+		
+		for(int index = 0; index < parsed.length; index++) {
+			if(!parsed[index] && unmatched[index] != null) {
+				write(unmatched[index], batch.get(index));
+				parsed[index] = true;
+			}
+		}
+		
+		return parsed;
+	}
+	
+	/**
+	 * Open the response and step into its <code>data</code> array.
+	 * 
+	 * @return the {@link JsonReader} inside the array, or <code>null</code>
+	 *         if the body has none
+	 */
+	private static JsonReader openData(ProviderResponse response) throws IOException {
+		JsonReader reader = JsonStreamUtils.open(response);
+		if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return null;
+		}
+		
+		reader.beginObject();
+		if(!JsonStreamUtils.seek(reader, "data") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+			return null;
+		}
+		
+		reader.beginArray();
+		return reader;
+	}
+	
+	/**
+	 * Read the value of the given member of a row if it is one of the counts.
+	 * 
+	 * @return <code>true</code> if the value was read, <code>false</code> if
+	 *         the member is not a count and its value is still to be read
+	 */
+	private static boolean readCount(JsonReader reader, String name, long[] row) throws IOException {
+		switch(name) {
+			case "share_count":
+				row[SHARES] = JsonStreamUtils.nextCount(reader);
+				return true;
+			
+			case "comment_count":
+				row[COMMENTS] = JsonStreamUtils.nextCount(reader);
+				return true;
+			
+			case "like_count":
+				row[LIKES] = JsonStreamUtils.nextCount(reader);
+				return true;
+			
+			case "click_count":
+				row[CLICKS] = JsonStreamUtils.nextCount(reader);
+				return true;
+			
+			default:
+				return false;
+		}
+	}
+	
+	private static void write(long[] row, SocialCounts counts) {
+		counts.facebookShares = row[SHARES];
+		counts.facebookComments = row[COMMENTS];
+		counts.facebookLikes = row[LIKES];
+		counts.facebookClicks = row[CLICKS];
+	}
+
+	@Override
+	public void copyCounts(SocialCounts from, SocialCounts to) {
+		to.facebookShares = from.facebookShares;
+		to.facebookComments = from.facebookComments;
+		to.facebookLikes = from.facebookLikes;
+		to.facebookClicks = from.facebookClicks;
+	}
+
+}
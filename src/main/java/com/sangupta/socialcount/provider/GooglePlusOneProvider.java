@@ -0,0 +1,207 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.entity.ContentType;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sangupta.jerry.util.GsonUtils;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.web.GoogleRequest;
+
+/**
+ * Fetches the Google +1 count for a URL.
+ * 
+ * @author sangupta
+ *
+ */
+public class GooglePlusOneProvider extends AbstractSocialCountProvider {
+	
+	public static final String NAME = "googlePlusOne";
+	
+	public static final String BASE_URL = "https://clients6.google.com";
+	
+	/**
+	 * Maximum number of calls sent in a single JSON-RPC batch
+	 */
+	public static final int MAX_BATCH_SIZE = 50;
+	
+	/**
+	 * Path to the count inside the result of a call
+	 */
+	private static final String[] RESULT_PATH = { "metadata", "globalCounts", "count" };
+	
+	public GooglePlusOneProvider() {
+		super(NAME, BASE_URL);
+	}
+	
+	@Override
+	public boolean isEnabled(SocialCountConfig config) {
+		return config.googlePlusOne;
+	}
+	
+	@Override
+	public int getMaxBatchSize() {
+		return MAX_BATCH_SIZE;
+	}
+
+	@Override
+	public ProviderRequest buildRequest(SocialCounts counts) {
+		GoogleRequest googleRequest = new GoogleRequest(counts.url);
+		return ProviderRequest.post(this.getBaseUrl() + "/rpc", googleRequest.toString(), ContentType.APPLICATION_JSON);
+	}
+
+	/**
+	 * Sends a JSON-RPC batch with one call per URL, each having its index in
+	 * the batch as the id.
+	 * 
+	 */
+	@Override
+	public ProviderRequest buildBatchRequest(List<SocialCounts> batch) {
+		GoogleRequest[] requests = new GoogleRequest[batch.size()];
+		for(int index = 0; index < requests.length; index++) {
+			requests[index] = new GoogleRequest(String.valueOf(index), batch.get(index).url);
+		}
+		
+		String body = GsonUtils.getGson(FieldNamingPolicy.IDENTITY).toJson(requests);
+		return ProviderRequest.post(this.getBaseUrl() + "/rpc", body, ContentType.APPLICATION_JSON);
+	}
+
+	@Override
+	public boolean parseResponse(SocialCounts counts, ProviderResponse response) throws IOException {
+		JsonReader reader = JsonStreamUtils.open(response);
+		if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return false;
+		}
+		
+		// result.metadata.globalCounts.count
+		reader.beginObject();
+		if(!JsonStreamUtils.enter(reader, "result") || !JsonStreamUtils.enter(reader, "metadata") || !JsonStreamUtils.enter(reader, "globalCounts")) {
+			return false;
+		}
+		
+		if(!JsonStreamUtils.seek(reader, "count")) {
+			return false;
+		}
+		
+		counts.googlePlusOne = JsonStreamUtils.nextCount(reader);
+		return true;
+	}
+	
+	/**
+	 * Matches the results of the batch to the instances by their id, as the
+	 * server may answer the calls in any order.
+	 * 
+	 */
+	@Override
+	public boolean[] parseBatchResponse(List<SocialCounts> batch, ProviderResponse response) throws IOException {
+		boolean[] parsed = new boolean[batch.size()];
+		JsonReader reader = JsonStreamUtils.open(response);
+		if(reader.peek() != JsonToken.BEGIN_ARRAY) {
+			return parsed;
+		}
+		
+		reader.beginArray();
+		while(reader.hasNext()) {
+			if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				continue;
+			}
+			
+			// the id usually comes first, but may follow the result
+			int index = -1;
+			long count = -1;
+			reader.beginObject();
+			while(reader.hasNext()) {
+				String name = reader.nextName();
+				if("id".equals(name) && reader.peek() == JsonToken.STRING) {
+					index = indexOf(reader.nextString(), parsed.length);
+				} else if("result".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+					count = readResult(reader, 0);
+				} else {
+					reader.skipValue();
+				}
+			}
+			
+			reader.endObject();
+			if(index >= 0 && count >= 0) {
+				batch.get(index).googlePlusOne = count;
+				parsed[index] = true;
+			}
+		}
+		
+		return parsed;
+	}
+	
+	/**
+	 * Read the count at {@link #RESULT_PATH} inside the object the reader is
+	 * at, reading the object to its end so that the next call in the batch
+	 * can be read.
+	 * 
+	 * @param reader
+	 *            the {@link JsonReader} positioned at the object
+	 * 
+	 * @param level
+	 *            the index of the member to look for in this object
+	 * 
+	 * @return the count, or <code>-1</code> if there is none
+	 */
+	private static long readResult(JsonReader reader, int level) throws IOException {
+		long count = -1;
+		reader.beginObject();
+		while(reader.hasNext()) {
+			if(!RESULT_PATH[level].equals(reader.nextName())) {
+				reader.skipValue();
+			} else if(level == RESULT_PATH.length - 1) {
+				count = JsonStreamUtils.nextCount(reader);
+			} else if(reader.peek() == JsonToken.BEGIN_OBJECT) {
+				count = readResult(reader, level + 1);
+			} else {
+				reader.skipValue();
+			}
+		}
+		
+		reader.endObject();
+		return count;
+	}
+	
+	private static int indexOf(String id, int size) {
+		try {
+			int index = Integer.parseInt(id);
+			return index < size ? index : -1;
+		} catch(NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void copyCounts(SocialCounts from, SocialCounts to) {
+		to.googlePlusOne = from.googlePlusOne;
+	}
+
+}
@@ -0,0 +1,194 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Fetches the Google+ shares for a URL by scraping the ripple details page.
+ * Note that this provider is really slow because of the lack of a direct API
+ * from Google.
+ * 
+ * The page is large, so it is scanned as it streams in and reading stops as
+ * soon as the share count is found, or after a maximum number of bytes.
+ * 
+ * @author sangupta
+ *
+ */
+public class GoogleSharesProvider extends AbstractSocialCountProvider {
+	
+	public static final String NAME = "googleShares";
+	
+	public static final String BASE_URL = "https://plus.google.com";
+	
+	/**
+	 * Default maximum number of bytes of the ripple page scanned for the count
+	 */
+	public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+	
+	/**
+	 * The text that follows the share count on the ripple page
+	 */
+	private static final byte[] MARKER = " public shares".getBytes(StandardCharsets.US_ASCII);
+	
+	/**
+	 * The tag that precedes the share count on the ripple page
+	 */
+	private static final byte[] DIV = "<div>".getBytes(StandardCharsets.US_ASCII);
+	
+	/**
+	 * The maximum number of bytes of the ripple page scanned for the count
+	 */
+	private volatile int maxBytes = DEFAULT_MAX_BYTES;
+	
+	public GoogleSharesProvider() {
+		super(NAME, BASE_URL);
+	}
+	
+	@Override
+	public boolean isEnabled(SocialCountConfig config) {
+		return config.googleShares;
+	}
+
+	@Override
+	public ProviderRequest buildRequest(SocialCounts counts) {
+		return ProviderRequest.get(this.getBaseUrl() + "/ripple/details?url=" + counts.encodedUri);
+	}
+
+	@Override
+	public boolean parseResponse(SocialCounts counts, ProviderResponse response) throws IOException {
+		long count = scan(response.getStream(), this.maxBytes);
+		if(count < 0) {
+			return false;
+		}
+		
+		counts.googleShares = count;
+		return true;
+	}
+	
+	/**
+	 * Scan the page for the first <code>&lt;div&gt;1234 public shares</code>,
+	 * without copying it.
+	 * 
+	 * @param stream
+	 *            the page
+	 * 
+	 * @param maxBytes
+	 *            the maximum number of bytes to read
+	 * 
+	 * @return the share count, or <code>-1</code> if it was not found
+	 * 
+	 * @throws IOException
+	 *             if the page cannot be read
+	 */
+	static long scan(InputStream stream, int maxBytes) throws IOException {
+		byte[] buffer = new byte[4096];
+		
+		// bytes of the tag and the marker matched so far
+		int div = 0;
+		int marker = 0;
+		
+		// the text since the last <div> - whitespace around digits
+		boolean number = false;
+		boolean ended = false;
+		int digits = 0;
+		long value = 0;
+		
+		// the number before the marker currently being matched
+		long count = -1;
+		
+		int total = 0;
+		int read;
+		while(total < maxBytes && (read = stream.read(buffer, 0, Math.min(buffer.length, maxBytes - total))) != -1) {
+			total += read;
+			
+			for(int index = 0; index < read; index++) {
+				byte b = buffer[index];
+				
+				if(number) {
+					if(b >= '0' && b <= '9' && !ended && digits < 18) {
+						value = value * 10 + (b - '0');
+						digits++;
+					} else if(b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+						ended = digits > 0;
+					} else {
+						number = false;
+					}
+				}
+				
+				if(b != MARKER[marker]) {
+					marker = 0;
+				}
+				
+				if(b == MARKER[marker]) {
+					if(marker == 0) {
+						count = number && digits > 0 ? value : -1;
+					}
+					
+					if(++marker == MARKER.length) {
+						// the first marker decides
+						return count;
+					}
+				}
+				
+				if(b != DIV[div]) {
+					div = 0;
+				}
+				
+				if(b == DIV[div] && ++div == DIV.length) {
+					div = 0;
+					number = true;
+					ended = false;
+					digits = 0;
+					value = 0;
+				}
+			}
+		}
+		
+		return -1;
+	}
+
+	@Override
+	public void copyCounts(SocialCounts from, SocialCounts to) {
+		to.googleShares = from.googleShares;
+	}
+	
+	// Usual accessors follow
+	
+	public int getMaxBytes() {
+		return this.maxBytes;
+	}
+	
+	public void setMaxBytes(int maxBytes) {
+		if(maxBytes < 1) {
+			throw new IllegalArgumentException("Max bytes must be positive");
+		}
+		
+		this.maxBytes = maxBytes;
+	}
+
+}
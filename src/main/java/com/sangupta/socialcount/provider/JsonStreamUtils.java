@@ -0,0 +1,206 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Helpers to read the few fields providers need straight off the response
+ * stream, without reading the body into a string or binding it to a model.
+ * 
+ * @author sangupta
+ *
+ */
+final class JsonStreamUtils {
+	
+	/**
+	 * Maximum number of characters of a JSONP callback name skipped before
+	 * giving up on the body
+	 */
+	private static final int MAX_CALLBACK_LENGTH = 256;
+	
+	private JsonStreamUtils() {
+		throw new RuntimeException("Instance of JsonStreamUtils is not allowed");
+	}
+	
+	/**
+	 * Open a reader over a JSON response body.
+	 * 
+	 * @param response
+	 *            the {@link ProviderResponse} to read
+	 * 
+	 * @return the {@link JsonReader}
+	 */
+	static JsonReader open(ProviderResponse response) {
+		return new JsonReader(new InputStreamReader(response.getStream(), response.charset));
+	}
+	
+	/**
+	 * Open a reader over a JSONP response body, like
+	 * <code>showCount({...});</code>, positioned at the JSON value. The
+	 * callback is skipped in place; a body without a callback is read as plain
+	 * JSON.
+	 * 
+	 * @param response
+	 *            the {@link ProviderResponse} to read
+	 * 
+	 * @return the {@link JsonReader}, or <code>null</code> if the body holds
+	 *         no JSON value
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	static JsonReader openJsonp(ProviderResponse response) throws IOException {
+		PushbackReader reader = new PushbackReader(new InputStreamReader(response.getStream(), response.charset), 1);
+		for(int index = 0; index < MAX_CALLBACK_LENGTH; index++) {
+			int ch = reader.read();
+			switch(ch) {
+				case -1:
+					return null;
+				
+				case '(':
+					return new JsonReader(reader);
+				
+				case '{':
+				case '[':
+					reader.unread(ch);
+					return new JsonReader(reader);
+				
+				default:
+					break;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Skip the members of the current object up to the one with the given
+	 * name, leaving the reader at its value.
+	 * 
+	 * @param reader
+	 *            the {@link JsonReader} inside an object
+	 * 
+	 * @param name
+	 *            the name of the member
+	 * 
+	 * @return <code>true</code> if the member was found, <code>false</code>
+	 *         if the end of the object was reached
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read or is not valid JSON
+	 */
+	static boolean seek(JsonReader reader, String name) throws IOException {
+		while(reader.hasNext()) {
+			if(name.equals(reader.nextName())) {
+				return true;
+			}
+			
+			reader.skipValue();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Skip the members of the current object up to the one with the given
+	 * name, and step into its value if that is an object.
+	 * 
+	 * @param reader
+	 *            the {@link JsonReader} inside an object
+	 * 
+	 * @param name
+	 *            the name of the member
+	 * 
+	 * @return <code>true</code> if the reader is now inside the value of the
+	 *         member
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read or is not valid JSON
+	 */
+	static boolean enter(JsonReader reader, String name) throws IOException {
+		if(!seek(reader, name) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return false;
+		}
+		
+		reader.beginObject();
+		return true;
+	}
+	
+	/**
+	 * Read a count, which may be encoded as a number, a numeric string, or be
+	 * <code>null</code>.
+	 * 
+	 * @param reader
+	 *            the {@link JsonReader} positioned at the value
+	 * 
+	 * @return the count, zero for <code>null</code>
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read or is not valid JSON
+	 * 
+	 * @throws NumberFormatException
+	 *             if the value is not a number
+	 */
+	static long nextCount(JsonReader reader) throws IOException {
+		if(reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return 0;
+		}
+		
+		return (long) reader.nextDouble();
+	}
+	
+	/**
+	 * Read a count from the given member of the top-level object of a body.
+	 * 
+	 * @param reader
+	 *            the {@link JsonReader} at the start of the body, may be
+	 *            <code>null</code>
+	 * 
+	 * @param name
+	 *            the name of the member
+	 * 
+	 * @return the count, or <code>-1</code> if the body has no such member
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read or is not valid JSON
+	 */
+	static long readCount(JsonReader reader, String name) throws IOException {
+		if(reader == null || reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return -1;
+		}
+		
+		reader.beginObject();
+		if(!seek(reader, name)) {
+			return -1;
+		}
+		
+		return nextCount(reader);
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import org.apache.http.entity.ContentType;
+
+import com.sangupta.jerry.http.WebRequestMethod;
+
+/**
+ * The request to be made to a provider API as built by a
+ * {@link SocialCountProvider}.
+ * 
+ * @author sangupta
+ *
+ */
+public class ProviderRequest {
+	
+	/**
+	 * The API endpoint to hit
+	 */
+	public final String url;
+	
+	/**
+	 * The HTTP method to use
+	 */
+	public final WebRequestMethod method;
+	
+	/**
+	 * The body to send, <code>null</code> for a <code>GET</code>
+	 */
+	public final String body;
+	
+	/**
+	 * The content type of the body, <code>null</code> for a <code>GET</code>
+	 */
+	public final ContentType contentType;
+	
+	private ProviderRequest(String url, WebRequestMethod method, String body, ContentType contentType) {
+		this.url = url;
+		this.method = method;
+		this.body = body;
+		this.contentType = contentType;
+	}
+	
+	/**
+	 * Create a <code>GET</code> request for the given endpoint.
+	 * 
+	 * @param url
+	 *            the endpoint to hit
+	 * 
+	 * @return the {@link ProviderRequest}
+	 */
+	public static ProviderRequest get(String url) {
+		return new ProviderRequest(url, WebRequestMethod.GET, null, null);
+	}
+	
+	/**
+	 * Create a <code>POST</code> request for the given endpoint.
+	 * 
+	 * @param url
+	 *            the endpoint to hit
+	 * 
+	 * @param body
+	 *            the body to send
+	 * 
+	 * @param contentType
+	 *            the content type of the body
+	 * 
+	 * @return the {@link ProviderRequest}
+	 */
+	public static ProviderRequest post(String url, String body, ContentType contentType) {
+		return new ProviderRequest(url, WebRequestMethod.POST, body, contentType);
+	}
+	
+	@Override
+	public String toString() {
+		return this.method + " " + this.url;
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The response received from a provider API. The body is made available as a
+ * stream so that providers may read only as much as they need. The response
+ * must be closed once done, which releases the underlying connection.
+ * 
+ * @author sangupta
+ *
+ */
+public class ProviderResponse implements Closeable {
+	
+	/**
+	 * The HTTP status code
+	 */
+	public final int statusCode;
+	
+	/**
+	 * The charset of the body
+	 */
+	public final Charset charset;
+	
+	/**
+	 * The body stream
+	 */
+	private final CountingInputStream content;
+	
+	/**
+	 * Create a new response.
+	 * 
+	 * @param statusCode
+	 *            the HTTP status code
+	 * 
+	 * @param content
+	 *            the body stream, closing which releases the connection
+	 * 
+	 * @param charset
+	 *            the charset of the body, <code>null</code> for UTF-8
+	 */
+	public ProviderResponse(int statusCode, InputStream content, Charset charset) {
+		this.statusCode = statusCode;
+		this.content = new CountingInputStream(content);
+		this.charset = charset != null ? charset : StandardCharsets.UTF_8;
+	}
+	
+	/**
+	 * Check if the provider returned a <code>2xx</code> status code.
+	 * 
+	 * @return <code>true</code> if the call was successful
+	 */
+	public boolean isSuccess() {
+		return this.statusCode >= 200 && this.statusCode < 300;
+	}
+	
+	/**
+	 * Return the body stream. The stream can only be read once.
+	 * 
+	 * @return the body as an {@link InputStream}
+	 */
+	public InputStream getStream() {
+		return this.content;
+	}
+	
+	/**
+	 * Read the entire body as a string.
+	 * 
+	 * @return the body
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	public String asString() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = this.content.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		
+		return new String(out.toByteArray(), this.charset);
+	}
+
+	/**
+	 * Return the number of bytes of the body read so far.
+	 * 
+	 * @return the number of bytes read
+	 */
+	public long getBytesRead() {
+		return this.content.count;
+	}
+	
+	/**
+	 * Close the body stream releasing the connection.
+	 * 
+	 */
+	@Override
+	public void close() throws IOException {
+		this.content.close();
+	}
+	
+	/**
+	 * Counts the bytes read from the body. A response is read by a single
+	 * thread, so a plain field suffices.
+	 * 
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		
+		private long count;
+		
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+			if(value != -1) {
+				this.count++;
+			}
+			
+			return value;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read > 0) {
+				this.count += read;
+			}
+			
+			return read;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			this.count += skipped;
+			return skipped;
+		}
+		
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns every provider name a small, stable integer slot for the lifetime
+ * of the JVM. Slots allow per provider state to be kept in compact primitive
+ * arrays instead of maps. The default providers always occupy the first
+ * slots in a fixed order.
+ * 
+ * @author sangupta
+ *
+ */
+public final class ProviderSlots {
+	
+	private static final ConcurrentMap<String, Integer> SLOTS = new ConcurrentHashMap<>();
+	
+	private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+	
+	/**
+	 * The provider name of each slot, copied on write
+	 */
+	private static volatile String[] NAMES = new String[0];
+	
+	static {
+		slotOf(TwitterProvider.NAME);
+		slotOf(FacebookProvider.NAME);
+		slotOf(GooglePlusOneProvider.NAME);
+		slotOf(GoogleSharesProvider.NAME);
+		slotOf(LinkedinProvider.NAME);
+		slotOf(PinterestProvider.NAME);
+	}
+	
+	private ProviderSlots() {
+		throw new RuntimeException("Instance of ProviderSlots is not allowed");
+	}
+	
+	/**
+	 * Return the slot for the given provider name, assigning a new one if the
+	 * name has not been seen before. Slots are never freed, so this is only
+	 * used on paths that store state for the provider.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @return the slot, zero or more
+	 */
+	public static int slotOf(String name) {
+		Integer slot = SLOTS.get(name);
+		if(slot != null) {
+			return slot;
+		}
+		
+		synchronized(SLOTS) {
+			slot = SLOTS.get(name);
+			if(slot == null) {
+				slot = NEXT_SLOT.getAndIncrement();
+				
+				String[] names = Arrays.copyOf(NAMES, slot + 1);
+				names[slot] = name;
+				NAMES = names;
+				
+				SLOTS.put(name, slot);
+			}
+			
+			return slot;
+		}
+	}
+	
+	/**
+	 * Return the slot already assigned to the given provider name, without
+	 * assigning one. Paths that only read per provider state use this so
+	 * that looking up an unknown name never grows the slots.
+	 * 
+	 * @param name
+	 *            the name of the provider
+	 * 
+	 * @return the slot, or <code>-1</code> if none has been assigned
+	 */
+	public static int indexOf(String name) {
+		if(name == null) {
+			return -1;
+		}
+		
+		Integer slot = SLOTS.get(name);
+		return slot != null ? slot : -1;
+	}
+	
+	/**
+	 * Return the provider name the given slot was assigned to.
+	 * 
+	 * @param slot
+	 *            the slot
+	 * 
+	 * @return the name of the provider, or <code>null</code> if the slot has
+	 *         not been assigned
+	 */
+	public static String nameOf(int slot) {
+		String[] names = NAMES;
+		if(slot < 0 || slot >= names.length) {
+			return null;
+		}
+		
+		return names[slot];
+	}
+	
+	/**
+	 * Return the number of slots assigned so far.
+	 * 
+	 * @return the number of slots
+	 */
+	public static int size() {
+		return NEXT_SLOT.get();
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Contract for a social media provider that can be registered with a
+ * {@link SocialCountClient}. A provider knows how to build the request to
+ * its API for a given URL, and how to parse the response and write the
+ * values into the {@link SocialCounts} instance. The client takes care of
+ * executing the request, and uses the limits declared by the provider to
+ * schedule the calls.
+ * 
+ * Implementations must be thread-safe as a single instance is used for all
+ * URLs fetched via a client.
+ * 
+ * @author sangupta
+ *
+ */
+public interface SocialCountProvider {
+	
+	/**
+	 * The unique name of this provider. Registering a provider with the same
+	 * name as an existing one replaces the latter.
+	 * 
+	 * @return the name of the provider
+	 */
+	public String getName();
+	
+	/**
+	 * Check if this provider needs to be hit for the given configuration.
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} for the current fetch
+	 * 
+	 * @return <code>true</code> if the provider is to be hit,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isEnabled(SocialCountConfig config);
+	
+	/**
+	 * Build the request to be made to the provider API for the given URL.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance containing the url
+	 * 
+	 * @return the {@link ProviderRequest} to execute
+	 */
+	public ProviderRequest buildRequest(SocialCounts counts);
+	
+	/**
+	 * Parse the successful response from the provider API and write the
+	 * values into the given instance.
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} instance to be updated
+	 * 
+	 * @param response
+	 *            the {@link ProviderResponse} as received from the provider
+	 * 
+	 * @return <code>true</code> if the values were read, <code>false</code>
+	 *         if the response could not be understood
+	 * 
+	 * @throws IOException
+	 *             if the response body cannot be read
+	 */
+	public boolean parseResponse(SocialCounts counts, ProviderResponse response) throws IOException;
+	
+	/**
+	 * Build a single request to the provider API that fetches the values for
+	 * all the given URLs. Only called when {@link #getMaxBatchSize()} is more
+	 * than one, with at least two and no more URLs than that. Providers that
+	 * do not support batching return one from {@link #getMaxBatchSize()} and
+	 * leave this as it is.
+	 * 
+	 * @param batch
+	 *            the {@link SocialCounts} instances containing the urls
+	 * 
+	 * @return the {@link ProviderRequest} to execute
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the provider does not support batching
+	 */
+	public default ProviderRequest buildBatchRequest(List<SocialCounts> batch) {
+		throw new UnsupportedOperationException("Provider " + this.getName() + " does not support batching");
+	}
+	
+	/**
+	 * Parse the successful response to a batch request and write the values
+	 * of each URL into its instance. Only called for responses to requests
+	 * built by {@link #buildBatchRequest(List)}.
+	 * 
+	 * @param batch
+	 *            the {@link SocialCounts} instances to be updated, in the same
+	 *            order as passed to {@link #buildBatchRequest(List)}
+	 * 
+	 * @param response
+	 *            the {@link ProviderResponse} as received from the provider
+	 * 
+	 * @return for each instance, in order, whether its values were read
+	 * 
+	 * @throws IOException
+	 *             if the response body cannot be read
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the provider does not support batching
+	 */
+	public default boolean[] parseBatchResponse(List<SocialCounts> batch, ProviderResponse response) throws IOException {
+		throw new UnsupportedOperationException("Provider " + this.getName() + " does not support batching");
+	}
+	
+	/**
+	 * Copy the values written by this provider from one instance to another.
+	 * This allows values to be reused from a cache, or shared between
+	 * requests for the same URL.
+	 * 
+	 * @param from
+	 *            the {@link SocialCounts} instance to read the values from
+	 * 
+	 * @param to
+	 *            the {@link SocialCounts} instance to write the values to
+	 */
+	public void copyCounts(SocialCounts from, SocialCounts to);
+	
+	/**
+	 * The maximum time in milliseconds a single call to this provider may
+	 * take.
+	 * 
+	 * @return the timeout in millis
+	 */
+	public int getTimeout();
+	
+	/**
+	 * The maximum number of calls that may be in flight to this provider at
+	 * any time, across all URLs.
+	 * 
+	 * @return the maximum concurrency
+	 */
+	public int getMaxConcurrency();
+	
+	/**
+	 * The maximum number of URLs that can be fetched from this provider in a
+	 * single request. A value of <code>1</code> means that the provider does
+	 * not support batching, and the client then never calls
+	 * {@link #buildBatchRequest(List)} or
+	 * {@link #parseBatchResponse(List, ProviderResponse)}. Providers returning
+	 * more than one must implement both, or the client refuses to batch
+	 * their calls.
+	 * 
+	 * @return the maximum batch size
+	 */
+	public int getMaxBatchSize();
+
+}
@@ -0,0 +1,71 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.IOException;
+
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Fetches the number of tweets for a URL.
+ * 
+ * @author sangupta
+ *
+ */
+public class TwitterProvider extends AbstractSocialCountProvider {
+	
+	public static final String NAME = "twitter";
+	
+	public static final String BASE_URL = "https://cdn.api.twitter.com";
+	
+	public TwitterProvider() {
+		super(NAME, BASE_URL);
+	}
+	
+	@Override
+	public boolean isEnabled(SocialCountConfig config) {
+		return config.twitter;
+	}
+
+	@Override
+	public ProviderRequest buildRequest(SocialCounts counts) {
+		return ProviderRequest.get(this.getBaseUrl() + "/1/urls/count.json?url=" + counts.encodedUri);
+	}
+
+	@Override
+	public boolean parseResponse(SocialCounts counts, ProviderResponse response) throws IOException {
+		long count = JsonStreamUtils.readCount(JsonStreamUtils.open(response), "count");
+		if(count < 0) {
+			return false;
+		}
+		
+		counts.twitter = count;
+		return true;
+	}
+
+	@Override
+	public void copyCounts(SocialCounts from, SocialCounts to) {
+		to.twitter = from.twitter;
+	}
+
+}
@@ -0,0 +1,809 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.refresh;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.sangupta.jerry.util.AssertUtils;
+import com.sangupta.socialcount.CircuitBreaker;
+import com.sangupta.socialcount.FetchStatus;
+import com.sangupta.socialcount.RateLimiter;
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.history.CountType;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+
+/**
+ * Keeps the counts of a set of tracked URLs fresh by refetching them from
+ * the providers of a {@link SocialCountClient}, spending the calls where the
+ * counts move. Tracked URLs wait in a priority queue ordered by the time they
+ * are next due, and each refresh works out the interval until the next one:
+ * 
+ * <ul>
+ * <li>URLs whose counts grow fast are refreshed about every time they are
+ * expected to grow by {@link #getTargetChange()}</li>
+ * <li>URLs are refreshed less often as they age, at an interval of
+ * {@link #getAgeFactor()} times their age</li>
+ * </ul>
+ * 
+ * whichever is shorter, within the minimum and maximum intervals. A young or
+ * viral URL is thus refreshed every few minutes, while one that stopped
+ * moving long ago is refreshed once a day.
+ * 
+ * Calls to each provider can be held to a budget shared by all URLs. A
+ * provider over its budget is left out of the refresh of a URL, and a URL is
+ * held back while all providers are over their budget, so that the budget
+ * goes to the URLs that are due first. Providers whose circuit breaker is
+ * open are left out without spending their budget.
+ * 
+ * A refresh whose calls have not all completed well after the timeout of
+ * the slowest provider, as when the client is closed meanwhile, is given up
+ * and the URL is retried after the minimum interval.
+ * 
+ * Refreshes always hit the providers, bypassing the cache of the client, and
+ * the fetched values are written to its cache and history as usual.
+ * 
+ * @author sangupta
+ *
+ */
+public class RefreshScheduler implements Closeable {
+	
+	/**
+	 * Default minimum time in millis between two refreshes of a URL
+	 */
+	public static final long DEFAULT_MIN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	
+	/**
+	 * Default maximum time in millis between two refreshes of a URL
+	 */
+	public static final long DEFAULT_MAX_INTERVAL = TimeUnit.DAYS.toMillis(1);
+	
+	/**
+	 * Default growth of the counts of a URL between two refreshes
+	 */
+	public static final long DEFAULT_TARGET_CHANGE = 50;
+	
+	/**
+	 * Default fraction of the age of a URL to wait between two refreshes
+	 */
+	public static final double DEFAULT_AGE_FACTOR = 0.1;
+	
+	/**
+	 * Default maximum number of URLs being refreshed at any time
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+	
+	private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+	
+	/**
+	 * Longest time in millis to wait for a provider to be back within budget
+	 * before looking again
+	 */
+	private static final long MAX_BUDGET_WAIT = 1000;
+	
+	/**
+	 * Time in millis a refresh is given beyond the timeout of the slowest
+	 * provider before it is given up
+	 */
+	private static final long REFRESH_GRACE = 1000;
+	
+	private final SocialCountClient client;
+	
+	/**
+	 * Tracked URLs ordered by the time they are next due
+	 */
+	private final DelayQueue<TrackedUrl> queue = new DelayQueue<>();
+	
+	/**
+	 * Tracked URLs by url
+	 */
+	private final ConcurrentMap<String, TrackedUrl> tracked = new ConcurrentHashMap<>();
+	
+	/**
+	 * Per provider budgets
+	 */
+	private final Map<String, RateLimiter> budgets = new ConcurrentHashMap<>();
+	
+	/**
+	 * Caps the number of URLs being refreshed
+	 */
+	private final Semaphore inFlight;
+	
+	/**
+	 * Takes due URLs off the queue and starts their refresh
+	 */
+	private final Thread dispatcher;
+	
+	/**
+	 * Gives up refreshes whose calls never complete
+	 */
+	private final ScheduledThreadPoolExecutor timer;
+	
+	private final LongAdder refreshes = new LongAdder();
+	
+	private volatile boolean closed;
+	
+	private volatile SocialCountConfig config = new SocialCountConfig();
+	
+	private volatile Consumer<SocialCounts> listener;
+	
+	private volatile long minInterval = DEFAULT_MIN_INTERVAL;
+	
+	private volatile long maxInterval = DEFAULT_MAX_INTERVAL;
+	
+	private volatile long targetChange = DEFAULT_TARGET_CHANGE;
+	
+	private volatile double ageFactor = DEFAULT_AGE_FACTOR;
+	
+	/**
+	 * Create a scheduler that refreshes at most
+	 * {@link #DEFAULT_MAX_IN_FLIGHT} URLs at a time.
+	 * 
+	 * @param client
+	 *            the {@link SocialCountClient} to fetch the counts with
+	 */
+	public RefreshScheduler(SocialCountClient client) {
+		this(client, DEFAULT_MAX_IN_FLIGHT);
+	}
+	
+	/**
+	 * Create a scheduler and start refreshing the URLs as they are tracked.
+	 * 
+	 * @param client
+	 *            the {@link SocialCountClient} to fetch the counts with
+	 * 
+	 * @param maxInFlight
+	 *            the maximum number of URLs being refreshed at any time
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the client is <code>null</code> or the maximum is less
+	 *             than one
+	 */
+	public RefreshScheduler(SocialCountClient client, int maxInFlight) {
+		if(client == null) {
+			throw new IllegalArgumentException("Client cannot be null");
+		}
+		
+		if(maxInFlight < 1) {
+			throw new IllegalArgumentException("Max in flight must be at least one");
+		}
+		
+		this.client = client;
+		this.inFlight = new Semaphore(maxInFlight);
+		
+		this.dispatcher = new Thread(this::dispatch, "socialcount-refresh");
+		this.dispatcher.setDaemon(true);
+		
+		this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "socialcount-refresh-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+		
+		this.dispatcher.start();
+	}
+	
+	/**
+	 * Start tracking the given URL as published now, unless already tracked.
+	 * The URL is refreshed right away.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return <code>true</code> if the URL was not tracked yet
+	 */
+	public boolean track(String url) {
+		return this.track(url, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Start tracking the given URL, unless already tracked. The URL is
+	 * refreshed right away.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @param publishedAt
+	 *            the time in millis the URL was published, from which its
+	 *            age is counted
+	 * 
+	 * @return <code>true</code> if the URL was not tracked yet
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the url is empty
+	 * 
+	 * @throws IllegalStateException
+	 *             if the scheduler has been closed
+	 */
+	public boolean track(String url, long publishedAt) {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be empty");
+		}
+		
+		if(this.closed) {
+			throw new IllegalStateException("Scheduler has been closed");
+		}
+		
+		url = this.client.canonicalize(url);
+		TrackedUrl entry = new TrackedUrl(url, publishedAt);
+		if(this.tracked.putIfAbsent(url, entry) != null) {
+			return false;
+		}
+		
+		this.queue.offer(entry);
+		return true;
+	}
+	
+	/**
+	 * Stop tracking the given URL. A refresh in progress is let finish.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return <code>true</code> if the URL was tracked
+	 */
+	public boolean untrack(String url) {
+		TrackedUrl entry = this.tracked.remove(this.client.canonicalize(url));
+		if(entry == null) {
+			return false;
+		}
+		
+		entry.removed = true;
+		this.queue.remove(entry);
+		return true;
+	}
+	
+	/**
+	 * Check if the given URL is being tracked.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return <code>true</code> if tracked
+	 */
+	public boolean isTracked(String url) {
+		return this.tracked.containsKey(this.client.canonicalize(url));
+	}
+	
+	/**
+	 * Return the number of URLs being tracked.
+	 * 
+	 * @return the number of URLs
+	 */
+	public int size() {
+		return this.tracked.size();
+	}
+	
+	/**
+	 * Return the time at which the given URL is next refreshed.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return the time in millis, <code>-1</code> if not tracked
+	 */
+	public long getNextRefresh(String url) {
+		TrackedUrl entry = this.tracked.get(this.client.canonicalize(url));
+		return entry != null ? entry.dueAt : -1;
+	}
+	
+	/**
+	 * Return how fast the counts of the given URL are growing, summed over
+	 * all counts and smoothed over the last few refreshes. The growth of each
+	 * provider is measured between its own successful refreshes, so that a
+	 * provider that failed or was skipped does not count as not growing.
+	 * 
+	 * @param url
+	 *            the url
+	 * 
+	 * @return the growth per hour, <code>-1</code> until some provider has
+	 *         been refreshed twice or if not tracked
+	 */
+	public double getVelocity(String url) {
+		TrackedUrl entry = this.tracked.get(this.client.canonicalize(url));
+		return entry != null ? entry.velocity : -1;
+	}
+	
+	/**
+	 * Work out the time to wait before refreshing a URL again.
+	 * 
+	 * @param age
+	 *            the time in millis since the URL was published
+	 * 
+	 * @param velocity
+	 *            the growth of its counts per hour, negative if not known
+	 * 
+	 * @return the interval in millis
+	 */
+	public long getInterval(long age, double velocity) {
+		double interval = age * this.ageFactor;
+		if(velocity > 0) {
+			interval = Math.min(interval, this.targetChange * MILLIS_PER_HOUR / velocity);
+		}
+		
+		return (long) Math.max(this.minInterval, Math.min(this.maxInterval, interval));
+	}
+	
+	/**
+	 * Hold the calls made to the given provider by refreshes to a budget,
+	 * across all URLs.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link SocialCountClient#TWITTER}
+	 * 
+	 * @param callsPerSecond
+	 *            the calls per second the provider may be called at, like
+	 *            <code>1000 / 3600.0</code> for a thousand calls an hour
+	 * 
+	 * @param burst
+	 *            the maximum number of calls that may be made at once
+	 * 
+	 * @return the {@link RateLimiter} now used as the budget
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty, the rate is not positive or
+	 *             the burst is less than one
+	 */
+	public RateLimiter setBudget(String provider, double callsPerSecond, int burst) {
+		RateLimiter budget = new RateLimiter(callsPerSecond, burst);
+		this.setBudget(provider, budget);
+		return budget;
+	}
+	
+	/**
+	 * Use the given limiter as the budget of calls to the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link SocialCountClient#TWITTER}
+	 * 
+	 * @param budget
+	 *            the {@link RateLimiter} to use, or <code>null</code> to
+	 *            remove the budget
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the provider name is empty
+	 */
+	public void setBudget(String provider, RateLimiter budget) {
+		if(AssertUtils.isEmpty(provider)) {
+			throw new IllegalArgumentException("Provider name cannot be empty");
+		}
+		
+		if(budget == null) {
+			this.budgets.remove(provider);
+			return;
+		}
+		
+		this.budgets.put(provider, budget);
+	}
+	
+	/**
+	 * Return the budget of calls to the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link SocialCountClient#TWITTER}
+	 * 
+	 * @return the {@link RateLimiter}, or <code>null</code> if there is no
+	 *         budget
+	 */
+	public RateLimiter getBudget(String provider) {
+		return this.budgets.get(provider);
+	}
+	
+	/**
+	 * Return the number of refreshes completed in which at least one provider
+	 * returned fresh values.
+	 * 
+	 * @return the number of refreshes
+	 */
+	public long getRefreshCount() {
+		return this.refreshes.sum();
+	}
+	
+	/**
+	 * Take due URLs off the queue and start their refresh, until closed.
+	 * 
+	 */
+	private void dispatch() {
+		try {
+			while(!this.closed) {
+				TrackedUrl entry = this.queue.take();
+				if(entry.removed) {
+					continue;
+				}
+				
+				this.inFlight.acquire();
+				
+				List<SocialCountProvider> providers = this.takeBudget();
+				while(providers == null && !this.closed) {
+					// every provider is over budget - hold the URL back
+					Thread.sleep(this.budgetWait());
+					providers = this.takeBudget();
+				}
+				
+				if(providers == null) {
+					break;
+				}
+				
+				this.refresh(entry, providers);
+			}
+		} catch(InterruptedException e) {
+			// closed
+		}
+	}
+	
+	/**
+	 * Take a call from the budget of every provider to be refreshed. No call
+	 * is taken for a provider whose circuit breaker would skip it.
+	 * 
+	 * @return the {@link SocialCountProvider}s within budget, or
+	 *         <code>null</code> if all of them are over budget
+	 */
+	private List<SocialCountProvider> takeBudget() {
+		final SocialCountConfig config = this.config;
+		List<SocialCountProvider> providers = new ArrayList<>();
+		boolean overBudget = false;
+		for(SocialCountProvider provider : this.client.getProviders()) {
+			if(!provider.isEnabled(config)) {
+				continue;
+			}
+			
+			CircuitBreaker breaker = this.client.getCircuitBreaker(provider.getName());
+			if(breaker != null && !breaker.isCallPermitted()) {
+				continue;
+			}
+			
+			RateLimiter budget = this.budgets.get(provider.getName());
+			if(budget == null || budget.tryAcquire()) {
+				providers.add(provider);
+			} else {
+				overBudget = true;
+			}
+		}
+		
+		return providers.isEmpty() && overBudget ? null : providers;
+	}
+	
+	/**
+	 * Return the time to wait for a call to come back into some budget.
+	 * 
+	 */
+	private long budgetWait() {
+		double rate = 0;
+		for(RateLimiter budget : this.budgets.values()) {
+			rate = Math.max(rate, budget.getRate());
+		}
+		
+		if(rate <= 0) {
+			return 1;
+		}
+		
+		return Math.max(1, Math.min(MAX_BUDGET_WAIT, (long) (1000 / rate)));
+	}
+	
+	/**
+	 * Fetch the given URL from the given providers, and queue it again once
+	 * done. If the calls have not all completed by the time the slowest
+	 * provider should have timed out, the refresh is given up: its values are
+	 * dropped and the URL is retried after the minimum interval.
+	 * 
+	 * @param entry
+	 *            the {@link TrackedUrl} to refresh
+	 * 
+	 * @param providers
+	 *            the {@link SocialCountProvider}s to hit
+	 */
+	private void refresh(final TrackedUrl entry, final List<SocialCountProvider> providers) {
+		final SocialCounts counts = new SocialCounts(entry.url);
+		final CompletableFuture<?>[] futures = new CompletableFuture<?>[providers.size()];
+		
+		long timeout = 0;
+		for(SocialCountProvider provider : providers) {
+			timeout = Math.max(timeout, provider.getTimeout());
+		}
+		
+		// the permit is released and the URL queued again exactly once
+		final AtomicBoolean done = new AtomicBoolean();
+		final ScheduledFuture<?> giveUp = this.schedule(() -> {
+			if(!done.compareAndSet(false, true)) {
+				return;
+			}
+			
+			this.inFlight.release();
+			synchronized(entry) {
+				entry.dueAt = System.currentTimeMillis() + this.minInterval;
+			}
+			
+			this.requeue(entry);
+		}, timeout + REFRESH_GRACE);
+		
+		try {
+			for(int index = 0; index < futures.length; index++) {
+				futures[index] = this.client.fetchAsync(counts, providers.get(index).getName());
+			}
+		} catch(RuntimeException e) {
+			// provider unregistered meanwhile
+			for(int index = 0; index < futures.length; index++) {
+				if(futures[index] == null) {
+					futures[index] = CompletableFuture.completedFuture(null);
+				}
+			}
+		}
+		
+		CompletableFuture.allOf(futures).whenComplete((result, error) -> {
+			if(!done.compareAndSet(false, true)) {
+				// given up already
+				return;
+			}
+			
+			if(giveUp != null) {
+				giveUp.cancel(false);
+			}
+			
+			this.inFlight.release();
+			try {
+				this.completed(entry, counts, providers);
+			} finally {
+				this.requeue(entry);
+			}
+		});
+	}
+	
+	/**
+	 * Run the given task on the timer after the given delay.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * 
+	 * @param delay
+	 *            the delay in millis
+	 * 
+	 * @return the {@link ScheduledFuture} of the task, or <code>null</code>
+	 *         if the scheduler has been closed
+	 */
+	private ScheduledFuture<?> schedule(Runnable task, long delay) {
+		try {
+			return this.timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException e) {
+			// closed - nothing left to give up
+			return null;
+		}
+	}
+	
+	/**
+	 * Queue the given URL again for its next refresh, unless it is no longer
+	 * tracked.
+	 * 
+	 * @param entry
+	 *            the {@link TrackedUrl} to queue
+	 */
+	private void requeue(TrackedUrl entry) {
+		if(!entry.removed && !this.closed) {
+			this.queue.offer(entry);
+		}
+	}
+	
+	/**
+	 * Fold the values of a refresh into the URL, and work out when it is due
+	 * next. If no provider returned fresh values, as when all were failing or
+	 * over budget, the refresh is not counted, the listener is not called,
+	 * and the URL is retried after the minimum interval.
+	 * 
+	 * @param entry
+	 *            the {@link TrackedUrl} refreshed
+	 * 
+	 * @param counts
+	 *            the {@link SocialCounts} fetched
+	 * 
+	 * @param providers
+	 *            the {@link SocialCountProvider}s that were hit
+	 */
+	private void completed(TrackedUrl entry, SocialCounts counts, List<SocialCountProvider> providers) {
+		counts.markComplete();
+		
+		final long now = counts.lastUpdated;
+		boolean refreshed = false;
+		synchronized(entry) {
+			for(SocialCountProvider provider : providers) {
+				final String name = provider.getName();
+				if(counts.getStatus(name) != FetchStatus.OK) {
+					continue;
+				}
+				
+				refreshed = true;
+				Long since = entry.refreshedAt.get(name);
+				if(since != null && now > since) {
+					entry.growth.put(name, growth(name, entry.latest, counts) * MILLIS_PER_HOUR / (now - since));
+				}
+				
+				provider.copyCounts(counts, entry.latest);
+				entry.refreshedAt.put(name, now);
+			}
+			
+			if(!refreshed) {
+				entry.dueAt = System.currentTimeMillis() + this.minInterval;
+				return;
+			}
+			
+			if(!entry.growth.isEmpty()) {
+				double growth = 0;
+				for(double value : entry.growth.values()) {
+					growth += value;
+				}
+				
+				entry.velocity = entry.velocity < 0 ? growth : (entry.velocity + growth) / 2;
+			}
+			
+			entry.dueAt = now + this.getInterval(now - entry.publishedAt, entry.velocity);
+		}
+		
+		this.refreshes.increment();
+		
+		Consumer<SocialCounts> listener = this.listener;
+		if(listener != null) {
+			listener.accept(counts);
+		}
+	}
+	
+	/**
+	 * Work out how much the counts of the given provider grew between two
+	 * refreshes. Counts that were not known before are left out.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @param before
+	 *            the {@link SocialCounts} as of the previous refresh
+	 * 
+	 * @param after
+	 *            the {@link SocialCounts} just fetched
+	 * 
+	 * @return the growth, summed over all counts of the provider
+	 */
+	private static double growth(String provider, SocialCounts before, SocialCounts after) {
+		long growth = 0;
+		for(CountType type : CountType.values()) {
+			if(!type.provider.equals(provider)) {
+				continue;
+			}
+			
+			long previous = type.valueOf(before);
+			if(previous >= 0) {
+				growth += Math.max(0, type.valueOf(after) - previous);
+			}
+		}
+		
+		return growth;
+	}
+	
+	/**
+	 * Stop refreshing. Refreshes in progress are let finish, and the client
+	 * is left open.
+	 * 
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.dispatcher.interrupt();
+		this.timer.shutdownNow();
+		this.queue.clear();
+	}
+	
+	// Usual accessors follow
+	
+	public SocialCountConfig getConfig() {
+		return this.config;
+	}
+	
+	/**
+	 * Change the providers refreshed.
+	 * 
+	 * @param config
+	 *            the {@link SocialCountConfig} naming the providers
+	 */
+	public void setConfig(SocialCountConfig config) {
+		if(config == null) {
+			throw new IllegalArgumentException("Config cannot be null");
+		}
+		
+		this.config = config;
+	}
+	
+	public Consumer<SocialCounts> getListener() {
+		return this.listener;
+	}
+	
+	/**
+	 * Receive the values of every refresh, on a thread of the client.
+	 * 
+	 * @param listener
+	 *            the listener, <code>null</code> for none
+	 */
+	public void setListener(Consumer<SocialCounts> listener) {
+		this.listener = listener;
+	}
+	
+	public long getMinInterval() {
+		return this.minInterval;
+	}
+	
+	public void setMinInterval(long minInterval) {
+		if(minInterval < 1) {
+			throw new IllegalArgumentException("Min interval must be positive");
+		}
+		
+		this.minInterval = minInterval;
+	}
+	
+	public long getMaxInterval() {
+		return this.maxInterval;
+	}
+	
+	public void setMaxInterval(long maxInterval) {
+		if(maxInterval < 1) {
+			throw new IllegalArgumentException("Max interval must be positive");
+		}
+		
+		this.maxInterval = maxInterval;
+	}
+	
+	public long getTargetChange() {
+		return this.targetChange;
+	}
+	
+	public void setTargetChange(long targetChange) {
+		if(targetChange < 1) {
+			throw new IllegalArgumentException("Target change must be positive");
+		}
+		
+		this.targetChange = targetChange;
+	}
+	
+	public double getAgeFactor() {
+		return this.ageFactor;
+	}
+	
+	public void setAgeFactor(double ageFactor) {
+		if(!(ageFactor > 0)) {
+			throw new IllegalArgumentException("Age factor must be positive");
+		}
+		
+		this.ageFactor = ageFactor;
+	}
+
+}
@@ -0,0 +1,104 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.refresh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * A URL kept fresh by a {@link RefreshScheduler}, ordered in its queue by
+ * the time the URL is next due. The due time is only changed while the URL
+ * is out of the queue, and the values and growth are guarded by the
+ * instance monitor.
+ * 
+ * @author sangupta
+ *
+ */
+class TrackedUrl implements Delayed {
+	
+	/**
+	 * The canonical url
+	 */
+	final String url;
+	
+	/**
+	 * The time in millis the URL was published, or started to be tracked
+	 */
+	final long publishedAt;
+	
+	/**
+	 * The latest values of every provider, merged across refreshes
+	 */
+	final SocialCounts latest;
+	
+	/**
+	 * The time in millis each provider was last refreshed successfully
+	 */
+	final Map<String, Long> refreshedAt = new HashMap<>();
+	
+	/**
+	 * Growth per hour of the counts of each provider between its last two
+	 * successful refreshes
+	 */
+	final Map<String, Double> growth = new HashMap<>();
+	
+	/**
+	 * Smoothed growth of the counts per hour, <code>-1</code> until known
+	 */
+	volatile double velocity = -1;
+	
+	/**
+	 * The time in millis the URL is next due
+	 */
+	volatile long dueAt;
+	
+	/**
+	 * Set once the URL is no longer tracked
+	 */
+	volatile boolean removed;
+	
+	TrackedUrl(String url, long publishedAt) {
+		this.url = url;
+		this.publishedAt = publishedAt;
+		this.latest = new SocialCounts(url);
+		this.dueAt = System.currentTimeMillis();
+	}
+	
+	@Override
+	public long getDelay(TimeUnit unit) {
+		return unit.convert(this.dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public int compareTo(Delayed other) {
+		if(other instanceof TrackedUrl) {
+			return Long.compare(this.dueAt, ((TrackedUrl) other).dueAt);
+		}
+		
+		return Long.compare(this.getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distribution of the time the {@link ProviderSimulator} waits before
+ * answering a request.
+ * 
+ * @author sangupta
+ *
+ */
+public interface LatencyDistribution {
+	
+	/**
+	 * Draw the latency for the next request.
+	 * 
+	 * @return the latency in millis, zero or more
+	 */
+	public long nextLatency();
+	
+	/**
+	 * Always answer after the same time.
+	 * 
+	 * @param millis
+	 *            the latency in millis
+	 * 
+	 * @return the {@link LatencyDistribution}
+	 */
+	public static LatencyDistribution fixed(final long millis) {
+		if(millis < 0) {
+			throw new IllegalArgumentException("Latency cannot be negative");
+		}
+		
+		return () -> millis;
+	}
+	
+	/**
+	 * Answer after a time picked uniformly between the given bounds.
+	 * 
+	 * @param min
+	 *            the minimum latency in millis
+	 * 
+	 * @param max
+	 *            the maximum latency in millis
+	 * 
+	 * @return the {@link LatencyDistribution}
+	 */
+	public static LatencyDistribution uniform(final long min, final long max) {
+		if(min < 0 || max < min) {
+			throw new IllegalArgumentException("Bounds must satisfy 0 <= min <= max");
+		}
+		
+		return () -> min + (long) (ThreadLocalRandom.current().nextDouble() * (max - min + 1));
+	}
+	
+	/**
+	 * Answer after a long-tailed time, as seen with real provider APIs. The
+	 * latency follows a log-normal distribution with the given median and
+	 * 99th percentile.
+	 * 
+	 * @param median
+	 *            the median latency in millis
+	 * 
+	 * @param p99
+	 *            the 99th percentile latency in millis
+	 * 
+	 * @return the {@link LatencyDistribution}
+	 */
+	public static LatencyDistribution logNormal(final long median, final long p99) {
+		if(median < 1 || p99 < median) {
+			throw new IllegalArgumentException("Percentiles must satisfy 1 <= median <= p99");
+		}
+		
+		// 2.326 is the z-score of the 99th percentile
+		final double mu = Math.log(median);
+		final double sigma = (Math.log(p99) - mu) / 2.326;
+		return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+	}
+
+}
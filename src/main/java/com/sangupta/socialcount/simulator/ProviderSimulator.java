@@ -0,0 +1,704 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.provider.AbstractSocialCountProvider;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.GooglePlusOneProvider;
+import com.sangupta.socialcount.provider.GoogleSharesProvider;
+import com.sangupta.socialcount.provider.LinkedinProvider;
+import com.sangupta.socialcount.provider.PinterestProvider;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embeddable HTTP server that stands in for all the provider APIs, for
+ * load and latency testing without network access. It serves payloads shaped
+ * like the real ones: the Twitter count JSON, FQL <code>link_stat</code> rows,
+ * Google JSON-RPC results (including batches), the ripple HTML page and the
+ * LinkedIn and Pinterest JSONP. The counts returned for a URL are derived from
+ * the URL, so repeated runs see the same values.
+ * 
+ * The latency, error rate and throttling rate can be set for all providers or
+ * per provider. Latency does not hold a server thread, so thousands of slow
+ * requests can be in progress at once.
+ * 
+ * Responses of the JDK HTTP server may wait on delayed ACKs, which skews
+ * the latencies measured. Tests and benchmarks should start the JVM with
+ * <code>-Dsun.net.httpserver.nodelay=true</code>, as the property is only
+ * read when the first server of the JVM is created. {@link #main(String[])}
+ * sets it itself.
+ * 
+ * @author sangupta
+ *
+ */
+public class ProviderSimulator implements Closeable {
+	
+	/**
+	 * Default size of the ripple page served for Google+ shares
+	 */
+	public static final int DEFAULT_RIPPLE_PAGE_SIZE = 32 * 1024;
+	
+	private static final Pattern FQL_URL = Pattern.compile("'((?:[^'\\\\]|\\\\.)*)'");
+	
+	/**
+	 * The provider APIs being simulated
+	 */
+	private static enum Endpoint {
+		
+		TWITTER(TwitterProvider.NAME, "/1/urls/count.json"),
+		
+		FACEBOOK(FacebookProvider.NAME, "/fql"),
+		
+		GOOGLE_PLUS_ONE(GooglePlusOneProvider.NAME, "/rpc"),
+		
+		GOOGLE_SHARES(GoogleSharesProvider.NAME, "/ripple/details"),
+		
+		LINKEDIN(LinkedinProvider.NAME, "/countserv/count/share"),
+		
+		PINTEREST(PinterestProvider.NAME, "/v1/urls/count.json");
+		
+		final String provider;
+		
+		final String path;
+		
+		private Endpoint(String provider, String path) {
+			this.provider = provider;
+			this.path = path;
+		}
+		
+		static Endpoint forPath(String path) {
+			for(Endpoint endpoint : values()) {
+				if(endpoint.path.equals(path)) {
+					return endpoint;
+				}
+			}
+			
+			return null;
+		}
+		
+		static Endpoint forProvider(String provider) {
+			for(Endpoint endpoint : values()) {
+				if(endpoint.provider.equals(provider)) {
+					return endpoint;
+				}
+			}
+			
+			throw new IllegalArgumentException("No such provider: " + provider);
+		}
+		
+	}
+	
+	/**
+	 * How a single endpoint behaves
+	 */
+	private static class Behavior {
+		
+		volatile LatencyDistribution latency = LatencyDistribution.fixed(0);
+		
+		volatile double errorRate;
+		
+		volatile double throttleRate;
+		
+		final LongAdder requests = new LongAdder();
+		
+	}
+	
+	private final Behavior[] behaviors = new Behavior[Endpoint.values().length];
+	
+	private final HttpServer server;
+	
+	private final ExecutorService executor;
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private volatile int ripplePageSize = DEFAULT_RIPPLE_PAGE_SIZE;
+	
+	/**
+	 * Start a simulator on a free port of the loopback interface.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public ProviderSimulator() throws IOException {
+		this(0);
+	}
+	
+	/**
+	 * Start a simulator on the given port of the loopback interface.
+	 * 
+	 * @param port
+	 *            the port to listen on, zero for any free port
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public ProviderSimulator(int port) throws IOException {
+		for(int index = 0; index < this.behaviors.length; index++) {
+			this.behaviors[index] = new Behavior();
+		}
+		
+		this.executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+		
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.scheduler = scheduler;
+		
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+	
+	/**
+	 * Send the requests of all providers of the given client that are
+	 * simulated here to this simulator.
+	 * 
+	 * @param client
+	 *            the {@link SocialCountClient} to attach
+	 */
+	public void attach(SocialCountClient client) {
+		for(SocialCountProvider provider : client.getProviders()) {
+			if(provider instanceof AbstractSocialCountProvider && this.simulates(provider.getName())) {
+				((AbstractSocialCountProvider) provider).setBaseUrl(this.getBaseUrl());
+			}
+		}
+	}
+	
+	private boolean simulates(String provider) {
+		for(Endpoint endpoint : Endpoint.values()) {
+			if(endpoint.provider.equals(provider)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Return the base URL to send provider requests to.
+	 * 
+	 * @return the base URL, like <code>http://127.0.0.1:8080</code>
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+	
+	/**
+	 * Return the count served by the given provider for the given URL.
+	 * 
+	 * @param provider
+	 *            the name of the provider
+	 * 
+	 * @param url
+	 *            the URL
+	 * 
+	 * @return the count, between zero and 99999
+	 */
+	public static long countFor(String provider, String url) {
+		int hash = url.hashCode() * 31 + provider.hashCode();
+		hash ^= hash >>> 16;
+		return (hash & 0x7fffffff) % 100000;
+	}
+	
+	private void handle(final HttpExchange exchange) throws IOException {
+		final Endpoint endpoint = Endpoint.forPath(exchange.getRequestURI().getPath());
+		final byte[] request = readFully(exchange.getRequestBody());
+		if(endpoint == null) {
+			send(exchange, 404, "Not Found");
+			return;
+		}
+		
+		final Behavior behavior = this.behaviors[endpoint.ordinal()];
+		behavior.requests.increment();
+		
+		long delay = behavior.latency.nextLatency();
+		if(delay <= 0) {
+			this.respond(exchange, endpoint, behavior, request);
+			return;
+		}
+		
+		// the timer only hands the response over to the server threads
+		final Runnable response = () -> {
+			try {
+				this.respond(exchange, endpoint, behavior, request);
+			} catch(IOException | RuntimeException e) {
+				exchange.close();
+			}
+		};
+		
+		try {
+			this.scheduler.schedule(() -> this.dispatch(exchange, response), delay, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException e) {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Run the given response on the server threads, dropping the exchange if
+	 * the simulator has been closed.
+	 * 
+	 * @param exchange
+	 *            the {@link HttpExchange} being answered
+	 * 
+	 * @param response
+	 *            writes the response
+	 */
+	private void dispatch(HttpExchange exchange, Runnable response) {
+		try {
+			this.executor.execute(response);
+		} catch(RejectedExecutionException e) {
+			exchange.close();
+		}
+	}
+	
+	private void respond(HttpExchange exchange, Endpoint endpoint, Behavior behavior, byte[] request) throws IOException {
+		double roll = ThreadLocalRandom.current().nextDouble();
+		if(roll < behavior.throttleRate) {
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			send(exchange, 429, "Too Many Requests");
+			return;
+		}
+		
+		if(roll < behavior.throttleRate + behavior.errorRate) {
+			send(exchange, 500, "Internal Server Error");
+			return;
+		}
+		
+		String query = exchange.getRequestURI().getRawQuery();
+		String body;
+		switch(endpoint) {
+			case TWITTER:
+				body = this.twitter(param(query, "url"));
+				break;
+			
+			case FACEBOOK:
+				body = this.facebook(param(query, "q"));
+				break;
+			
+			case GOOGLE_PLUS_ONE:
+				body = this.googlePlusOne(new String(request, StandardCharsets.UTF_8));
+				break;
+			
+			case GOOGLE_SHARES:
+				body = this.ripple(param(query, "url"));
+				exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+				break;
+			
+			case LINKEDIN:
+				body = this.linkedin(param(query, "url"), param(query, "callback"));
+				break;
+			
+			case PINTEREST:
+				body = this.pinterest(param(query, "url"), param(query, "callback"));
+				break;
+			
+			default:
+				body = null;
+		}
+		
+		if(body == null) {
+			send(exchange, 400, "Bad Request");
+			return;
+		}
+		
+		if(!exchange.getResponseHeaders().containsKey("Content-Type")) {
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		}
+		
+		send(exchange, 200, body);
+	}
+	
+	private String twitter(String url) {
+		if(url == null) {
+			return null;
+		}
+		
+		JsonObject json = new JsonObject();
+		json.addProperty("count", countFor(TwitterProvider.NAME, url));
+		json.addProperty("url", url);
+		return json.toString();
+	}
+	
+	private String facebook(String fql) {
+		if(fql == null) {
+			return null;
+		}
+		
+		// one row per quoted URL, so that IN (...) queries work too
+		JsonArray data = new JsonArray();
+		int where = fql.indexOf("WHERE");
+		Matcher matcher = FQL_URL.matcher(fql);
+		while(matcher.find(where < 0 ? 0 : where)) {
+			String url = matcher.group(1).replace("\\'", "'");
+			where = matcher.end();
+			
+			long count = countFor(FacebookProvider.NAME, url);
+			JsonObject row = new JsonObject();
+			row.addProperty("url", url);
+			row.addProperty("normalized_url", url);
+			row.addProperty("share_count", count);
+			row.addProperty("like_count", count * 2);
+			row.addProperty("comment_count", count / 3);
+			row.addProperty("total_count", count * 3 + count / 3);
+			row.addProperty("commentsbox_count", 0);
+			row.addProperty("click_count", count / 10);
+			data.add(row);
+		}
+		
+		JsonObject json = new JsonObject();
+		json.add("data", data);
+		return json.toString();
+	}
+	
+	private String googlePlusOne(String request) {
+		JsonElement parsed;
+		try {
+			parsed = new JsonParser().parse(request);
+		} catch(RuntimeException e) {
+			return null;
+		}
+		
+		if(parsed.isJsonObject()) {
+			return googleResult(parsed.getAsJsonObject()).toString();
+		}
+		
+		if(!parsed.isJsonArray()) {
+			return null;
+		}
+		
+		// JSON-RPC batch
+		JsonArray results = new JsonArray();
+		for(JsonElement element : parsed.getAsJsonArray()) {
+			if(element.isJsonObject()) {
+				results.add(googleResult(element.getAsJsonObject()));
+			}
+		}
+		
+		return results.toString();
+	}
+	
+	private static JsonObject googleResult(JsonObject request) {
+		JsonObject params = request.getAsJsonObject("params");
+		String url = params != null && params.has("id") ? params.get("id").getAsString() : "";
+		
+		JsonObject globalCounts = new JsonObject();
+		globalCounts.addProperty("count", (double) countFor(GooglePlusOneProvider.NAME, url));
+		
+		JsonObject metadata = new JsonObject();
+		metadata.addProperty("type", "URL");
+		metadata.add("globalCounts", globalCounts);
+		
+		JsonObject result = new JsonObject();
+		result.addProperty("kind", "pos#plusones");
+		result.addProperty("id", url);
+		result.addProperty("isSetByViewer", false);
+		result.add("metadata", metadata);
+		
+		JsonObject json = new JsonObject();
+		json.add("id", request.has("id") ? request.get("id") : null);
+		json.add("result", result);
+		return json;
+	}
+	
+	private String ripple(String url) {
+		if(url == null) {
+			return null;
+		}
+		
+		StringBuilder builder = new StringBuilder(this.ripplePageSize + 512);
+		builder.append("<!DOCTYPE html><html><head><title>Public shares of ").append(url).append("</title></head><body>");
+		builder.append("<div class=\"header\">Ripples</div>");
+		
+		// filler like the scripts and markup of the real page
+		int item = 0;
+		while(builder.length() < this.ripplePageSize) {
+			builder.append("<div class=\"ripple\" data-item=\"").append(item++).append("\"><span>Shared publicly</span></div>\n");
+		}
+		
+		builder.append("<div>Shared</div><div>").append(countFor(GoogleSharesProvider.NAME, url)).append(" public shares</div>");
+		builder.append("</body></html>");
+		return builder.toString();
+	}
+	
+	private String linkedin(String url, String callback) {
+		if(url == null) {
+			return null;
+		}
+		
+		long count = countFor(LinkedinProvider.NAME, url);
+		
+		JsonObject json = new JsonObject();
+		json.addProperty("count", count);
+		json.addProperty("fCnt", String.valueOf(count));
+		json.addProperty("fCntPlusOne", String.valueOf(count + 1));
+		json.addProperty("url", url);
+		return (callback != null ? callback : "IN.Tags.Share.handleCount") + "(" + json + ");";
+	}
+	
+	private String pinterest(String url, String callback) {
+		if(url == null) {
+			return null;
+		}
+		
+		JsonObject json = new JsonObject();
+		json.addProperty("count", countFor(PinterestProvider.NAME, url));
+		json.addProperty("url", url);
+		return (callback != null ? callback : "receiveCount") + "(" + json + ")";
+	}
+	
+	private static String param(String query, String name) {
+		if(query == null) {
+			return null;
+		}
+		
+		for(String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if(equals > 0 && pair.substring(0, equals).equals(name)) {
+				try {
+					return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+				} catch(UnsupportedEncodingException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private static byte[] readFully(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = stream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+	
+	/**
+	 * Set the latency of all providers.
+	 * 
+	 * @param latency
+	 *            the {@link LatencyDistribution} to use
+	 */
+	public void setLatency(LatencyDistribution latency) {
+		for(Endpoint endpoint : Endpoint.values()) {
+			this.setLatency(endpoint.provider, latency);
+		}
+	}
+	
+	/**
+	 * Set the latency of the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link TwitterProvider#NAME}
+	 * 
+	 * @param latency
+	 *            the {@link LatencyDistribution} to use
+	 */
+	public void setLatency(String provider, LatencyDistribution latency) {
+		if(latency == null) {
+			throw new IllegalArgumentException("Latency cannot be null");
+		}
+		
+		this.behaviorOf(provider).latency = latency;
+	}
+	
+	/**
+	 * Set the share of requests to all providers answered with HTTP 500.
+	 * 
+	 * @param errorRate
+	 *            the share, between zero and one
+	 */
+	public void setErrorRate(double errorRate) {
+		for(Endpoint endpoint : Endpoint.values()) {
+			this.setErrorRate(endpoint.provider, errorRate);
+		}
+	}
+	
+	/**
+	 * Set the share of requests to the given provider answered with HTTP 500.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link TwitterProvider#NAME}
+	 * 
+	 * @param errorRate
+	 *            the share, between zero and one
+	 */
+	public void setErrorRate(String provider, double errorRate) {
+		this.behaviorOf(provider).errorRate = checkRate(errorRate);
+	}
+	
+	/**
+	 * Set the share of requests to all providers answered with HTTP 429.
+	 * 
+	 * @param throttleRate
+	 *            the share, between zero and one
+	 */
+	public void setThrottleRate(double throttleRate) {
+		for(Endpoint endpoint : Endpoint.values()) {
+			this.setThrottleRate(endpoint.provider, throttleRate);
+		}
+	}
+	
+	/**
+	 * Set the share of requests to the given provider answered with HTTP 429.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link TwitterProvider#NAME}
+	 * 
+	 * @param throttleRate
+	 *            the share, between zero and one
+	 */
+	public void setThrottleRate(String provider, double throttleRate) {
+		this.behaviorOf(provider).throttleRate = checkRate(throttleRate);
+	}
+	
+	/**
+	 * Return the number of requests received for the given provider.
+	 * 
+	 * @param provider
+	 *            the name of the provider, like {@link TwitterProvider#NAME}
+	 * 
+	 * @return the number of requests
+	 */
+	public long getRequestCount(String provider) {
+		return this.behaviorOf(provider).requests.sum();
+	}
+	
+	/**
+	 * Return the number of requests received for all providers.
+	 * 
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		long total = 0;
+		for(Behavior behavior : this.behaviors) {
+			total += behavior.requests.sum();
+		}
+		
+		return total;
+	}
+	
+	private Behavior behaviorOf(String provider) {
+		return this.behaviors[Endpoint.forProvider(provider).ordinal()];
+	}
+	
+	private static double checkRate(double rate) {
+		if(!(rate >= 0 && rate <= 1)) {
+			throw new IllegalArgumentException("Rate must be between zero and one");
+		}
+		
+		return rate;
+	}
+	
+	// Usual accessors follow
+	
+	public int getRipplePageSize() {
+		return this.ripplePageSize;
+	}
+	
+	public void setRipplePageSize(int ripplePageSize) {
+		this.ripplePageSize = ripplePageSize;
+	}
+	
+	/**
+	 * Stop the simulator, dropping requests in progress.
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.scheduler.shutdownNow();
+		this.executor.shutdownNow();
+	}
+	
+	/**
+	 * Run a simulator from the command line, with delayed ACKs turned off.
+	 * 
+	 * @param args
+	 *            the port, and optionally the median and 99th percentile
+	 *            latency in millis
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Usage: ProviderSimulator <port> [<median latency ms> <p99 latency ms>]");
+			return;
+		}
+		
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		
+		ProviderSimulator simulator = new ProviderSimulator(Integer.parseInt(args[0]));
+		if(args.length >= 3) {
+			simulator.setLatency(LatencyDistribution.logNormal(Long.parseLong(args[1]), Long.parseLong(args[2])));
+		}
+		
+		List<String> paths = new ArrayList<>();
+		for(Endpoint endpoint : Endpoint.values()) {
+			paths.add(endpoint.path);
+		}
+		
+		System.out.println("Provider simulator listening at " + simulator.getBaseUrl() + " for " + paths);
+	}
+
+}
@@ -34,7 +34,7 @@ public class GoogleRequest {
 	
 	public final String method = "pos.plusones.get";
 	
-	public final String id = "p";
+	public final String id;
 	
 	public final String jsonrpc = "2.0";
 	
@@ -45,6 +45,21 @@ public class GoogleRequest {
 	public final Params params;
 	
 	public GoogleRequest(String url) {
+		this("p", url);
+	}
+	
+	/**
+	 * Create a request with the given JSON-RPC id, by which its result is
+	 * told apart from the others in a batch.
+	 * 
+	 * @param id
+	 *            the id of the request
+	 * 
+	 * @param url
+	 *            the url to fetch the count for
+	 */
+	public GoogleRequest(String id, String url) {
+		this.id = id;
 		this.params = new Params(url);
 	}
 	
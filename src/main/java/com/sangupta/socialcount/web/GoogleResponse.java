@@ -24,9 +24,14 @@ package com.sangupta.socialcount.web;
 /**
  * Model to parse JSON response from Google API call.
  * 
+ * @deprecated no longer used, as the {@link com.sangupta.socialcount.provider.GooglePlusOneProvider}
+ *             reads the counts straight off the response stream; to be
+ *             removed in the next major version
+ * 
  * @author sangupta
  *
  */
+@Deprecated
 public class GoogleResponse {
 	
 	public String id;
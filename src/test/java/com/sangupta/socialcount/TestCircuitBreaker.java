@@ -0,0 +1,93 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.socialcount.CircuitBreaker.State;
+
+/**
+ * Tests for {@link CircuitBreaker}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestCircuitBreaker {
+	
+	@Test
+	public void testOpens() {
+		CircuitBreaker breaker = new CircuitBreaker(4);
+		breaker.setMinimumCalls(4);
+		
+		breaker.onSuccess(10);
+		breaker.onFailure();
+		breaker.onSuccess(10);
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		
+		// slow calls count as bad
+		breaker.onSuccess(CircuitBreaker.DEFAULT_SLOW_CALL_THRESHOLD + 1);
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		Assert.assertFalse(breaker.isCallPermitted());
+		Assert.assertFalse(breaker.allowRequest());
+		Assert.assertEquals(1, breaker.getOpenCount());
+	}
+	
+	@Test
+	public void testHalfOpen() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2);
+		breaker.setOpenDuration(20);
+		breaker.setTrialCalls(2);
+		
+		breaker.onFailure();
+		breaker.onFailure();
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		
+		Thread.sleep(30);
+		
+		// a failed trial opens the breaker again
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+		breaker.onFailure();
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		
+		Thread.sleep(30);
+		
+		// looking does not take up a trial call
+		Assert.assertTrue(breaker.isCallPermitted());
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertFalse(breaker.isCallPermitted());
+		Assert.assertFalse(breaker.allowRequest());
+		
+		// an abandoned trial is given back
+		breaker.onAbandoned();
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertFalse(breaker.allowRequest());
+		breaker.onSuccess(10);
+		breaker.onSuccess(10);
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+}
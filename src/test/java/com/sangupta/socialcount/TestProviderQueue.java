@@ -0,0 +1,143 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProviderQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestProviderQueue {
+	
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	
+	/**
+	 * Calls block until given a permit
+	 */
+	private final Semaphore gate = new Semaphore(0);
+	
+	private final AtomicInteger started = new AtomicInteger();
+	
+	@After
+	public void teardown() {
+		this.gate.release(1000);
+		this.executor.shutdownNow();
+	}
+	
+	@Test
+	public void testCapAndDrain() throws Exception {
+		ProviderQueue queue = new ProviderQueue("test", this.executor, 2);
+		
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for(int index = 0; index < 5; index++) {
+			futures.add(queue.submit(new CompletableFuture<Void>(), this::blockingCall));
+		}
+		
+		// calls above the cap wait in the queue
+		this.awaitStarted(2);
+		Assert.assertEquals(2, queue.getInFlight());
+		Assert.assertEquals(3, queue.getPending());
+		
+		// each finished call hands its slot to the next one
+		this.gate.release();
+		this.awaitStarted(3);
+		Assert.assertEquals(2, queue.getInFlight());
+		Assert.assertEquals(2, queue.getPending());
+		
+		// a higher cap starts waiting calls right away
+		queue.setMaxConcurrency(4);
+		this.awaitStarted(5);
+		Assert.assertEquals(0, queue.getPending());
+		
+		this.gate.release(4);
+		for(CompletableFuture<Void> future : futures) {
+			future.get(1, TimeUnit.SECONDS);
+		}
+		
+		Assert.assertEquals(5, this.started.get());
+		for(int index = 0; index < 100 && queue.getInFlight() > 0; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(0, queue.getInFlight());
+	}
+	
+	@Test
+	public void testSkipAndClose() throws Exception {
+		ProviderQueue queue = new ProviderQueue("test", this.executor, 1);
+		
+		CompletableFuture<Void> running = queue.submit(new CompletableFuture<Void>(), this::blockingCall);
+		CompletableFuture<Void> skipped = queue.submit(new CompletableFuture<Void>(), this::blockingCall);
+		CompletableFuture<Void> closed = queue.submit(new CompletableFuture<Void>(), this::blockingCall);
+		this.awaitStarted(1);
+		
+		// completed by someone else while waiting - never run
+		skipped.complete(null);
+		
+		// waiting calls fail on close, the running one completes
+		queue.close();
+		try {
+			closed.get(1, TimeUnit.SECONDS);
+			Assert.fail("Waiting call not failed on close");
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		
+		Assert.assertTrue(queue.submit(new CompletableFuture<Void>(), this::blockingCall).isCompletedExceptionally());
+		
+		this.gate.release();
+		running.get(1, TimeUnit.SECONDS);
+		Assert.assertEquals(1, this.started.get());
+	}
+	
+	private void blockingCall() {
+		this.started.incrementAndGet();
+		this.gate.acquireUninterruptibly();
+	}
+	
+	private void awaitStarted(int count) throws InterruptedException {
+		for(int index = 0; index < 100 && this.started.get() < count; index++) {
+			Thread.sleep(10);
+		}
+		
+		// give any call beyond the cap the chance to start as well
+		Thread.sleep(20);
+		Assert.assertEquals(count, this.started.get());
+	}
+
+}
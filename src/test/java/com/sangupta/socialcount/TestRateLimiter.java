@@ -0,0 +1,76 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RateLimiter}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestRateLimiter {
+	
+	@Test
+	public void testBurst() {
+		RateLimiter limiter = new RateLimiter(1, 3);
+		limiter.setFailFast(true);
+		
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertFalse(limiter.tryAcquire());
+	}
+	
+	@Test
+	public void testQueue() throws InterruptedException {
+		RateLimiter limiter = new RateLimiter(20, 1);
+		Assert.assertEquals(0, limiter.acquire(1000));
+		
+		long waited = limiter.acquire(1000);
+		Assert.assertTrue(waited > 0 && waited <= 50);
+		
+		// the next token is further away than allowed
+		Assert.assertEquals(-1, limiter.acquire(10));
+	}
+	
+	@Test
+	public void testAdaptiveRate() {
+		RateLimiter limiter = new RateLimiter(100, 10);
+		
+		limiter.onThrottled();
+		Assert.assertEquals(50, limiter.getRate(), 0.001);
+		
+		// a second throttle within the interval is from the same burst
+		limiter.onThrottled();
+		Assert.assertEquals(50, limiter.getRate(), 0.001);
+		
+		for(int index = 0; index < 100; index++) {
+			limiter.onSuccess();
+		}
+		
+		Assert.assertEquals(100, limiter.getRate(), 0.001);
+	}
+
+}
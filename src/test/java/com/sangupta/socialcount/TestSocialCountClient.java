@@ -0,0 +1,802 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.socialcount.cache.SocialCountCache;
+import com.sangupta.socialcount.http.HttpTransport;
+import com.sangupta.socialcount.http.PooledHttpTransport;
+import com.sangupta.socialcount.metrics.ProviderMetrics;
+import com.sangupta.socialcount.provider.AbstractSocialCountProvider;
+import com.sangupta.socialcount.provider.ProviderRequest;
+import com.sangupta.socialcount.provider.ProviderResponse;
+import com.sangupta.socialcount.provider.ProviderSlots;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * Tests for {@link SocialCountClient} that run against a stub transport
+ * serving canned provider responses, and thus need no network access.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSocialCountClient {
+	
+	private SocialCountClient client;
+	
+	private StubTransport transport;
+	
+	@Before
+	public void setup() {
+		this.transport = new StubTransport();
+		this.client = new SocialCountClient(6);
+		this.client.setTransport(this.transport);
+	}
+	
+	@After
+	public void teardown() {
+		this.client.close();
+	}
+	
+	@Test
+	public void testAllProviders() {
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		assertStubCounts(counts);
+	}
+	
+	@Test
+	public void testSequential() {
+		SocialCounts counts = this.client.fetchSequential("http://example.com/page", new SocialCountConfig());
+		assertStubCounts(counts);
+	}
+	
+	@Test
+	public void testConfig() {
+		SocialCountConfig config = new SocialCountConfig();
+		config.facebook = false;
+		config.googleShares = false;
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page", config);
+		Assert.assertEquals(42, counts.twitter);
+		Assert.assertEquals(-1, counts.facebookShares);
+		Assert.assertEquals(-1, counts.googleShares);
+	}
+	
+	@Test
+	public void testSharedPool() {
+		for(int index = 0; index < 20; index++) {
+			assertStubCounts(this.client.fetch("http://example.com/page" + index));
+		}
+		
+		// every fetch runs on the same bounded pool of the client
+		Assert.assertTrue(this.transport.threads.size() <= 6);
+		String prefix = this.transport.threads.iterator().next();
+		prefix = prefix.substring(0, prefix.lastIndexOf('-') + 1);
+		for(String thread : this.transport.threads) {
+			Assert.assertTrue(thread, thread.startsWith(prefix));
+		}
+	}
+	
+	@Test
+	public void testAsync() {
+		this.transport.twitterDelay = 200;
+		
+		// hands back right away, while the provider is still being hit
+		CompletableFuture<SocialCounts> future = this.client.fetchAsync("http://example.com/page", twitterOnly());
+		Assert.assertFalse(future.isDone());
+		Assert.assertEquals(42, future.join().twitter);
+		
+		// a single provider fills in the given instance
+		SocialCounts counts = new SocialCounts("http://example.com/other");
+		Assert.assertSame(counts, this.client.getTwitterCountAsync(counts).join());
+		Assert.assertEquals(42, counts.twitter);
+		Assert.assertEquals(-1, counts.linkedinShares);
+	}
+	
+	@Test
+	public void testUnregister() {
+		Assert.assertTrue(this.client.unregister(SocialCountClient.TWITTER));
+		Assert.assertFalse(this.client.unregister(SocialCountClient.TWITTER));
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(5, counts.linkedinShares);
+	}
+	
+	@Test
+	public void testCustomProvider() {
+		this.client.unregister(SocialCountClient.PINTEREST);
+		this.client.register(new AbstractSocialCountProvider("pins") {
+			
+			@Override
+			public ProviderRequest buildRequest(SocialCounts counts) {
+				return ProviderRequest.get("http://api.pinterest.com/v1/urls/count.json?url=" + counts.url);
+			}
+			
+			@Override
+			public boolean parseResponse(SocialCounts counts, ProviderResponse response) {
+				counts.pinterestPins = 99;
+				return true;
+			}
+			
+			@Override
+			public void copyCounts(SocialCounts from, SocialCounts to) {
+				to.pinterestPins = from.pinterestPins;
+			}
+			
+		});
+		
+		// hit like any built-in provider
+		Assert.assertEquals("pins", this.client.getProvider("pins").getName());
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		Assert.assertEquals(99, counts.pinterestPins);
+		Assert.assertEquals(FetchStatus.OK, counts.getStatus("pins"));
+		Assert.assertEquals(42, counts.twitter);
+		
+		Assert.assertTrue(this.client.unregister("pins"));
+		Assert.assertEquals(-1, this.client.fetch("http://example.com/other").pinterestPins);
+	}
+	
+	@Test
+	public void testBatch() {
+		this.client.setBatchWindow(3);
+		
+		Iterator<SocialCounts> results = this.client.fetchAll(Arrays.asList("http://a.com", "", "http://b.com", "http://c.com", "http://d.com", null), new SocialCountConfig());
+		int count = 0;
+		while(results.hasNext()) {
+			assertStubCounts(results.next());
+			count++;
+		}
+		
+		Assert.assertEquals(4, count);
+	}
+	
+	@Test
+	public void testBatchWindow() throws InterruptedException {
+		this.client.setBatchWindow(3);
+		
+		final AtomicInteger pulled = new AtomicInteger();
+		Iterator<String> urls = new Iterator<String>() {
+			
+			@Override
+			public boolean hasNext() {
+				return pulled.get() < 20;
+			}
+			
+			@Override
+			public String next() {
+				return "http://example.com/page" + pulled.incrementAndGet();
+			}
+			
+		};
+		
+		// URLs are only pulled as results are consumed
+		Iterator<SocialCounts> results = this.client.fetchAll(urls, twitterOnly());
+		Assert.assertEquals(0, pulled.get());
+		Assert.assertTrue(results.hasNext());
+		Thread.sleep(50);
+		Assert.assertEquals(3, pulled.get());
+		
+		int count = 0;
+		while(results.hasNext()) {
+			Assert.assertTrue(pulled.get() - count <= 3);
+			Assert.assertEquals(42, results.next().twitter);
+			count++;
+		}
+		
+		Assert.assertEquals(20, count);
+		
+		// the sink variant hands over every result
+		pulled.set(0);
+		Assert.assertEquals(20, this.client.fetchAll(urls, twitterOnly(), counts -> Assert.assertEquals(42, counts.twitter)));
+	}
+	
+	@Test
+	public void testMaxConcurrency() {
+		this.client.setMaxConcurrency(SocialCountClient.TWITTER, 2);
+		Assert.assertEquals(2, this.client.getMaxConcurrency(SocialCountClient.TWITTER));
+		this.transport.twitterDelay = 50;
+		
+		List<CompletableFuture<SocialCounts>> futures = new ArrayList<>();
+		for(int index = 0; index < 8; index++) {
+			futures.add(this.client.fetchAsync("http://example.com/page" + index, twitterOnly()));
+		}
+		
+		for(CompletableFuture<SocialCounts> future : futures) {
+			Assert.assertEquals(42, future.join().twitter);
+		}
+		
+		Assert.assertEquals(8, this.transport.twitterCalls.get());
+		Assert.assertEquals(2, this.transport.twitterPeak.get());
+		Assert.assertEquals(0, this.transport.twitterRunning.get());
+	}
+	
+	@Test
+	public void testBatchWithConcurrencyCap() {
+		this.client.setMaxConcurrency(SocialCountClient.TWITTER, 3);
+		this.transport.twitterDelay = 20;
+		
+		List<String> urls = new ArrayList<>();
+		for(int index = 0; index < 30; index++) {
+			urls.add("http://example.com/page" + index);
+		}
+		
+		// all URLs are let in, the calls above the cap wait for a slot
+		Iterator<SocialCounts> results = this.client.fetchAll(urls, twitterOnly());
+		int count = 0;
+		while(results.hasNext()) {
+			Assert.assertEquals(42, results.next().twitter);
+			count++;
+		}
+		
+		Assert.assertEquals(30, count);
+		Assert.assertEquals(30, this.transport.twitterCalls.get());
+		Assert.assertEquals(3, this.transport.twitterPeak.get());
+	}
+	
+	@Test
+	public void testCloseWithQueuedCalls() throws Exception {
+		this.client.setMaxConcurrency(SocialCountClient.TWITTER, 1);
+		this.transport.twitterDelay = 200;
+		
+		List<CompletableFuture<SocialCounts>> futures = new ArrayList<>();
+		for(int index = 0; index < 3; index++) {
+			futures.add(this.client.fetchAsync("http://example.com/page" + index, twitterOnly()));
+		}
+		
+		// the first call is running, the others wait for its slot
+		for(int index = 0; index < 100 && this.transport.twitterRunning.get() == 0; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertTrue(this.client.close(5, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(42, futures.get(0).get(1, TimeUnit.SECONDS).twitter);
+		Assert.assertEquals(-1, futures.get(1).get(1, TimeUnit.SECONDS).twitter);
+		Assert.assertEquals(-1, futures.get(2).get(1, TimeUnit.SECONDS).twitter);
+		Assert.assertEquals(1, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testTimeBudget() {
+		this.transport.twitterDelay = 2000;
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.timeBudget = 300;
+		
+		long start = System.currentTimeMillis();
+		SocialCounts counts = this.client.fetch("http://example.com/page", config);
+		Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+		
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(3, counts.facebookShares);
+		Assert.assertEquals(9, counts.pinterestPins);
+	}
+	
+	@Test
+	public void testNoValuesAfterTimeout() throws InterruptedException {
+		// values reach the caller slowly, so the budget elapses while copying
+		this.client.register(new TwitterProvider() {
+			
+			@Override
+			public void copyCounts(SocialCounts from, SocialCounts to) {
+				if(to.getStatus(SocialCountClient.TWITTER) == FetchStatus.OK) {
+					try {
+						Thread.sleep(200);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				
+				super.copyCounts(from, to);
+			}
+			
+		});
+		
+		SocialCountConfig config = twitterOnly();
+		config.timeBudget = 100;
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page", config);
+		long twitter = counts.twitter;
+		FetchStatus status = counts.getStatus(SocialCountClient.TWITTER);
+		
+		Thread.sleep(300);
+		
+		// counts handed to the caller are never written to afterwards
+		Assert.assertEquals(twitter, counts.twitter);
+		Assert.assertEquals(status, counts.getStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(status == FetchStatus.OK ? 42 : -1, counts.twitter);
+	}
+	
+	@Test
+	public void testProviderDeadline() {
+		this.transport.twitterDelay = 2000;
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.providerDeadline = 300;
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page", config);
+		Assert.assertTrue(counts.timeTaken < 1500);
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(5, counts.linkedinShares);
+	}
+	
+	@Test
+	public void testCache() {
+		this.client.setCache(new SocialCountCache(100));
+		
+		assertStubCounts(this.client.fetch("http://example.com/page"));
+		Assert.assertEquals(6, this.transport.calls.get());
+		
+		assertStubCounts(this.client.fetch("http://example.com/page"));
+		Assert.assertEquals(6, this.transport.calls.get());
+	}
+	
+	@Test
+	public void testStaleWhileRevalidate() throws InterruptedException {
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setDefaultTtl(1);
+		this.client.setCache(cache);
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		Assert.assertFalse(counts.stale);
+		Assert.assertEquals(6, this.transport.calls.get());
+		
+		Thread.sleep(20);
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.staleWhileRevalidate = true;
+		
+		counts = this.client.fetch("http://example.com/page", config);
+		assertStubCounts(counts);
+		Assert.assertTrue(counts.stale);
+		Assert.assertTrue(counts.getStaleAge() >= 20);
+		
+		// the refresh happens in the background
+		for(int index = 0; index < 100 && this.transport.calls.get() < 12; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(12, this.transport.calls.get());
+		Assert.assertEquals(6, cache.getStaleHitCount());
+	}
+	
+	@Test
+	public void testRateLimit() {
+		this.client.setRateLimit(SocialCountClient.TWITTER, 0.1, 1).setFailFast(true);
+		
+		assertStubCounts(this.client.fetch("http://example.com/a"));
+		
+		SocialCounts counts = this.client.fetch("http://example.com/b");
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(5, counts.linkedinShares);
+		Assert.assertEquals(1, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testCloseWhileWaitingForPermit() throws Exception {
+		this.client.setRateLimit(SocialCountClient.TWITTER, 0.5, 1);
+		Assert.assertEquals(42, this.client.fetch("http://example.com/a", twitterOnly()).twitter);
+		
+		// the next permit is two seconds away
+		CompletableFuture<SocialCounts> future = this.client.fetchAsync("http://example.com/b", twitterOnly());
+		this.client.close();
+		
+		Assert.assertEquals(-1, future.get(1, TimeUnit.SECONDS).twitter);
+		Assert.assertEquals(1, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testCircuitBreaker() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2);
+		this.client.setCircuitBreaker(SocialCountClient.TWITTER, breaker);
+		this.transport.twitterDelay = 2000;
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.providerDeadline = 100;
+		
+		for(int index = 0; index < 2; index++) {
+			SocialCounts counts = this.client.fetchSequential("http://example.com/page" + index, config);
+			Assert.assertEquals(-1, counts.twitter);
+			Assert.assertFalse(counts.isSkipped(SocialCountClient.TWITTER));
+		}
+		
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertTrue(counts.isSkipped(SocialCountClient.TWITTER));
+		Assert.assertFalse(counts.isSkipped(SocialCountClient.LINKEDIN));
+		Assert.assertEquals(5, counts.linkedinShares);
+		Assert.assertEquals(2, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testCircuitBreakerTrials() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2);
+		breaker.setOpenDuration(300);
+		breaker.onFailure();
+		breaker.onFailure();
+		this.client.setCircuitBreaker(SocialCountClient.TWITTER, breaker);
+		
+		Thread.sleep(350);
+		
+		// fetches joining one call take up a single trial
+		this.transport.twitterDelay = 50;
+		List<CompletableFuture<SocialCounts>> futures = new ArrayList<>();
+		for(int index = 0; index < 3; index++) {
+			futures.add(this.client.fetchAsync("http://example.com/page", twitterOnly()));
+		}
+		
+		for(CompletableFuture<SocialCounts> future : futures) {
+			Assert.assertEquals(42, future.join().twitter);
+		}
+		
+		Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		
+		for(int index = 0; index < 2; index++) {
+			Assert.assertEquals(42, this.client.fetch("http://example.com/page" + index, twitterOnly()).twitter);
+		}
+		
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		Assert.assertEquals(3, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testHedging() throws InterruptedException {
+		this.client.setHedgePercentile(SocialCountClient.TWITTER, 90);
+		for(int index = 0; index < 20; index++) {
+			assertStubCounts(this.client.fetch("http://example.com/page" + index));
+		}
+		
+		this.transport.twitterDelay = 3000;
+		this.transport.slowTwitterCalls.set(1);
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page");
+		assertStubCounts(counts);
+		Assert.assertTrue(counts.timeTaken < 1500);
+		Assert.assertEquals(22, this.transport.twitterCalls.get());
+		
+		// the slow attempt is aborted instead of running for its full delay
+		for(int index = 0; index < 100 && this.transport.twitterRunning.get() > 0; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(0, this.transport.twitterRunning.get());
+		Assert.assertEquals(1, this.transport.twitterAborts.get());
+	}
+	
+	@Test
+	public void testStatus() {
+		this.client.setCache(new SocialCountCache(100));
+		this.transport.twitterDelay = 2000;
+		this.transport.pinterestStatus = 503;
+		this.transport.linkedinBody = "<html>";
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.providerDeadline = 100;
+		
+		SocialCounts counts = this.client.fetch("http://example.com/page", config);
+		Assert.assertEquals(FetchStatus.TIMEOUT, counts.getStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(FetchStatus.HTTP_ERROR, counts.getStatus(SocialCountClient.PINTEREST));
+		Assert.assertEquals(503, counts.getHttpStatus(SocialCountClient.PINTEREST));
+		Assert.assertEquals(FetchStatus.PARSE_ERROR, counts.getStatus(SocialCountClient.LINKEDIN));
+		Assert.assertEquals(FetchStatus.OK, counts.getStatus(SocialCountClient.FACEBOOK));
+		Assert.assertEquals(200, counts.getHttpStatus(SocialCountClient.FACEBOOK));
+		Assert.assertTrue(counts.getLatency(SocialCountClient.TWITTER) >= 90);
+		
+		// reading an unknown provider assigns it no slot
+		int slots = ProviderSlots.size();
+		Assert.assertEquals(FetchStatus.NONE, counts.getStatus("no-such-provider"));
+		Assert.assertEquals(0, counts.getHttpStatus("no-such-provider"));
+		Assert.assertEquals(0, counts.getLatency("no-such-provider"));
+		Assert.assertEquals(slots, ProviderSlots.size());
+		
+		config.twitter = false;
+		counts = this.client.fetch("http://example.com/page", config);
+		Assert.assertEquals(FetchStatus.NONE, counts.getStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(FetchStatus.CACHED, counts.getStatus(SocialCountClient.FACEBOOK));
+		Assert.assertEquals(FetchStatus.HTTP_ERROR, counts.getStatus(SocialCountClient.PINTEREST));
+	}
+	
+	@Test
+	public void testMetrics() {
+		this.transport.pinterestStatus = 503;
+		
+		for(int index = 0; index < 3; index++) {
+			this.client.fetch("http://example.com/page" + index);
+		}
+		
+		ProviderMetrics twitter = this.client.getMetrics().forProvider(SocialCountClient.TWITTER);
+		Assert.assertEquals(3, twitter.getRequestCount());
+		Assert.assertEquals(3, twitter.getSuccessCount());
+		Assert.assertEquals(0, twitter.getInFlight());
+		Assert.assertEquals(3, twitter.getLatencyHistogram().getCount());
+		Assert.assertTrue(twitter.getBytesReceived() > 0);
+		
+		ProviderMetrics pinterest = this.client.getMetrics().forProvider(SocialCountClient.PINTEREST);
+		Assert.assertEquals(3, pinterest.getFailureCount());
+		Assert.assertEquals(0, pinterest.getSuccessCount());
+	}
+	
+	@Test
+	public void testCoalescing() {
+		this.transport.twitterDelay = 300;
+		
+		List<CompletableFuture<SocialCounts>> futures = new ArrayList<>();
+		for(int index = 0; index < 10; index++) {
+			futures.add(this.client.fetchAsync("http://example.com/page"));
+		}
+		
+		for(CompletableFuture<SocialCounts> future : futures) {
+			assertStubCounts(future.join());
+		}
+		
+		Assert.assertEquals(1, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testCoalescingWithBudget() {
+		this.transport.twitterDelay = 300;
+		
+		SocialCountConfig config = twitterOnly();
+		config.timeBudget = 100;
+		
+		// the budget of the first fetch does not bind the one joining it
+		CompletableFuture<SocialCounts> hurried = this.client.fetchAsync("http://example.com/page", config);
+		CompletableFuture<SocialCounts> patient = this.client.fetchAsync("http://example.com/page", twitterOnly());
+		
+		SocialCounts counts = hurried.join();
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(FetchStatus.TIMEOUT, counts.getStatus(SocialCountClient.TWITTER));
+		
+		counts = patient.join();
+		Assert.assertEquals(42, counts.twitter);
+		Assert.assertEquals(FetchStatus.OK, counts.getStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(1, this.transport.twitterCalls.get());
+	}
+	
+	@Test
+	public void testVirtualThreads()throws InterruptedException {
+		SocialCountClient client = new SocialCountClient(ExecutionMode.VIRTUAL);
+		try {
+			// falls back to platform threads before Java 21
+			Assert.assertEquals(ExecutionMode.VIRTUAL.isSupported() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM, client.getExecutionMode());
+			
+			client.setTransport(this.transport);
+			client.setMaxConcurrency(SocialCountClient.TWITTER, 1000);
+			this.transport.twitterDelay = 100;
+			this.transport.slowTwitterCalls.set(Integer.MAX_VALUE);
+			
+			List<String> urls = new ArrayList<>();
+			for(int index = 0; index < 500; index++) {
+				urls.add("http://example.com/" + index);
+			}
+			
+			SocialCountConfig config = new SocialCountConfig();
+			config.facebook = config.googlePlusOne = config.googleShares = config.linkedin = config.pinterest = false;
+			
+			long start = System.currentTimeMillis();
+			Iterator<SocialCounts> results = client.fetchAll(urls, config);
+			while(results.hasNext()) {
+				Assert.assertEquals(42, results.next().twitter);
+			}
+			
+			// all calls wait out their delay at the same time
+			if(client.getExecutionMode() == ExecutionMode.VIRTUAL) {
+				Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+			}
+		} finally {
+			Assert.assertTrue(client.close(5, TimeUnit.SECONDS));
+		}
+	}
+	
+	@Test
+	public void testTransportSizing() {
+		SocialCountClient client = new SocialCountClient(1);
+		try {
+			PooledHttpTransport transport = (PooledHttpTransport) client.getTransport();
+			Assert.assertEquals(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST, transport.getMaxConnectionsPerHost());
+			Assert.assertEquals(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS, transport.getMaxConnections());
+			
+			// the pool follows the concurrency caps
+			client.setMaxConcurrency(SocialCountClient.TWITTER, 2000);
+			Assert.assertEquals(2000, transport.getMaxConnectionsPerHost());
+			Assert.assertTrue(transport.getMaxConnections() >= 2000);
+		} finally {
+			client.close();
+		}
+	}
+	
+	@Test
+	public void testBatchingNeedsBatchMethods() {
+		SocialCountClient client = new SocialCountClient(1);
+		try {
+			// claims to batch, but leaves the batch methods to the defaults
+			client.register(new TwitterProvider() {
+				
+				@Override
+				public int getMaxBatchSize() {
+					return 10;
+				}
+				
+			});
+			
+			try {
+				client.setBatching(SocialCountClient.TWITTER, 10, 100);
+				Assert.fail("Batching turned on for a provider without batch methods");
+			} catch(IllegalArgumentException e) {
+				// expected
+			}
+			
+			Assert.assertEquals(1, client.getBatchSize(SocialCountClient.TWITTER));
+			
+			// a provider that implements them may batch
+			client.setBatching(SocialCountClient.FACEBOOK, 10, 100);
+			Assert.assertEquals(10, client.getBatchSize(SocialCountClient.FACEBOOK));
+		} finally {
+			client.close();
+		}
+	}
+	
+	private static SocialCountConfig twitterOnly() {
+		SocialCountConfig config = new SocialCountConfig();
+		config.facebook = config.googlePlusOne = config.googleShares = config.linkedin = config.pinterest = false;
+		return config;
+	}
+	
+	private static void assertStubCounts(SocialCounts counts) {
+		Assert.assertEquals(42, counts.twitter);
+		Assert.assertEquals(1, counts.facebookLikes);
+		Assert.assertEquals(2, counts.facebookClicks);
+		Assert.assertEquals(3, counts.facebookShares);
+		Assert.assertEquals(4, counts.facebookComments);
+		Assert.assertEquals(7, counts.googlePlusOne);
+		Assert.assertEquals(13, counts.googleShares);
+		Assert.assertEquals(5, counts.linkedinShares);
+		Assert.assertEquals(9, counts.pinterestPins);
+	}
+	
+	/**
+	 * Serves canned responses based on the endpoint being hit.
+	 * 
+	 */
+	private static class StubTransport implements HttpTransport {
+		
+		final AtomicInteger calls = new AtomicInteger();
+		
+		/**
+		 * Names of the threads the calls were made on
+		 */
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+		
+		final AtomicInteger twitterCalls = new AtomicInteger();
+		
+		final AtomicInteger twitterRunning = new AtomicInteger();
+		
+		final AtomicInteger twitterPeak = new AtomicInteger();
+		
+		final AtomicInteger twitterAborts = new AtomicInteger();
+		
+		volatile long twitterDelay;
+		
+		final AtomicInteger slowTwitterCalls = new AtomicInteger(Integer.MAX_VALUE);
+		
+		volatile int pinterestStatus = 200;
+		
+		volatile String linkedinBody = "showCount({\"count\":5,\"fCnt\":\"5\",\"fCntPlusOne\":\"6\",\"url\":\"http://example.com/\"});";
+		
+		@Override
+		public ProviderResponse execute(ProviderRequest request, int readTimeout) throws IOException {
+			return this.execute(request, readTimeout, null);
+		}
+		
+		@Override
+		public ProviderResponse execute(ProviderRequest request, int readTimeout, CompletableFuture<?> abort) throws IOException {
+			this.calls.incrementAndGet();
+			this.threads.add(Thread.currentThread().getName());
+			
+			String body;
+			if(request.url.startsWith("https://cdn.api.twitter.com/")) {
+				this.twitterCalls.incrementAndGet();
+				int running = this.twitterRunning.incrementAndGet();
+				this.twitterPeak.accumulateAndGet(running, Math::max);
+				try {
+					long delay = this.slowTwitterCalls.getAndDecrement() > 0 ? this.twitterDelay : 0;
+					if(!sleep(Math.min(delay, readTimeout), abort)) {
+						this.twitterAborts.incrementAndGet();
+						throw new InterruptedIOException("Request aborted");
+					}
+					
+					if(delay > readTimeout) {
+						throw new SocketTimeoutException("Read timed out");
+					}
+				} finally {
+					this.twitterRunning.decrementAndGet();
+				}
+				
+				body = "{\"count\":42,\"url\":\"http://example.com/\"}";
+			} else if(request.url.startsWith("http://graph.facebook.com/")) {
+				body = "{\"data\":[{\"url\":\"http://example.com/\",\"like_count\":1,\"click_count\":2,\"share_count\":3,\"comment_count\":4}]}";
+			} else if(request.url.startsWith("https://clients6.google.com/")) {
+				body = "{\"id\":\"p\",\"result\":{\"kind\":\"pos#plusones\",\"id\":\"http://example.com/\",\"isSetByViewer\":false,\"metadata\":{\"type\":\"URL\",\"globalCounts\":{\"count\":7.0}}}}";
+			} else if(request.url.startsWith("https://plus.google.com/")) {
+				body = "<html><body><div>Shared</div><div>13 public shares</div></body></html>";
+			} else if(request.url.startsWith("http://www.linkedin.com/")) {
+				body = this.linkedinBody;
+			} else if(request.url.startsWith("http://api.pinterest.com/")) {
+				if(this.pinterestStatus != 200) {
+					return new ProviderResponse(this.pinterestStatus, new ByteArrayInputStream(new byte[0]), null);
+				}
+				
+				body = "showCount({\"count\":9,\"url\":\"http://example.com/\"})";
+			} else {
+				return new ProviderResponse(404, new ByteArrayInputStream(new byte[0]), null);
+			}
+			
+			return new ProviderResponse(200, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+		
+		private static boolean sleep(long millis, CompletableFuture<?> abort) {
+			long end = System.currentTimeMillis() + millis;
+			try {
+				while(System.currentTimeMillis() < end) {
+					if(abort != null && abort.isDone()) {
+						return false;
+					}
+					
+					Thread.sleep(Math.min(10, Math.max(1, end - System.currentTimeMillis())));
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			return true;
+		}
+		
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link UrlCanonicalizer}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestUrlCanonicalizer {
+	
+	private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+	
+	@Test
+	public void testSchemeAndHost() {
+		Assert.assertEquals("http://x.com/a", this.canonicalizer.canonicalize("x.com/a"));
+		Assert.assertEquals("http://x.com/a", this.canonicalizer.canonicalize("//x.com/a"));
+		Assert.assertEquals("http://x.com/A", this.canonicalizer.canonicalize("HTTP://X.Com:80/A/"));
+		Assert.assertEquals("https://x.com/", this.canonicalizer.canonicalize("https://x.com:443"));
+		Assert.assertEquals("https://x.com:8443/", this.canonicalizer.canonicalize("https://x.com:8443/"));
+		Assert.assertEquals("http://User@x.com/", this.canonicalizer.canonicalize(" http://User@X.COM./ "));
+		Assert.assertEquals("http://[::1]:8080/a", this.canonicalizer.canonicalize("http://[::1]:8080/a"));
+	}
+	
+	@Test
+	public void testQueryAndFragment() {
+		Assert.assertEquals("http://x.com/a", this.canonicalizer.canonicalize("x.com/a?utm_source=tw&UTM_medium=social#top"));
+		Assert.assertEquals("http://x.com/a?b=2&c=1&c=3", this.canonicalizer.canonicalize("http://x.com/a/?c=1&fbclid=abc&b=2&&c=3"));
+		Assert.assertEquals("http://x.com/?q=1#!/route", this.canonicalizer.canonicalize("http://x.com?q=1#!/route"));
+		
+		// query values that look like URLs are left alone
+		Assert.assertEquals("http://x.com/share?u=http://y.com/", this.canonicalizer.canonicalize("x.com/share?u=http://y.com/"));
+	}
+	
+	@Test
+	public void testConfiguration() {
+		UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+		canonicalizer.setTrackingParameters(Arrays.asList("ref"));
+		canonicalizer.setSortParameters(false);
+		canonicalizer.setRemoveTrailingSlash(false);
+		canonicalizer.setDefaultScheme("https");
+		
+		Assert.assertEquals("https://x.com/a/?utm_source=tw&b=1", canonicalizer.canonicalize("x.com/a/?utm_source=tw&ref=home&b=1"));
+	}
+	
+	@Test
+	public void testSameInstance() {
+		String url = "http://x.com/a?b=1&c=2";
+		Assert.assertSame(url, this.canonicalizer.canonicalize(url));
+	}
+	
+	@Test
+	public void testClientKey() {
+		SocialCountClient client = new SocialCountClient(1);
+		try {
+			Assert.assertEquals("http://x.com/a", client.canonicalize("X.com/a/?utm_campaign=launch"));
+			
+			client.setCanonicalizer(null);
+			Assert.assertEquals("X.com/a/", client.canonicalize("X.com/a/"));
+		} finally {
+			client.close();
+		}
+	}
+
+}
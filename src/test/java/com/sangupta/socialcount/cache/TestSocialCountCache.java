@@ -0,0 +1,116 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * Tests for {@link SocialCountCache}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSocialCountCache {
+	
+	private final TwitterProvider twitter = new TwitterProvider();
+	
+	private final FacebookProvider facebook = new FacebookProvider();
+	
+	@Test
+	public void testReadWrite() {
+		SocialCountCache cache = new SocialCountCache(100);
+		
+		SocialCounts fetched = new SocialCounts("http://example.com");
+		fetched.twitter = 10;
+		fetched.facebookShares = 20;
+		cache.write(fetched.url, this.twitter, fetched);
+		
+		SocialCounts counts = new SocialCounts("http://example.com");
+		Assert.assertTrue(cache.read(counts.url, this.twitter, counts));
+		Assert.assertEquals(10, counts.twitter);
+		
+		// facebook values were never cached
+		Assert.assertFalse(cache.read(counts.url, this.facebook, counts));
+		Assert.assertEquals(-1, counts.facebookShares);
+		
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(0.5, cache.getHitRate(), 0.001);
+	}
+	
+	@Test
+	public void testPerProviderTtl() throws Exception {
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setTtl(TwitterProvider.NAME, 50);
+		
+		SocialCounts fetched = new SocialCounts("http://example.com");
+		fetched.twitter = 10;
+		fetched.facebookShares = 20;
+		cache.write(fetched.url, this.twitter, fetched);
+		cache.write(fetched.url, this.facebook, fetched);
+		
+		Thread.sleep(100);
+		
+		SocialCounts counts = new SocialCounts("http://example.com");
+		Assert.assertFalse(cache.read(counts.url, this.twitter, counts));
+		Assert.assertTrue(cache.read(counts.url, this.facebook, counts));
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(20, counts.facebookShares);
+	}
+	
+	@Test
+	public void testEviction() {
+		SocialCountCache cache = new SocialCountCache(16);
+		for(int index = 0; index < 1000; index++) {
+			SocialCounts fetched = new SocialCounts("http://example.com/" + index);
+			cache.write(fetched.url, this.twitter, fetched);
+		}
+		
+		Assert.assertTrue(cache.size() <= 16);
+		Assert.assertEquals(1000 - cache.size(), cache.getEvictionCount());
+	}
+	
+	@Test
+	public void testOlderValuesIgnored() throws Exception {
+		SocialCountCache cache = new SocialCountCache(100);
+		
+		SocialCounts older = new SocialCounts("http://example.com");
+		older.twitter = 1;
+		Thread.sleep(5);
+		
+		SocialCounts newer = new SocialCounts("http://example.com");
+		newer.twitter = 2;
+		
+		cache.write(newer.url, this.twitter, newer);
+		cache.write(older.url, this.twitter, older);
+		
+		SocialCounts counts = new SocialCounts("http://example.com");
+		Assert.assertTrue(cache.read(counts.url, this.twitter, counts));
+		Assert.assertEquals(2, counts.twitter);
+	}
+
+}
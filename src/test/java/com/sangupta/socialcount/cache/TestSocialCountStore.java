@@ -0,0 +1,216 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.FacebookProvider;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * Tests for {@link SocialCountStore}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSocialCountStore {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final TwitterProvider twitter = new TwitterProvider();
+	
+	private final FacebookProvider facebook = new FacebookProvider();
+	
+	@Test
+	public void testWarmRestart() throws IOException {
+		File file = new File(this.folder.getRoot(), "counts.db");
+		
+		SocialCountStore store = new SocialCountStore(file);
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setStore(store);
+		
+		for(int index = 0; index < 10; index++) {
+			SocialCounts fetched = new SocialCounts("http://example.com/" + index);
+			fetched.twitter = index;
+			fetched.facebookShares = index * 10;
+			cache.write(fetched.url, this.twitter, fetched);
+			cache.write(fetched.url, this.facebook, fetched);
+		}
+		
+		store.close();
+		
+		// a torn record left by a crash is dropped
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length());
+			raf.writeInt(100);
+			raf.writeInt(7);
+		}
+		
+		store = new SocialCountStore(file);
+		SocialCountCache warm = new SocialCountCache(100);
+		Assert.assertEquals(10, store.load(warm));
+		
+		SocialCounts counts = new SocialCounts("http://example.com/7");
+		Assert.assertTrue(warm.read(counts.url, this.twitter, counts));
+		Assert.assertTrue(warm.read(counts.url, this.facebook, counts));
+		Assert.assertEquals(7, counts.twitter);
+		Assert.assertEquals(70, counts.facebookShares);
+		
+		// expiry still follows the original fetch time
+		warm.setTtl(TwitterProvider.NAME, 0);
+		Assert.assertFalse(warm.read(counts.url, this.twitter, counts));
+		
+		store.close();
+	}
+	
+	@Test
+	public void testTimedFlush() throws IOException, InterruptedException {
+		File file = new File(this.folder.getRoot(), "counts.db");
+		
+		SocialCountStore store = new SocialCountStore(file);
+		store.setFlushInterval(50);
+		store.flush();
+		
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setStore(store);
+		
+		long empty = file.length();
+		SocialCounts fetched = new SocialCounts("http://example.com/");
+		fetched.twitter = 42;
+		cache.write(fetched.url, this.twitter, fetched);
+		Assert.assertEquals(empty, file.length());
+		
+		// written out without any further append
+		for(int index = 0; index < 100 && file.length() == empty; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(store.size(), file.length());
+		store.close();
+	}
+	
+	@Test
+	public void testAppendDoesNotWrite() throws IOException, InterruptedException {
+		File file = new File(this.folder.getRoot(), "counts.db");
+		
+		SocialCountStore store = new SocialCountStore(file);
+		store.setFlushInterval(0);
+		store.flush();
+		
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setStore(store);
+		
+		// the flush is due, yet left to the flusher, which waits for the lock
+		long empty = file.length();
+		synchronized(store) {
+			SocialCounts fetched = new SocialCounts("http://example.com/");
+			fetched.twitter = 42;
+			cache.write(fetched.url, this.twitter, fetched);
+			Assert.assertEquals(empty, file.length());
+		}
+		
+		for(int index = 0; index < 100 && file.length() == empty; index++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(store.size(), file.length());
+		store.close();
+	}
+	
+	@Test
+	public void testNotAStore() throws IOException {
+		File file = new File(this.folder.getRoot(), "counts.db");
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.writeBytes("not a store");
+		}
+		
+		File descriptors = new File("/proc/self/fd");
+		int open = descriptors.isDirectory() ? descriptors.list().length : 0;
+		for(int attempt = 0; attempt < 10; attempt++) {
+			try {
+				new SocialCountStore(file);
+				Assert.fail("Opened a file that is not a store");
+			} catch(IOException e) {
+				// expected
+			}
+		}
+		
+		// the log is closed again
+		if(descriptors.isDirectory()) {
+			Assert.assertTrue(descriptors.list().length < open + 10);
+		}
+		
+		Assert.assertEquals(11, file.length());
+		Assert.assertTrue(file.delete());
+	}
+	
+	@Test
+	public void testCompaction() throws IOException {
+		File file = new File(this.folder.getRoot(), "counts.db");
+		
+		SocialCountStore store = new SocialCountStore(file);
+		SocialCountCache cache = new SocialCountCache(100);
+		cache.setStore(store);
+		
+		for(int round = 0; round < 50; round++) {
+			for(int index = 0; index < 20; index++) {
+				SocialCounts fetched = new SocialCounts("http://example.com/" + index);
+				fetched.twitter = round;
+				cache.write(fetched.url, this.twitter, fetched);
+			}
+		}
+		
+		long size = store.size();
+		store.compact();
+		Assert.assertTrue(store.size() < size / 10);
+		
+		// writes after compaction go to the new log
+		SocialCounts fetched = new SocialCounts("http://example.com/new");
+		fetched.twitter = 99;
+		cache.write(fetched.url, this.twitter, fetched);
+		store.close();
+		
+		store = new SocialCountStore(file);
+		SocialCountCache warm = new SocialCountCache(100);
+		Assert.assertEquals(21, store.load(warm));
+		
+		SocialCounts counts = new SocialCounts("http://example.com/3");
+		Assert.assertTrue(warm.read(counts.url, this.twitter, counts));
+		Assert.assertEquals(49, counts.twitter);
+		
+		counts = new SocialCounts("http://example.com/new");
+		Assert.assertTrue(warm.read(counts.url, this.twitter, counts));
+		Assert.assertEquals(99, counts.twitter);
+		
+		store.close();
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.history;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.TwitterProvider;
+
+/**
+ * Tests for {@link CountHistory}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestCountHistory {
+	
+	private static final String URL = "http://example.com/";
+	
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+	
+	@Test
+	public void testQueries() {
+		CountHistory history = new CountHistory();
+		long now = System.currentTimeMillis();
+		
+		Assert.assertEquals(-1, history.getLatest(URL, CountType.TWITTER));
+		Assert.assertTrue(Double.isNaN(history.getGrowthRate(URL, CountType.TWITTER, HOUR)));
+		
+		// 100 tweets an hour over the last ten hours
+		for(int hour = 10; hour >= 0; hour--) {
+			SocialCounts counts = new SocialCounts(URL);
+			counts.twitter = 1000 - hour * 100;
+			counts.facebookShares = 50;
+			Assert.assertTrue(history.record(counts, TwitterProvider.NAME, now - hour * HOUR));
+		}
+		
+		Assert.assertEquals(1000, history.getLatest(URL, CountType.TWITTER));
+		Assert.assertEquals(-1, history.getLatest(URL, CountType.FACEBOOK_SHARES));
+		Assert.assertEquals(700, history.getValueAt(URL, CountType.TWITTER, now - 3 * HOUR + 1000));
+		Assert.assertEquals(-1, history.getValueAt(URL, CountType.TWITTER, now - 11 * HOUR));
+		
+		Assert.assertEquals(300, history.getDelta(URL, CountType.TWITTER, 3 * HOUR));
+		Assert.assertEquals(200, history.getDelta(URL, CountType.TWITTER, now - 5 * HOUR, now - 3 * HOUR));
+		Assert.assertEquals(100, history.getGrowthRate(URL, CountType.TWITTER, 4 * HOUR), 1);
+		
+		// history is only ten hours long
+		Assert.assertEquals(1000, history.getDelta(URL, CountType.TWITTER, 24 * HOUR));
+		Assert.assertEquals(100, history.getGrowthRate(URL, CountType.TWITTER, 24 * HOUR), 1);
+		
+		// unchanged and out of order samples take no space
+		SocialCounts counts = new SocialCounts(URL);
+		counts.twitter = 1000;
+		Assert.assertFalse(history.record(counts, null, now + HOUR));
+		counts.twitter = 2000;
+		Assert.assertFalse(history.record(counts, null, now - HOUR));
+		
+		// a drop in the count is kept as well
+		counts.twitter = 990;
+		Assert.assertTrue(history.record(counts, null, now + 1000));
+		Assert.assertEquals(990, history.getLatest(URL, CountType.TWITTER));
+	}
+	
+	@Test
+	public void testCanonicalUrls() {
+		CountHistory history = new CountHistory();
+		SocialCountClient client = new SocialCountClient();
+		client.setHistory(history);
+		Assert.assertSame(client.getCanonicalizer(), history.getCanonicalizer());
+		
+		// recorded by the client under the canonical URL
+		SocialCounts counts = new SocialCounts(client.canonicalize("HTTP://Example.com:80/?utm_source=tw"));
+		counts.twitter = 42;
+		Assert.assertTrue(history.record(counts, TwitterProvider.NAME, System.currentTimeMillis()));
+		
+		Assert.assertEquals(42, history.getLatest("http://example.com/#top", CountType.TWITTER));
+		Assert.assertEquals(42, history.getLatest(URL, CountType.TWITTER));
+		Assert.assertEquals(42, history.getValueAt("example.com", CountType.TWITTER, System.currentTimeMillis()));
+		
+		client.setCanonicalizer(null);
+		Assert.assertNull(history.getCanonicalizer());
+		Assert.assertEquals(-1, history.getLatest("http://example.com/#top", CountType.TWITTER));
+		
+		Assert.assertTrue(history.remove(URL));
+		client.close();
+	}
+	
+	@Test
+	public void testCompactness() {
+		CountHistory history = new CountHistory();
+		long start = System.currentTimeMillis() - 1000 * HOUR;
+		
+		SocialCounts counts = new SocialCounts(URL);
+		counts.facebookShares = counts.facebookLikes = counts.facebookComments = counts.facebookClicks = 0;
+		counts.twitter = counts.googlePlusOne = counts.linkedinShares = counts.pinterestPins = counts.googleShares = 0;
+		for(int hour = 0; hour < 1000; hour++) {
+			counts.twitter += 7;
+			counts.facebookShares += 40 + hour % 9;
+			Assert.assertTrue(history.record(counts, null, start + hour * HOUR));
+		}
+		
+		// first sample takes a dozen bytes, the rest five each
+		Assert.assertTrue(history.getSampleBytes() < 1000 * 5 + 20);
+		Assert.assertEquals(7000, history.getLatest(URL, CountType.TWITTER));
+		Assert.assertEquals(0, history.getLatest(URL, CountType.PINTEREST));
+		Assert.assertEquals(7 * 500, history.getValueAt(URL, CountType.TWITTER, start + 499 * HOUR));
+	}
+	
+	@Test
+	public void testRetention() {
+		CountHistory history = new CountHistory();
+		history.setRetention(100 * HOUR);
+		long start = System.currentTimeMillis() - 1000 * HOUR;
+		
+		SocialCounts counts = new SocialCounts(URL);
+		counts.pinterestPins = 500;
+		history.record(counts, null, start - HOUR);
+		
+		counts.pinterestPins = 0;
+		for(int hour = 0; hour < 1000; hour++) {
+			counts.twitter = hour * 1000;
+			history.record(counts, null, start + hour * HOUR);
+		}
+		
+		// old samples are dropped, folded into the oldest one kept
+		Assert.assertTrue(history.getSampleBytes() < 200 * 5);
+		Assert.assertEquals(-1, history.getValueAt(URL, CountType.TWITTER, start + 10 * HOUR));
+		Assert.assertEquals(999000, history.getLatest(URL, CountType.TWITTER));
+		Assert.assertEquals(950000, history.getValueAt(URL, CountType.TWITTER, start + 950 * HOUR));
+		Assert.assertEquals(0, history.getLatest(URL, CountType.PINTEREST));
+		Assert.assertEquals(10000, history.getDelta(URL, CountType.TWITTER, start + 940 * HOUR, start + 950 * HOUR));
+	}
+
+}
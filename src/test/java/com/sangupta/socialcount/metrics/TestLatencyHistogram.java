@@ -0,0 +1,65 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestLatencyHistogram {
+	
+	@Test
+	public void testBuckets() {
+		long previous = -1;
+		for(long value = 0; value < 1000000; value += 7) {
+			int index = LatencyHistogram.indexOf(value);
+			long highest = LatencyHistogram.highestValueOf(index);
+			Assert.assertTrue(highest >= value);
+			Assert.assertTrue(highest - value <= value / 32);
+			Assert.assertTrue(index >= previous);
+			previous = index;
+		}
+	}
+	
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+		
+		for(int value = 1; value <= 10000; value++) {
+			histogram.record(value);
+		}
+		
+		Assert.assertEquals(10000, histogram.getCount());
+		Assert.assertEquals(10000, histogram.getMax());
+		Assert.assertEquals(5000.5, histogram.getMean(), 0.001);
+		Assert.assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.04);
+		Assert.assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.04);
+		Assert.assertEquals(10000, histogram.getValueAtPercentile(100));
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SocialCountMetrics}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSocialCountMetrics {
+	
+	@Test
+	public void testRegisterWhileRecording() throws Exception {
+		final SocialCountMetrics metrics = new SocialCountMetrics();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		
+		// providers appear while the MBeans are being registered
+		List<Thread> threads = new ArrayList<>();
+		for(int thread = 0; thread < 4; thread++) {
+			final int offset = thread;
+			threads.add(new Thread(() -> {
+				try {
+					for(int index = offset; index < 1000; index += 4) {
+						metrics.forProvider("provider-" + index).callSkipped();
+					}
+				} catch(Throwable t) {
+					failure.set(t);
+				}
+			}));
+		}
+		
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		
+		try {
+			for(Thread thread : threads) {
+				while(thread.isAlive()) {
+					metrics.registerMBeans("test-race");
+				}
+			}
+			
+			Assert.assertNull(failure.get());
+			Assert.assertEquals(1000, metrics.getProviders().size());
+			
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(1000, server.queryNames(new ObjectName(SocialCountMetrics.JMX_DOMAIN + ":client=\"test-race\",*"), null).size());
+		} finally {
+			metrics.unregisterMBeans();
+		}
+		
+		Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName(SocialCountMetrics.JMX_DOMAIN + ":client=\"test-race\",*"), null).isEmpty());
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Tests for the streaming response parsing of the providers.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestProviderParsing {
+	
+	@Test
+	public void testJson() throws IOException {
+		SocialCounts counts = new SocialCounts("http://example.com/");
+		
+		Assert.assertTrue(parse(new TwitterProvider(), counts, "{\"url\":\"http://example.com/\",\"count\":1234}"));
+		Assert.assertEquals(1234, counts.twitter);
+		
+		Assert.assertTrue(parse(new FacebookProvider(), counts, "{\"data\":[{\"url\":\"http://example.com/\",\"share_count\":4011,\"like_count\":8220,\"comment_count\":null,\"total_count\":13434,\"click_count\":\"265\"}]}"));
+		Assert.assertEquals(4011, counts.facebookShares);
+		Assert.assertEquals(8220, counts.facebookLikes);
+		Assert.assertEquals(0, counts.facebookComments);
+		Assert.assertEquals(265, counts.facebookClicks);
+		
+		Assert.assertTrue(parse(new GooglePlusOneProvider(), counts, "{\"id\":\"p\",\"result\":{\"kind\":\"pos#plusones\",\"metadata\":{\"type\":\"URL\",\"globalCounts\":{\"count\":3542.0}}}}"));
+		Assert.assertEquals(3542, counts.googlePlusOne);
+		
+		Assert.assertFalse(parse(new FacebookProvider(), counts, "{\"data\":[]}"));
+		Assert.assertFalse(parse(new GooglePlusOneProvider(), counts, "{\"error\":{\"code\":400}}"));
+	}
+	
+	@Test
+	public void testBatch() throws IOException {
+		SocialCounts first = new SocialCounts("http://example.com/1");
+		SocialCounts second = new SocialCounts("http://example.com/2");
+		SocialCounts third = new SocialCounts("http://example.com/3");
+		List<SocialCounts> batch = Arrays.asList(first, second, third);
+		
+		// rows out of order, and none for the third URL
+		boolean[] parsed = parseBatch(new FacebookProvider(), batch, "{\"data\":[{\"share_count\":20,\"url\":\"http://example.com/2\",\"like_count\":21},{\"url\":\"http://example.com/1\",\"share_count\":10,\"click_count\":11}]}");
+		Assert.assertEquals("[true, true, false]", Arrays.toString(parsed));
+		Assert.assertEquals(10, first.facebookShares);
+		Assert.assertEquals(11, first.facebookClicks);
+		Assert.assertEquals(20, second.facebookShares);
+		Assert.assertEquals(21, second.facebookLikes);
+		
+		// rows whose url is spelt differently go by position
+		third.facebookShares = 0;
+		parsed = parseBatch(new FacebookProvider(), batch, "{\"data\":[{\"url\":\"http://example.com/2\",\"share_count\":40},{\"url\":\"http://EXAMPLE.com/2\",\"share_count\":50},{\"url\":\"http://EXAMPLE.com/3\",\"share_count\":30}]}");
+		Assert.assertEquals("[false, true, true]", Arrays.toString(parsed));
+		Assert.assertEquals(40, second.facebookShares);
+		Assert.assertEquals(30, third.facebookShares);
+		
+		parsed = parseBatch(new GooglePlusOneProvider(), batch, "[{\"id\":\"2\",\"result\":{\"metadata\":{\"globalCounts\":{\"count\":3.0}}}},{\"result\":{\"metadata\":{\"type\":\"URL\",\"globalCounts\":{\"count\":1.0}},\"kind\":\"pos#plusones\"},\"id\":\"0\"},{\"id\":\"1\",\"error\":{\"code\":500}}]");
+		Assert.assertEquals("[true, false, true]", Arrays.toString(parsed));
+		Assert.assertEquals(1, first.googlePlusOne);
+		Assert.assertEquals(3, third.googlePlusOne);
+	}
+	
+	@Test
+	public void testJsonp() throws IOException {
+		SocialCounts counts = new SocialCounts("http://example.com/");
+		
+		Assert.assertTrue(parse(new LinkedinProvider(), counts, "showCount({\"count\":1502,\"fCnt\":\"1,502\",\"url\":\"http:\\/\\/example.com\\/\"});"));
+		Assert.assertEquals(1502, counts.linkedinShares);
+		
+		Assert.assertTrue(parse(new PinterestProvider(), counts, "receiveCount({\"url\":\"http://example.com/\",\"count\":677})"));
+		Assert.assertEquals(677, counts.pinterestPins);
+		
+		// no callback at all
+		Assert.assertTrue(parse(new PinterestProvider(), counts, "{\"count\":5}"));
+		Assert.assertEquals(5, counts.pinterestPins);
+		
+		Assert.assertFalse(parse(new LinkedinProvider(), counts, "showCount"));
+	}
+	
+	@Test
+	public void testRipple() throws IOException {
+		SocialCounts counts = new SocialCounts("http://example.com/");
+		GoogleSharesProvider provider = new GoogleSharesProvider();
+		
+		Assert.assertTrue(parse(provider, counts, "<html><div>Shared</div><div> 2142 public shares</div></html>"));
+		Assert.assertEquals(2142, counts.googleShares);
+		
+		// marker straddles the read buffer, after a page of markup
+		StringBuilder page = new StringBuilder("<html><div>12 people</div>");
+		while(page.length() < 4090) {
+			page.append("<span>x</span>");
+		}
+		
+		page.setLength(4090);
+		page.append("<div>77 public shares</div></html>");
+		Assert.assertTrue(parse(provider, counts, page.toString()));
+		Assert.assertEquals(77, counts.googleShares);
+		
+		Assert.assertFalse(parse(provider, counts, "<div>no public shares</div>"));
+		
+		// the count is past the cap
+		provider.setMaxBytes(1024);
+		Assert.assertFalse(parse(provider, counts, page.toString()));
+	}
+	
+	private static boolean parse(SocialCountProvider provider, SocialCounts counts, String body) throws IOException {
+		try(ProviderResponse response = new ProviderResponse(200, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null)) {
+			return provider.parseResponse(counts, response);
+		}
+	}
+	
+	private static boolean[] parseBatch(SocialCountProvider provider, List<SocialCounts> batch, String body) throws IOException {
+		try(ProviderResponse response = new ProviderResponse(200, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null)) {
+			return provider.parseBatchResponse(batch, response);
+		}
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.refresh;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.socialcount.CircuitBreaker;
+import com.sangupta.socialcount.RateLimiter;
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+import com.sangupta.socialcount.provider.AbstractSocialCountProvider;
+import com.sangupta.socialcount.provider.SocialCountProvider;
+import com.sangupta.socialcount.simulator.ProviderSimulator;
+
+/**
+ * Tests for {@link RefreshScheduler}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestRefreshScheduler {
+	
+	private static final String URL = "http://example.com/article";
+	
+	private ProviderSimulator simulator;
+	
+	private SocialCountClient client;
+	
+	private RefreshScheduler scheduler;
+	
+	@Before
+	public void setup() throws IOException {
+		this.simulator = new ProviderSimulator();
+		this.client = new SocialCountClient(6);
+		this.simulator.attach(this.client);
+		this.scheduler = new RefreshScheduler(this.client);
+	}
+	
+	@After
+	public void teardown() {
+		this.scheduler.close();
+		this.client.close();
+		this.simulator.close();
+	}
+	
+	@Test
+	public void testInterval() {
+		long day = TimeUnit.DAYS.toMillis(1);
+		
+		// young URLs are refreshed often, old ones rarely
+		Assert.assertEquals(RefreshScheduler.DEFAULT_MIN_INTERVAL, this.scheduler.getInterval(TimeUnit.MINUTES.toMillis(5), -1));
+		Assert.assertEquals(TimeUnit.HOURS.toMillis(1), this.scheduler.getInterval(TimeUnit.MINUTES.toMillis(600), -1));
+		Assert.assertEquals(RefreshScheduler.DEFAULT_MAX_INTERVAL, this.scheduler.getInterval(30 * day, 0));
+		
+		// unless they are moving fast
+		Assert.assertEquals(TimeUnit.MINUTES.toMillis(5), this.scheduler.getInterval(30 * day, 600));
+	}
+	
+	@Test
+	public void testRefresh() throws InterruptedException {
+		this.scheduler.setMinInterval(20);
+		this.scheduler.setMaxInterval(20);
+		this.scheduler.setBudget(SocialCountClient.TWITTER, 0.001, 1);
+		
+		final AtomicLong linkedin = new AtomicLong();
+		this.scheduler.setListener(counts -> linkedin.set(counts.linkedinShares));
+		
+		Assert.assertTrue(this.scheduler.track(URL, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+		Assert.assertFalse(this.scheduler.track(URL));
+		Assert.assertTrue(this.scheduler.isTracked(URL));
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while(this.scheduler.getRefreshCount() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertTrue(this.scheduler.getRefreshCount() >= 3);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.LINKEDIN, URL), linkedin.get());
+		Assert.assertEquals(0, this.scheduler.getVelocity(URL), 0);
+		
+		// twitter is over budget after the first refresh
+		Assert.assertEquals(1, this.simulator.getRequestCount(SocialCountClient.TWITTER));
+		Assert.assertTrue(this.simulator.getRequestCount(SocialCountClient.LINKEDIN) >= 3);
+		
+		Assert.assertTrue(this.scheduler.untrack(URL));
+		Assert.assertEquals(-1, this.scheduler.getNextRefresh(URL));
+		Assert.assertEquals(0, this.scheduler.size());
+	}
+	
+	@Test
+	public void testOpenBreakerSpendsNoBudget() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1);
+		breaker.onFailure();
+		this.client.setCircuitBreaker(SocialCountClient.TWITTER, breaker);
+		
+		RateLimiter budget = this.scheduler.setBudget(SocialCountClient.TWITTER, 0.001, 1);
+		this.scheduler.track(URL);
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while(this.scheduler.getRefreshCount() < 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(1, this.scheduler.getRefreshCount());
+		Assert.assertEquals(0, this.simulator.getRequestCount(SocialCountClient.TWITTER));
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertTrue(budget.tryAcquire());
+	}
+	
+	@Test
+	public void testAllProvidersOpen() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1);
+		breaker.onFailure();
+		this.client.setCircuitBreaker(SocialCountClient.TWITTER, breaker);
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.facebook = config.googlePlusOne = config.googleShares = config.linkedin = config.pinterest = false;
+		this.scheduler.setConfig(config);
+		this.scheduler.setMinInterval(20);
+		
+		final AtomicInteger notified = new AtomicInteger();
+		this.scheduler.setListener(counts -> notified.incrementAndGet());
+		
+		long start = System.currentTimeMillis();
+		this.scheduler.track(URL, start - TimeUnit.DAYS.toMillis(1));
+		Thread.sleep(200);
+		
+		// nothing was refreshed - the URL is retried soon, at the same pace
+		Assert.assertEquals(0, this.scheduler.getRefreshCount());
+		Assert.assertEquals(0, notified.get());
+		Assert.assertEquals(-1, this.scheduler.getVelocity(URL), 0);
+		Assert.assertTrue(this.scheduler.getNextRefresh(URL) <= System.currentTimeMillis() + 20);
+		Assert.assertEquals(0, this.simulator.getRequestCount(SocialCountClient.TWITTER));
+	}
+	
+	@Test
+	public void testStuckRefresh() throws InterruptedException {
+		final AtomicInteger calls = new AtomicInteger();
+		
+		// calls that never complete
+		SocialCountClient stuck = new SocialCountClient(1) {
+			
+			@Override
+			public CompletableFuture<SocialCounts> fetchAsync(SocialCounts counts, String provider) {
+				if(SocialCountClient.TWITTER.equals(provider)) {
+					calls.incrementAndGet();
+				}
+				
+				return new CompletableFuture<>();
+			}
+			
+		};
+		
+		for(SocialCountProvider provider : stuck.getProviders()) {
+			((AbstractSocialCountProvider) provider).setTimeout(50);
+		}
+		
+		RefreshScheduler scheduler = new RefreshScheduler(stuck, 1);
+		try {
+			scheduler.setMinInterval(20);
+			scheduler.track(URL);
+			
+			// the refresh is given up, and the URL retried
+			long deadline = System.currentTimeMillis() + 5000;
+			while(calls.get() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			
+			Assert.assertTrue(calls.get() >= 2);
+			Assert.assertEquals(0, scheduler.getRefreshCount());
+			Assert.assertTrue(scheduler.isTracked(URL));
+		} finally {
+			scheduler.close();
+			stuck.close();
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+/**
+ *
+ * socialcounts - find social media strength of a URL
+ * Copyright (c) 2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/socialcounts
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.socialcount.simulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.socialcount.FetchStatus;
+import com.sangupta.socialcount.SocialCountClient;
+import com.sangupta.socialcount.SocialCountConfig;
+import com.sangupta.socialcount.SocialCounts;
+
+/**
+ * Tests for {@link ProviderSimulator} that run a {@link SocialCountClient}
+ * end to end against it.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestProviderSimulator {
+	
+	private static final String URL = "http://example.com/page?id=1";
+	
+	private ProviderSimulator simulator;
+	
+	private SocialCountClient client;
+	
+	@Before
+	public void setup() throws IOException {
+		this.simulator = new ProviderSimulator();
+		this.client = new SocialCountClient(6);
+		this.simulator.attach(this.client);
+	}
+	
+	@After
+	public void teardown() {
+		this.client.close();
+		this.simulator.close();
+	}
+	
+	@Test
+	public void testAllProviders() {
+		SocialCounts counts = this.client.fetch(URL);
+		
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.TWITTER, URL), counts.twitter);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.FACEBOOK, URL), counts.facebookShares);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.FACEBOOK, URL) * 2, counts.facebookLikes);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.GOOGLE_PLUS_ONE, URL), counts.googlePlusOne);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.LINKEDIN, URL), counts.linkedinShares);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.PINTEREST, URL), counts.pinterestPins);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.GOOGLE_SHARES, URL), counts.googleShares);
+		
+		Assert.assertEquals(6, this.simulator.getRequestCount());
+	}
+	
+	@Test
+	public void testFailures() {
+		this.simulator.setThrottleRate(SocialCountClient.TWITTER, 1);
+		this.simulator.setErrorRate(SocialCountClient.PINTEREST, 1);
+		
+		SocialCounts counts = this.client.fetch(URL);
+		Assert.assertEquals(FetchStatus.HTTP_ERROR, counts.getStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(429, counts.getHttpStatus(SocialCountClient.TWITTER));
+		Assert.assertEquals(FetchStatus.HTTP_ERROR, counts.getStatus(SocialCountClient.PINTEREST));
+		Assert.assertEquals(500, counts.getHttpStatus(SocialCountClient.PINTEREST));
+		Assert.assertEquals(FetchStatus.OK, counts.getStatus(SocialCountClient.LINKEDIN));
+	}
+	
+	@Test
+	public void testBatching() {
+		this.client.setBatching(SocialCountClient.FACEBOOK, 10, 1000);
+		this.client.setBatching(SocialCountClient.GOOGLE_PLUS_ONE, 10, 1000);
+		Assert.assertEquals(10, this.client.getBatchSize(SocialCountClient.FACEBOOK));
+		Assert.assertEquals(1, this.client.getBatchSize(SocialCountClient.TWITTER));
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.twitter = config.googleShares = config.linkedin = config.pinterest = false;
+		
+		List<String> urls = new ArrayList<>();
+		for(int index = 0; index < 10; index++) {
+			urls.add("http://example.com/batch/" + index);
+		}
+		
+		Iterator<SocialCounts> iterator = this.client.fetchAll(urls, config);
+		while(iterator.hasNext()) {
+			SocialCounts counts = iterator.next();
+			Assert.assertEquals(FetchStatus.OK, counts.getStatus(SocialCountClient.FACEBOOK));
+			Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.FACEBOOK, counts.url), counts.facebookShares);
+			Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.GOOGLE_PLUS_ONE, counts.url), counts.googlePlusOne);
+		}
+		
+		// one request per provider for all ten URLs
+		Assert.assertEquals(1, this.simulator.getRequestCount(SocialCountClient.FACEBOOK));
+		Assert.assertEquals(1, this.simulator.getRequestCount(SocialCountClient.GOOGLE_PLUS_ONE));
+		
+		// a lone URL goes out once it has lingered
+		this.client.setBatching(SocialCountClient.FACEBOOK, 10, 20);
+		SocialCounts counts = this.client.fetch("http://example.com/batch/lone", config);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.FACEBOOK, counts.url), counts.facebookShares);
+		Assert.assertEquals(2, this.simulator.getRequestCount(SocialCountClient.FACEBOOK));
+	}
+	
+	@Test
+	public void testBatchingLinger() {
+		try {
+			this.client.setBatching(SocialCountClient.FACEBOOK, 10, 0);
+			Assert.fail("Batching without a linger time must be rejected");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+		
+		// a batch size of one turns batching off, whatever the linger time
+		this.client.setBatching(SocialCountClient.FACEBOOK, 1, 0);
+		Assert.assertEquals(1, this.client.getBatchSize(SocialCountClient.FACEBOOK));
+		Assert.assertEquals(0, this.client.getBatchLinger(SocialCountClient.FACEBOOK));
+	}
+	
+	@Test
+	public void testCloseWithPartialBatch() throws Exception {
+		this.client.setBatching(SocialCountClient.FACEBOOK, 10, 60000);
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.twitter = config.googlePlusOne = config.googleShares = config.linkedin = config.pinterest = false;
+		
+		List<CompletableFuture<SocialCounts>> futures = new ArrayList<>();
+		for(int index = 0; index < 3; index++) {
+			futures.add(this.client.fetchAsync("http://example.com/partial/" + index, config));
+		}
+		
+		this.client.close();
+		
+		// the partial batch is not stranded
+		for(CompletableFuture<SocialCounts> future : futures) {
+			Assert.assertEquals(-1, future.get(1, TimeUnit.SECONDS).facebookShares);
+		}
+		
+		Assert.assertEquals(0, this.simulator.getRequestCount(SocialCountClient.FACEBOOK));
+	}
+	
+	@Test
+	public void testLatency() {
+		this.simulator.setLatency(LatencyDistribution.fixed(1000));
+		this.simulator.setLatency(SocialCountClient.LINKEDIN, LatencyDistribution.fixed(0));
+		
+		SocialCountConfig config = new SocialCountConfig();
+		config.timeBudget = 300;
+		
+		SocialCounts counts = this.client.fetch(URL, config);
+		Assert.assertEquals(-1, counts.twitter);
+		Assert.assertEquals(ProviderSimulator.countFor(SocialCountClient.LINKEDIN, URL), counts.linkedinShares);
+	}
+	
+	@Test
+	public void testLatencyDistribution() {
+		LatencyDistribution distribution = LatencyDistribution.logNormal(20, 200);
+		
+		int over = 0;
+		for(int index = 0; index < 10000; index++) {
+			long latency = distribution.nextLatency();
+			Assert.assertTrue(latency >= 0);
+			if(latency > 200) {
+				over++;
+			}
+		}
+		
+		Assert.assertTrue(over > 20 && over < 300);
+	}
+
+}